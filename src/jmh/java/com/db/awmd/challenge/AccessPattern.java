@@ -0,0 +1,48 @@
+package com.db.awmd.challenge;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Which accounts a benchmark touches. Samples are drawn up front so that picking the next account
+ * costs an array read inside the measured loop.
+ */
+public enum AccessPattern {
+
+  /** Every account is equally likely. */
+  UNIFORM {
+    @Override
+    int[] sample(int accountCount, int samples, long seed) {
+      Random random = new Random(seed);
+      int[] indexes = new int[samples];
+      for (int i = 0; i < samples; i++) {
+        indexes[i] = random.nextInt(accountCount);
+      }
+      return indexes;
+    }
+  },
+
+  /** Account k is picked with probability proportional to 1 / k^0.99, as in YCSB, so a few hot accounts dominate. */
+  ZIPFIAN {
+    @Override
+    int[] sample(int accountCount, int samples, long seed) {
+      double[] cumulative = new double[accountCount];
+      double sum = 0;
+      for (int k = 0; k < accountCount; k++) {
+        sum += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+        cumulative[k] = sum;
+      }
+      Random random = new Random(seed);
+      int[] indexes = new int[samples];
+      for (int i = 0; i < samples; i++) {
+        int found = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        indexes[i] = Math.min(found >= 0 ? found : -found - 1, accountCount - 1);
+      }
+      return indexes;
+    }
+  };
+
+  private static final double ZIPF_EXPONENT = 0.99;
+
+  abstract int[] sample(int accountCount, int samples, long seed);
+}
@@ -0,0 +1,91 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Creating a chunk of accounts one call at a time against one bulk call, per account, without a
+ * journal and with one that forces every commit to disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AccountBatchBenchmark {
+
+  private static final int CHUNK_SIZE = 1000;
+  private static final BigDecimal BALANCE = new BigDecimal(100);
+
+  @Param({"big-decimal", "sharded", "journal"})
+  String engine;
+
+  ConfigurableApplicationContext context;
+  AccountsRepository accountsRepository;
+  Path journalDirectory;
+  long nextAccount;
+  List<Account> chunk;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    this.journalDirectory = Files.createTempDirectory("journal-batch");
+    this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+      .web(false)
+      .properties("logging.level.com.db.awmd.challenge=WARN")
+      .run("--accounts.storage=" + ("sharded".equals(this.engine) ? "sharded" : "big-decimal"),
+        "--journal.enabled=" + "journal".equals(this.engine), "--journal.directory=" + this.journalDirectory);
+    this.accountsRepository = this.context.getBean(AccountsRepository.class);
+  }
+
+  @Setup(Level.Invocation)
+  public void nextChunk() {
+    this.chunk = new ArrayList<>(CHUNK_SIZE);
+    for (int i = 0; i < CHUNK_SIZE; i++) {
+      this.chunk.add(new Account("Id-" + this.nextAccount++, BALANCE));
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void clear() {
+    this.accountsRepository.clearAccounts();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.context.close();
+    FileSystemUtils.deleteRecursively(this.journalDirectory.toFile());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CHUNK_SIZE)
+  public void oneByOne() {
+    for (Account account : this.chunk) {
+      this.accountsRepository.createAccount(account);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(CHUNK_SIZE)
+  public List<RuntimeException> bulk() {
+    return this.accountsRepository.createAccounts(this.chunk);
+  }
+}
@@ -0,0 +1,120 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Single-account operations of the account store for each storage mode and access pattern. Every
+ * withdrawal is paired with a credit of the same amount so balances never run out. The
+ * readWhileWriting group runs snapshot readers next to writers on the same accounts, to show
+ * whether reads slow the writers down.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountsRepositoryBenchmark {
+
+  static final int ACCOUNT_COUNT = 10_000;
+  static final int SAMPLES = 1 << 16;
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+  private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+  @State(Scope.Benchmark)
+  public static class Store {
+
+    @Param({"big-decimal", "scaled-long"})
+    String storage;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    AccessPattern accessPattern;
+
+    ConfigurableApplicationContext context;
+    AccountsRepository accountsRepository;
+    String[] accountIds;
+    final AtomicLong seeds = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+        .web(false)
+        .properties("logging.level.com.db.awmd.challenge=WARN")
+        .run("--accounts.storage=" + this.storage);
+      this.accountsRepository = this.context.getBean(AccountsRepository.class);
+      this.accountsRepository.clearAccounts();
+      this.accountIds = new String[ACCOUNT_COUNT];
+      for (int i = 0; i < ACCOUNT_COUNT; i++) {
+        this.accountIds[i] = "Id-" + i;
+        this.accountsRepository.createAccount(new Account(this.accountIds[i], INITIAL_BALANCE));
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.context.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    int[] indexes;
+    int next;
+
+    @Setup(Level.Trial)
+    public void sample(Store store) {
+      this.indexes = store.accessPattern.sample(ACCOUNT_COUNT, SAMPLES, store.seeds.incrementAndGet());
+    }
+
+    String nextAccountId(Store store) {
+      return store.accountIds[this.indexes[this.next++ & (SAMPLES - 1)]];
+    }
+  }
+
+  @Benchmark
+  public void withDrawAndCredit(Store store, Cursor cursor) {
+    String accountId = cursor.nextAccountId(store);
+    store.accountsRepository.withDraw(accountId, AMOUNT);
+    store.accountsRepository.credit(accountId, AMOUNT);
+  }
+
+  @Benchmark
+  public Account getAccount(Store store, Cursor cursor) {
+    return store.accountsRepository.getAccount(cursor.nextAccountId(store));
+  }
+
+  @Benchmark
+  public AccountSnapshot getAccountSnapshot(Store store, Cursor cursor) {
+    return store.accountsRepository.getAccountSnapshot(cursor.nextAccountId(store));
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(2)
+  public void writer(Store store, Cursor cursor) {
+    withDrawAndCredit(store, cursor);
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(2)
+  public AccountSnapshot reader(Store store, Cursor cursor) {
+    return getAccountSnapshot(store, cursor);
+  }
+}
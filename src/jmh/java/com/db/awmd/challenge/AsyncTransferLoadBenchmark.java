@@ -0,0 +1,166 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Local load test of POST /transfer over HTTP: more keep-alive connections than container threads,
+ * each sending transfers back to back, with the blocking controller against the async one. Sample
+ * time mode reports the latency percentiles. The journal engine waits for fsync on every commit,
+ * the sharded engine queues every transfer on a shard thread.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+public class AsyncTransferLoadBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+
+  @State(Scope.Benchmark)
+  public static class Server {
+
+    @Param({"false", "true"})
+    boolean async;
+
+    @Param({"journal", "sharded"})
+    String engine;
+
+    @Param({"8"})
+    int containerThreads;
+
+    ConfigurableApplicationContext context;
+    AccountsService accountsService;
+    int port;
+    Path journalDirectory;
+    final AtomicInteger connections = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+      this.journalDirectory = Files.createTempDirectory("journal-load");
+      this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+        .properties("logging.level.com.db.awmd.challenge=WARN", "logging.level.org.springframework=WARN")
+        .run("--server.port=0", "--server.tomcat.max-threads=" + this.containerThreads,
+          "--transfer.async=" + this.async, "--notification.overflow-policy=DROP", "--notification.workers=0",
+          "--accounts.storage=" + ("sharded".equals(this.engine) ? "sharded" : "big-decimal"),
+          "--journal.enabled=" + "journal".equals(this.engine), "--journal.directory=" + this.journalDirectory);
+      this.accountsService = this.context.getBean(AccountsService.class);
+      this.port = Integer.parseInt(this.context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.context.close();
+      FileSystemUtils.deleteRecursively(this.journalDirectory.toFile());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Connection {
+
+    int port;
+    Socket socket;
+    OutputStream out;
+    InputStream in;
+    byte[] pay;
+    byte[] collect;
+    boolean paid;
+
+    @Setup(Level.Trial)
+    public void open(Server server) throws IOException {
+      int connection = server.connections.incrementAndGet();
+      String accountId = "Id-load-" + connection;
+      String counterpartyId = "Id-load-counterparty-" + connection;
+      server.accountsService.createAccount(new Account(accountId, INITIAL_BALANCE));
+      server.accountsService.createAccount(new Account(counterpartyId, INITIAL_BALANCE));
+      this.pay = request(server.port, accountId, counterpartyId);
+      this.collect = request(server.port, counterpartyId, accountId);
+      this.port = server.port;
+      connect();
+    }
+
+    private void connect() throws IOException {
+      this.socket = new Socket("localhost", this.port);
+      this.socket.setTcpNoDelay(true);
+      this.out = this.socket.getOutputStream();
+      this.in = new BufferedInputStream(this.socket.getInputStream());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+      this.socket.close();
+    }
+
+    int send() throws IOException {
+      this.paid = !this.paid;
+      this.out.write(this.paid ? this.pay : this.collect);
+      this.out.flush();
+      return readResponse();
+    }
+
+    private static byte[] request(int port, String accountFrom, String accountTo) {
+      String body = "{\"accountFrom\":\"" + accountFrom + "\",\"accountTo\":\"" + accountTo + "\",\"amount\":1}";
+      return ("POST /transfer HTTP/1.1\r\nHost: localhost:" + port + "\r\nContent-Type: application/json\r\n"
+        + "Content-Length: " + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads one response off the keep-alive connection and returns its status code, reconnecting
+     * when the server closes the connection after its keep-alive request limit.
+     */
+    private int readResponse() throws IOException {
+      StringBuilder head = new StringBuilder();
+      while (head.length() < 4 || head.lastIndexOf("\r\n\r\n") != head.length() - 4) {
+        int b = this.in.read();
+        if (b < 0) {
+          throw new EOFException("Connection closed by the server");
+        }
+        head.append((char) b);
+      }
+      String headers = head.toString().toLowerCase();
+      int contentLength = 0;
+      int index = headers.indexOf("content-length:");
+      if (index >= 0) {
+        contentLength = Integer.parseInt(headers.substring(index + 15, headers.indexOf("\r\n", index)).trim());
+      }
+      for (long skipped = 0; skipped < contentLength; ) {
+        skipped += this.in.skip(contentLength - skipped);
+      }
+      if (headers.contains("connection: close")) {
+        this.socket.close();
+        connect();
+      }
+      return Integer.parseInt(headers.substring(9, 12));
+    }
+  }
+
+  @Benchmark
+  public int transfer(Connection connection) throws IOException {
+    return connection.send();
+  }
+}
@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.persistence.BalanceSnapshotter;
+import com.db.awmd.challenge.persistence.FsyncPolicy;
+import com.db.awmd.challenge.persistence.MappedTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryScaledLong;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Time to rebuild the accounts at startup against the account count. Every account is created and
+ * then takes part in ten transfers; with {@code snapshot} a snapshot is taken before the last
+ * thousand transfers, so only those are replayed from the journal.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+
+  private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int TRANSFERS_PER_ACCOUNT = 10;
+  private static final int TAIL_TRANSFERS = 1000;
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @Param({"10000", "100000", "1000000"})
+  int accountCount;
+
+  @Param({"journal", "snapshot"})
+  String recovery;
+
+  Path directory;
+
+  @Setup(Level.Trial)
+  public void write() throws IOException {
+    this.directory = Files.createTempDirectory("cold-start");
+    MappedTransferJournal journal = openJournal();
+    AccountsRepositoryScaledLong accountsRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(1024),
+      journal);
+    accountsRepository.recover();
+    for (int i = 0; i < this.accountCount; i++) {
+      accountsRepository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+    int transfers = this.accountCount * TRANSFERS_PER_ACCOUNT;
+    for (int i = 0; i < transfers; i++) {
+      if (i == transfers - TAIL_TRANSFERS && "snapshot".equals(this.recovery)) {
+        new BalanceSnapshotter(journal, accountsRepository, 0, 1).takeSnapshot();
+      }
+      accountsRepository.transfer("Id-" + (i % this.accountCount), "Id-" + ((i + 1) % this.accountCount), AMOUNT);
+    }
+    journal.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void delete() {
+    FileSystemUtils.deleteRecursively(this.directory.toFile());
+  }
+
+  @Benchmark
+  public AccountsRepositoryScaledLong recover() throws IOException {
+    MappedTransferJournal journal = openJournal();
+    AccountsRepositoryScaledLong accountsRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(1024),
+      journal);
+    accountsRepository.recover();
+    journal.close();
+    return accountsRepository;
+  }
+
+  private MappedTransferJournal openJournal() {
+    return new MappedTransferJournal(this.directory.toString(), SEGMENT_SIZE, FsyncPolicy.NEVER, 10);
+  }
+}
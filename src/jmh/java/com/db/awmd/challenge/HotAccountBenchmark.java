@@ -0,0 +1,103 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Every thread moves money between its own account and one clearing account, with the clearing
+ * account held in a single balance or as a hot account with striped sub-balances.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HotAccountBenchmark {
+
+  private static final String CLEARING_ACCOUNT = "Id-clearing";
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @State(Scope.Benchmark)
+  public static class Engine {
+
+    @Param({"false", "true"})
+    boolean hot;
+
+    ConfigurableApplicationContext context;
+    AccountsService accountsService;
+    TransferService transferService;
+    final AtomicInteger clients = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+        .web(false)
+        .properties("logging.level.com.db.awmd.challenge=WARN")
+        .run("--accounts.storage=scaled-long", "--notification.overflow-policy=DROP", "--notification.workers=0",
+          "--accounts.hot-accounts=" + (this.hot ? CLEARING_ACCOUNT : "none"));
+      this.accountsService = this.context.getBean(AccountsService.class);
+      this.transferService = this.context.getBean(TransferService.class);
+      this.accountsService.getAccountsRepository().clearAccounts();
+      this.accountsService.createAccount(new Account(CLEARING_ACCOUNT, INITIAL_BALANCE));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.context.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Client {
+
+    Transfer pay;
+    Transfer collect;
+
+    @Setup(Level.Trial)
+    public void create(Engine engine) {
+      String accountId = "Id-client-" + engine.clients.incrementAndGet();
+      engine.accountsService.createAccount(new Account(accountId, INITIAL_BALANCE));
+      this.pay = new Transfer(accountId, CLEARING_ACCOUNT, AMOUNT);
+      this.collect = new Transfer(CLEARING_ACCOUNT, accountId, AMOUNT);
+    }
+  }
+
+  private static void roundTrip(TransferService transferService, Client client) {
+    transferService.tryCreateTransfer(client.pay);
+    transferService.tryCreateTransfer(client.collect);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void clearingAccount1Thread(Engine engine, Client client) {
+    roundTrip(engine.transferService, client);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void clearingAccount4Threads(Engine engine, Client client) {
+    roundTrip(engine.transferService, client);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void clearingAccountAllCores(Engine engine, Client client) {
+    roundTrip(engine.transferService, client);
+  }
+}
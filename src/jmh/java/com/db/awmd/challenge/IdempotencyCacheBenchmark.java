@@ -0,0 +1,62 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost the idempotency check adds to a transfer, for a retried key that is found in a full cache
+ * and for a new key that is inserted and pushes the oldest one out. Run with {@code -prof gc} to
+ * see the bytes allocated per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class IdempotencyCacheBenchmark {
+
+  private static final Supplier<TransferOutcome> TRANSFER = () -> TransferOutcome.COMPLETED;
+
+  @Param({"100000", "1000000"})
+  int maxKeys;
+
+  IdempotencyCache idempotencyCache;
+  String[] keys;
+  Transfer transfer;
+  final AtomicLong nextKey = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void fill() {
+    this.idempotencyCache = new IdempotencyCache(this.maxKeys, TimeUnit.DAYS.toMillis(1));
+    this.transfer = new Transfer("Id-123", "Id-456", new BigDecimal(100));
+    this.keys = new String[this.maxKeys];
+    for (int i = 0; i < this.maxKeys; i++) {
+      this.keys[i] = "key-" + i;
+      this.idempotencyCache.execute(this.keys[i], this.transfer, TRANSFER);
+    }
+  }
+
+  @Benchmark
+  public TransferOutcome retriedKey() {
+    String key = this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+    return this.idempotencyCache.execute(key, this.transfer, TRANSFER);
+  }
+
+  @Benchmark
+  public TransferOutcome newKey() {
+    return this.idempotencyCache.execute("new-" + this.nextKey.incrementAndGet(), this.transfer, TRANSFER);
+  }
+}
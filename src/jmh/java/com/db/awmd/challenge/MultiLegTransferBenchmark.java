@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferLeg;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * A payroll-style payout as one single transfer per recipient against one multi-leg transfer, per
+ * leg, without a journal and with one that forces every commit to disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MultiLegTransferBenchmark {
+
+  private static final int LEGS = 32;
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @Param({"big-decimal", "scaled-long", "journal"})
+  String engine;
+
+  ConfigurableApplicationContext context;
+  Path journalDirectory;
+  TransferService transferService;
+  List<Transfer> transfers;
+  MultiLegTransfer multiLegTransfer;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException {
+    this.journalDirectory = Files.createTempDirectory("journal-multi-leg");
+    this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+      .web(false)
+      .properties("logging.level.com.db.awmd.challenge=WARN")
+      .run("--accounts.storage=" + ("scaled-long".equals(this.engine) ? "scaled-long" : "big-decimal"),
+        "--journal.enabled=" + "journal".equals(this.engine), "--journal.directory=" + this.journalDirectory);
+    this.transferService = this.context.getBean(TransferService.class);
+    AccountsService accountsService = this.context.getBean(AccountsService.class);
+    accountsService.createAccount(new Account("Id-Payer", new BigDecimal(Long.MAX_VALUE / 1000)));
+    this.transfers = new ArrayList<>(LEGS);
+    List<TransferLeg> legs = new ArrayList<>(LEGS);
+    for (int i = 0; i < LEGS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, BigDecimal.ZERO));
+      this.transfers.add(new Transfer("Id-Payer", "Id-" + i, AMOUNT));
+      legs.add(new TransferLeg("Id-" + i, AMOUNT));
+    }
+    this.multiLegTransfer = new MultiLegTransfer("Id-Payer", legs);
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.context.close();
+    FileSystemUtils.deleteRecursively(this.journalDirectory.toFile());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LEGS)
+  public void singleTransfers() {
+    for (Transfer transfer : this.transfers) {
+      this.transferService.createTransfer(transfer);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LEGS)
+  public List<TransferResult> multiLeg() {
+    return this.transferService.createMultiLegTransfer(this.multiLegTransfer);
+  }
+}
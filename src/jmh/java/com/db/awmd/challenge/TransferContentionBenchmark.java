@@ -0,0 +1,123 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Transfers between accounts owned by a single benchmark thread never share a lock stripe with
+ * other threads, so throughput of the disjoint benchmarks should grow with the thread count while
+ * the shared pair stays flat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferContentionBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @State(Scope.Benchmark)
+  public static class Engine {
+
+    ConfigurableApplicationContext context;
+    AccountsService accountsService;
+    TransferService transferService;
+    final AtomicInteger pairs = new AtomicInteger();
+    Transfer sharedForward;
+    Transfer sharedBackward;
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+        .web(false)
+        .properties("logging.level.com.db.awmd.challenge=WARN")
+        .run();
+      this.accountsService = this.context.getBean(AccountsService.class);
+      this.transferService = this.context.getBean(TransferService.class);
+      this.accountsService.getAccountsRepository().clearAccounts();
+      this.sharedForward = createPair("Id-shared");
+      this.sharedBackward = reverse(this.sharedForward);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.context.close();
+    }
+
+    Transfer createPair(String prefix) {
+      String from = prefix + "-from";
+      String to = prefix + "-to";
+      this.accountsService.createAccount(new Account(from, INITIAL_BALANCE));
+      this.accountsService.createAccount(new Account(to, INITIAL_BALANCE));
+      return new Transfer(from, to, AMOUNT);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class DisjointPair {
+
+    Transfer forward;
+    Transfer backward;
+
+    @Setup(Level.Trial)
+    public void create(Engine engine) {
+      this.forward = engine.createPair("Id-disjoint-" + engine.pairs.incrementAndGet());
+      this.backward = reverse(this.forward);
+    }
+  }
+
+  private static Transfer reverse(Transfer transfer) {
+    return new Transfer(transfer.getAccountTo(), transfer.getAccountFrom(), transfer.getAmount());
+  }
+
+  private static void roundTrip(TransferService transferService, Transfer forward, Transfer backward) {
+    transferService.createTransfer(forward);
+    transferService.createTransfer(backward);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void disjointAccounts1Thread(Engine engine, DisjointPair pair) {
+    roundTrip(engine.transferService, pair.forward, pair.backward);
+  }
+
+  @Benchmark
+  @Threads(2)
+  public void disjointAccounts2Threads(Engine engine, DisjointPair pair) {
+    roundTrip(engine.transferService, pair.forward, pair.backward);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void disjointAccounts4Threads(Engine engine, DisjointPair pair) {
+    roundTrip(engine.transferService, pair.forward, pair.backward);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void disjointAccountsAllCores(Engine engine, DisjointPair pair) {
+    roundTrip(engine.transferService, pair.forward, pair.backward);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void sharedAccountsAllCores(Engine engine) {
+    roundTrip(engine.transferService, engine.sharedForward, engine.sharedBackward);
+  }
+}
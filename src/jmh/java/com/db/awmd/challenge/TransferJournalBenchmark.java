@@ -0,0 +1,110 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.persistence.FsyncPolicy;
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import com.db.awmd.challenge.persistence.MappedTransferJournal;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Measures transfer records appended per millisecond under each fsync policy, where every append
+ * waits until it is durable as a transfer would, and the time to replay a journal of one million
+ * transfers at startup.
+ */
+public class TransferJournalBenchmark {
+
+  private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int RECOVERY_RECORDS = 1_000_000;
+  private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+  @State(Scope.Benchmark)
+  public static class Appending {
+
+    @Param({"EVERY_COMMIT", "INTERVAL", "NEVER"})
+    FsyncPolicy fsyncPolicy;
+
+    Path directory;
+    MappedTransferJournal journal;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+      this.directory = Files.createTempDirectory("journal-append");
+      this.journal = new MappedTransferJournal(this.directory.toString(), SEGMENT_SIZE, this.fsyncPolicy, 10);
+      this.journal.replay(record -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+      this.journal.close();
+      FileSystemUtils.deleteRecursively(this.directory.toFile());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Recovering {
+
+    Path directory;
+    final AtomicLong replayed = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+      this.directory = Files.createTempDirectory("journal-replay");
+      MappedTransferJournal journal = new MappedTransferJournal(this.directory.toString(), SEGMENT_SIZE,
+        FsyncPolicy.NEVER, 10);
+      journal.replay(record -> { });
+      for (int i = 0; i < RECOVERY_RECORDS; i++) {
+        journal.append(Type.TRANSFER, "Id-" + (i & 1023), "Id-" + ((i + 1) & 1023), AMOUNT);
+      }
+      journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+      FileSystemUtils.deleteRecursively(this.directory.toFile());
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Threads(4)
+  public long appendTransfer(Appending appending) {
+    long sequence = appending.journal.append(Type.TRANSFER, "Id-123", "Id-456", AMOUNT);
+    appending.journal.awaitDurable(sequence);
+    return sequence;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  @Fork(1)
+  public long replayMillionTransfers(Recovering recovering) throws IOException {
+    MappedTransferJournal journal = new MappedTransferJournal(recovering.directory.toString(), SEGMENT_SIZE,
+      FsyncPolicy.NEVER, 10);
+    recovering.replayed.set(0);
+    journal.replay(record -> recovering.replayed.incrementAndGet());
+    journal.close();
+    return recovering.replayed.get();
+  }
+}
@@ -0,0 +1,68 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.TransferHistoryPage;
+import com.db.awmd.challenge.repository.TransferLedger;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Recording a transfer in the history and reading a page of 100 from a random point of one
+ * account's retained history, for small and large histories. The page should cost about the same
+ * for both; what is left of the difference is cache misses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TransferLedgerBenchmark {
+
+  private static final int ACCOUNT_COUNT = AccountsRepositoryBenchmark.ACCOUNT_COUNT;
+  private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+  @Param({"1000000", "10000000"})
+  int historySize;
+
+  @Param({"0", "1048576"})
+  long maxTransfers;
+
+  long retained;
+
+  TransferLedger ledger;
+  String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void fill() {
+    this.ledger = new TransferLedger(true, this.maxTransfers);
+    this.retained = this.maxTransfers == 0 ? this.historySize : Math.min(this.historySize, this.maxTransfers);
+    this.accountIds = new String[ACCOUNT_COUNT];
+    for (int i = 0; i < ACCOUNT_COUNT; i++) {
+      this.accountIds[i] = "Id-" + i;
+    }
+    for (int i = 0; i < this.historySize; i++) {
+      this.ledger.record(this.accountIds[i % ACCOUNT_COUNT], this.accountIds[(i * 7 + 1) % ACCOUNT_COUNT], AMOUNT);
+    }
+  }
+
+  @Benchmark
+  public long record() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return this.ledger.record(this.accountIds[random.nextInt(ACCOUNT_COUNT)],
+      this.accountIds[random.nextInt(ACCOUNT_COUNT)], AMOUNT);
+  }
+
+  @Benchmark
+  public TransferHistoryPage page() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return this.ledger.page(this.accountIds[random.nextInt(ACCOUNT_COUNT)],
+      this.historySize - random.nextLong(this.retained), 100);
+  }
+}
@@ -0,0 +1,57 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.service.TransferRateLimiter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the admission check in front of a transfer: spread over many clients and accounts with
+ * room in every bucket, and for one client flooding one account that is shed on every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TransferRateLimiterBenchmark {
+
+  private static final int CLIENTS = 1000;
+  private static final int ACCOUNTS = 10000;
+
+  TransferRateLimiter spreadLimiter;
+  TransferRateLimiter floodLimiter;
+  String[] clientIds;
+  String[] accountIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    this.spreadLimiter = new TransferRateLimiter(accountId -> true, 1e9, 100, 1e9, 20, 100000, new String[0], 0);
+    this.floodLimiter = new TransferRateLimiter(accountId -> true, 1, 100, 1, 20, 100000, new String[0], 0);
+    this.clientIds = new String[CLIENTS];
+    for (int i = 0; i < CLIENTS; i++) {
+      this.clientIds[i] = "client-" + i;
+    }
+    this.accountIds = new String[ACCOUNTS];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      this.accountIds[i] = "Id-" + i;
+    }
+  }
+
+  @Benchmark
+  public long admitted() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return this.spreadLimiter.tryAcquire(this.clientIds[random.nextInt(CLIENTS)],
+      this.accountIds[random.nextInt(ACCOUNTS)]);
+  }
+
+  @Benchmark
+  public long shed() {
+    return this.floodLimiter.tryAcquire(this.clientIds[0], this.accountIds[0]);
+  }
+}
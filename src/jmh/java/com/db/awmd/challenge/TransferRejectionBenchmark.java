@@ -0,0 +1,85 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Cost of turning away a transfer, per rejection cause: the exception path ({@code createTransfer}
+ * throwing, the caller reading the message) against the result code path ({@code tryCreateTransfer}
+ * returning a preallocated outcome). Run with {@code -prof gc} to compare the allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TransferRejectionBenchmark {
+
+  @Param({"big-decimal", "scaled-long"})
+  String storage;
+
+  @Param({"INSUFFICIENT_BALANCE", "ACCOUNT_NOT_FOUND", "NEGATIVE_AMOUNT"})
+  TransferOutcome rejection;
+
+  ConfigurableApplicationContext context;
+  TransferService transferService;
+  Transfer transfer;
+
+  @Setup(Level.Trial)
+  public void start() {
+    this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+      .web(false)
+      .properties("logging.level.com.db.awmd.challenge=WARN")
+      .run("--accounts.storage=" + this.storage);
+    AccountsService accountsService = this.context.getBean(AccountsService.class);
+    this.transferService = this.context.getBean(TransferService.class);
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-123", BigDecimal.TEN));
+    accountsService.createAccount(new Account("Id-456", BigDecimal.TEN));
+    switch (this.rejection) {
+      case INSUFFICIENT_BALANCE:
+        this.transfer = new Transfer("Id-123", "Id-456", new BigDecimal(1000));
+        break;
+      case ACCOUNT_NOT_FOUND:
+        this.transfer = new Transfer("Id-123", "Id-789", BigDecimal.ONE);
+        break;
+      default:
+        this.transfer = new Transfer("Id-123", "Id-456", BigDecimal.ONE.negate());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    this.context.close();
+  }
+
+  @Benchmark
+  public String exceptionPath() {
+    try {
+      this.transferService.createTransfer(this.transfer);
+      return null;
+    } catch (RuntimeException re) {
+      return re.getMessage();
+    }
+  }
+
+  @Benchmark
+  public String resultCodePath() {
+    return this.transferService.tryCreateTransfer(this.transfer).getMessage();
+  }
+}
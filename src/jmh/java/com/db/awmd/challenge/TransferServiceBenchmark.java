@@ -0,0 +1,122 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end {@code TransferService.createTransfer} between accounts picked uniformly or with a
+ * Zipfian skew towards a few hot accounts, at 1 to all-cores threads. Notification delivery is
+ * switched off (no workers, full queue drops) so that waking up workers is not part of the
+ * measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferServiceBenchmark {
+
+  private static final int ACCOUNT_COUNT = AccountsRepositoryBenchmark.ACCOUNT_COUNT;
+  private static final int SAMPLES = AccountsRepositoryBenchmark.SAMPLES;
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @State(Scope.Benchmark)
+  public static class Engine {
+
+    @Param({"big-decimal", "scaled-long", "sharded"})
+    String storage;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    AccessPattern accessPattern;
+
+    ConfigurableApplicationContext context;
+    TransferService transferService;
+    String[] accountIds;
+    final AtomicLong seeds = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+      this.context = new SpringApplicationBuilder(DevChallengeApplication.class)
+        .web(false)
+        .properties("logging.level.com.db.awmd.challenge=WARN")
+        .run("--accounts.storage=" + this.storage, "--notification.overflow-policy=DROP",
+          "--notification.workers=0");
+      AccountsService accountsService = this.context.getBean(AccountsService.class);
+      this.transferService = this.context.getBean(TransferService.class);
+      accountsService.getAccountsRepository().clearAccounts();
+      this.accountIds = new String[ACCOUNT_COUNT];
+      for (int i = 0; i < ACCOUNT_COUNT; i++) {
+        this.accountIds[i] = "Id-" + i;
+        accountsService.createAccount(new Account(this.accountIds[i], INITIAL_BALANCE));
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      this.context.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Transfers {
+
+    Transfer[] transfers;
+    int next;
+
+    @Setup(Level.Trial)
+    public void sample(Engine engine) {
+      int[] from = engine.accessPattern.sample(ACCOUNT_COUNT, SAMPLES, engine.seeds.incrementAndGet());
+      int[] to = engine.accessPattern.sample(ACCOUNT_COUNT, SAMPLES, -engine.seeds.incrementAndGet());
+      this.transfers = new Transfer[SAMPLES];
+      for (int i = 0; i < SAMPLES; i++) {
+        // Skip self-transfers by moving the destination to the neighbouring account.
+        int destination = from[i] == to[i] ? (to[i] + 1) % ACCOUNT_COUNT : to[i];
+        this.transfers[i] = new Transfer(engine.accountIds[from[i]], engine.accountIds[destination], AMOUNT);
+      }
+    }
+
+    Transfer nextTransfer() {
+      return this.transfers[this.next++ & (SAMPLES - 1)];
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void createTransfer1Thread(Engine engine, Transfers transfers) {
+    engine.transferService.createTransfer(transfers.nextTransfer());
+  }
+
+  @Benchmark
+  @Threads(2)
+  public void createTransfer2Threads(Engine engine, Transfers transfers) {
+    engine.transferService.createTransfer(transfers.nextTransfer());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void createTransfer4Threads(Engine engine, Transfers transfers) {
+    engine.transferService.createTransfer(transfers.nextTransfer());
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void createTransferAllCores(Engine engine, Transfers transfers) {
+    engine.transferService.createTransfer(transfers.nextTransfer());
+  }
+}
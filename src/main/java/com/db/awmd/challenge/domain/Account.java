@@ -18,7 +18,7 @@ public class Account {
 
   @NotNull
   @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile BigDecimal balance;
 
   public Account(String accountId) {
     this.accountId = accountId;
@@ -33,12 +33,18 @@ public class Account {
   }
  
   public void withDraw(BigDecimal amount) throws InsufficientBalanceException{
-    if (amount.compareTo(this.balance)>0 ) {
+    if (!tryWithDraw(amount)) {
       throw new InsufficientBalanceException(this.balance);
     }
-    else{
-	  this.balance=this.balance.subtract(amount);
+  }
+
+  /** Withdraws the amount if the balance covers it, returns false and changes nothing otherwise. */
+  public boolean tryWithDraw(BigDecimal amount) {
+    if (amount.compareTo(this.balance)>0 ) {
+      return false;
     }
+    this.balance=this.balance.subtract(amount);
+    return true;
   }
   
    public void credit(BigDecimal amount) {
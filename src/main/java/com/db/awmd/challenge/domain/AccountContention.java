@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+/** Sampled lock time of one account, in microseconds. */
+@Value
+public class AccountContention {
+
+  private final String accountId;
+
+  private final long samples;
+
+  private final long contended;
+
+  private final double waitMicros;
+
+  private final double heldMicros;
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+/** Totals of one bulk import of accounts from a file. */
+@Value
+public class AccountImport {
+
+  private final String file;
+
+  private final long created;
+
+  private final long duplicates;
+
+  private final long rejected;
+
+  private final long elapsedMillis;
+
+  private final long accountsPerSecond;
+}
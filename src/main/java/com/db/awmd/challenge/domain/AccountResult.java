@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+/** Outcome of one account of a bulk account creation, by its position in the request. */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountResult {
+
+  public enum Status { CREATED, DUPLICATE, REJECTED }
+
+  private final int index;
+
+  private final String accountId;
+
+  private final Status status;
+
+  private final String message;
+
+  public static AccountResult created(int index, String accountId) {
+    return new AccountResult(index, accountId, Status.CREATED, null);
+  }
+
+  public static AccountResult duplicate(int index, String accountId, String message) {
+    return new AccountResult(index, accountId, Status.DUPLICATE, message);
+  }
+
+  public static AccountResult rejected(int index, String accountId, String message) {
+    return new AccountResult(index, accountId, Status.REJECTED, message);
+  }
+}
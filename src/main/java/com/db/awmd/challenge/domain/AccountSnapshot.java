@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * Immutable balance of one account as of one point in its history. The version counts the changes
+ * applied to the account since it was loaded, so two snapshots of an account with the same version
+ * hold the same balance. Storage that changes balances without a lock does not count changes and
+ * reports {@link #UNVERSIONED}.
+ */
+@Value
+public class AccountSnapshot {
+
+  public static final long UNVERSIONED = -1;
+
+  private final String accountId;
+
+  private final BigDecimal balance;
+
+  @JsonIgnore
+  private final long version;
+}
@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.Value;
+
+/** Accounts whose balance is at least {@code from} and below {@code to}, either bound open when null. */
+@Value
+public class BalanceBucket {
+
+  private final BigDecimal from;
+
+  private final BigDecimal to;
+
+  private final long accounts;
+
+  private final BigDecimal total;
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * All balances as of one point in time. While only transfers run, the total of two reports is the
+ * same; deposits, withdrawals and new accounts account for any difference.
+ */
+@Value
+public class BalanceReport {
+
+  private final long accounts;
+
+  private final BigDecimal total;
+
+  private final BigDecimal minimum;
+
+  private final BigDecimal maximum;
+
+  private final List<BalanceBucket> buckets;
+
+  private final long elapsedMillis;
+}
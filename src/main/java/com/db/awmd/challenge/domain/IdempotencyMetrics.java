@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+@Value
+public class IdempotencyMetrics {
+
+  private final int size;
+
+  private final int maxKeys;
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evicted;
+}
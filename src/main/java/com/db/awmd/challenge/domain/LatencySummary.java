@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+/** Latencies in microseconds. */
+@Value
+public class LatencySummary {
+
+  private final long count;
+
+  private final double mean;
+
+  private final double p50;
+
+  private final double p90;
+
+  private final double p99;
+
+  private final double p999;
+
+  private final double max;
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Sampled lock acquisitions: one in {@code sampleInterval} is timed, from the request for the lock
+ * to getting it (wait) and on to releasing it (held). Totals are of the samples only, multiply by
+ * the interval for an estimate of all acquisitions.
+ */
+@Value
+public class LockContention {
+
+  private final int sampleInterval;
+
+  private final long samples;
+
+  private final long contended;
+
+  private final double waitMicros;
+
+  private final double heldMicros;
+
+  private final List<AccountContention> hottestAccounts;
+}
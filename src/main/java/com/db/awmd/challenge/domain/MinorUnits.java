@@ -0,0 +1,51 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.AmountPrecisionException;
+import java.math.BigDecimal;
+
+/**
+ * Conversion between API amounts and balances stored as a {@code long} count of minor units
+ * (cents). Whole amounts convert back without a fractional part, so JSON output looks the same as
+ * for {@link BigDecimal} balances.
+ */
+public final class MinorUnits {
+
+  public static final int SCALE = 2;
+
+  /** Returned by {@link #toMinorUnitsOrInvalid} for amounts that have no exact minor unit count. */
+  public static final long INVALID = Long.MIN_VALUE;
+
+  private static final BigDecimal MIN_UNITS = BigDecimal.valueOf(Long.MIN_VALUE + 1);
+  private static final BigDecimal MAX_UNITS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+  private MinorUnits() {
+  }
+
+  public static long toMinorUnits(BigDecimal amount) throws AmountPrecisionException {
+    long units = toMinorUnitsOrInvalid(amount);
+    if (units == INVALID) {
+      throw new AmountPrecisionException(amount);
+    }
+    return units;
+  }
+
+  /** Like {@link #toMinorUnits} but returns {@link #INVALID} instead of throwing. */
+  public static long toMinorUnitsOrInvalid(BigDecimal amount) {
+    BigDecimal units = amount.movePointRight(SCALE);
+    if (units.scale() > 0) {
+      units = units.stripTrailingZeros();
+      if (units.scale() > 0) {
+        return INVALID;
+      }
+    }
+    if (units.compareTo(MIN_UNITS) < 0 || units.compareTo(MAX_UNITS) > 0) {
+      return INVALID;
+    }
+    return units.longValue();
+  }
+
+  public static BigDecimal fromMinorUnits(long units) {
+    BigDecimal amount = BigDecimal.valueOf(units, SCALE).stripTrailingZeros();
+    return amount.scale() < 0 ? amount.setScale(0) : amount;
+  }
+}
@@ -0,0 +1,33 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * One debit of {@code accountFrom} paying every leg, applied as a whole or not at all, as payroll
+ * and fee splits need.
+ */
+@Data
+public class MultiLegTransfer {
+
+    @NotNull
+    @NotEmpty
+    private final String accountFrom;
+
+    @NotNull
+    @NotEmpty
+    @Valid
+    private final List<TransferLeg> legs;
+
+    @JsonCreator
+    public MultiLegTransfer(@JsonProperty("accountFrom") String accountFrom,
+                            @JsonProperty("legs") List<TransferLeg> legs) {
+        this.accountFrom = accountFrom;
+        this.legs = legs;
+    }
+}
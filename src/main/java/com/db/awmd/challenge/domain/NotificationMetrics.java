@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+@Value
+public class NotificationMetrics {
+
+  private final int queueDepth;
+
+  private final int queueCapacity;
+
+  private final long submitted;
+
+  private final long delivered;
+
+  private final long dropped;
+
+  private final long retried;
+
+  private final long failed;
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Value;
+
+/**
+ * Transfers let through and turned away by the rate limits, those that went through the shared
+ * overflow bucket, and the buckets currently tracked.
+ */
+@Value
+public class RateLimitMetrics {
+
+  private final long admitted;
+
+  private final long shedByClient;
+
+  private final long shedByAccount;
+
+  private final long overflow;
+
+  private final int clients;
+
+  private final int accounts;
+}
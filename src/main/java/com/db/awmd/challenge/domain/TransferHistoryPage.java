@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * One page of an account's transfers, newest first. {@code nextBefore} is the cursor for the next
+ * page, or null when there are no older transfers left.
+ */
+@Value
+public class TransferHistoryPage {
+
+  private final List<TransferRecord> transfers;
+
+  private final Long nextBefore;
+}
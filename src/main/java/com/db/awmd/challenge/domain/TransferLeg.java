@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/** One credit of a {@link MultiLegTransfer}. */
+@Data
+public class TransferLeg {
+
+    @NotNull
+    @NotEmpty
+    private final String accountTo;
+
+    @NotNull
+    @Min(value = 0, message = "Transfer amount must be greater than zero.")
+    private final BigDecimal amount;
+
+    @JsonCreator
+    public TransferLeg(@JsonProperty("accountTo") String accountTo,
+                       @JsonProperty("amount") BigDecimal amount) {
+        this.accountTo = accountTo;
+        this.amount = amount;
+    }
+}
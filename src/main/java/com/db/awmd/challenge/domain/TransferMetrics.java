@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.Map;
+import lombok.Value;
+
+@Value
+public class TransferMetrics {
+
+  private final long uptimeMillis;
+
+  private final Map<TransferOutcome, LatencySummary> transfers;
+
+  private final Map<String, LatencySummary> accountOperations;
+
+  private final long lockAcquisitions;
+
+  private final LatencySummary lockWait;
+}
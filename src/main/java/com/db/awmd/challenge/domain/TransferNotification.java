@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.Value;
+
+@Value
+public class TransferNotification {
+
+  private final Account accountFrom;
+
+  private final Account accountTo;
+
+  private final BigDecimal amount;
+}
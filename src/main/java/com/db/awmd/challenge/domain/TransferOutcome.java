@@ -0,0 +1,58 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.AmountPrecisionException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.exception.NegativeAmountException;
+import com.db.awmd.challenge.exception.SameAccountTransferException;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+
+/**
+ * How a single transfer ended: completed, or the cause it was rejected for. The constants double as
+ * preallocated result codes, so a rejection can be reported with a fixed message and without
+ * building an exception.
+ */
+public enum TransferOutcome {
+
+  COMPLETED(null),
+  ACCOUNT_NOT_FOUND("Account not found"),
+  INSUFFICIENT_BALANCE("Transfer amount greater than available balance"),
+  SAME_ACCOUNT("Transfer initiated to same account as sender"),
+  NEGATIVE_AMOUNT("Transfer amount must be greater than zero!"),
+  AMOUNT_PRECISION("Amount cannot be stored in minor units!"),
+  OTHER("Transfer failed");
+
+  @Getter
+  private final String message;
+
+  private final CompletableFuture<TransferOutcome> completedFuture;
+
+  TransferOutcome(String message) {
+    this.message = message;
+    this.completedFuture = CompletableFuture.completedFuture(this);
+  }
+
+  /**
+   * A future already completed with this outcome, shared by every caller so an asynchronous
+   * rejection allocates nothing either. Callers may chain on it but must never complete it.
+   */
+  public CompletableFuture<TransferOutcome> asCompletedFuture() {
+    return this.completedFuture;
+  }
+
+  public static TransferOutcome of(RuntimeException rejection) {
+    if (rejection instanceof InsufficientBalanceException) {
+      return INSUFFICIENT_BALANCE;
+    } else if (rejection instanceof AccountNotFoundException) {
+      return ACCOUNT_NOT_FOUND;
+    } else if (rejection instanceof SameAccountTransferException) {
+      return SAME_ACCOUNT;
+    } else if (rejection instanceof NegativeAmountException) {
+      return NEGATIVE_AMOUNT;
+    } else if (rejection instanceof AmountPrecisionException) {
+      return AMOUNT_PRECISION;
+    }
+    return OTHER;
+  }
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import lombok.Value;
+
+/** A completed transfer as kept in the transfer history; the timestamp is in epoch milliseconds. */
+@Value
+public class TransferRecord {
+
+  private final long transferId;
+
+  private final String accountFrom;
+
+  private final String accountTo;
+
+  private final BigDecimal amount;
+
+  private final long timestamp;
+}
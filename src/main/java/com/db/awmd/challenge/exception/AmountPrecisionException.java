@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.exception;
+
+import java.math.BigDecimal;
+
+public class AmountPrecisionException extends RuntimeException {
+
+  private static final String ERROR_MSG_AMOUNTPRECISION = "Amount %s cannot be stored in minor units!";
+
+    public static String getErrorMessage(BigDecimal amount) {
+        return String.format(ERROR_MSG_AMOUNTPRECISION, amount);
+    }
+
+  public AmountPrecisionException(BigDecimal amount) {
+    super(getErrorMessage(amount));
+  }
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+import lombok.Getter;
+
+public class BatchTransferException extends RuntimeException {
+
+  @Getter
+  private final int index;
+
+  public BatchTransferException(int index, RuntimeException cause) {
+    super(cause.getMessage(), cause);
+    this.index = index;
+  }
+}
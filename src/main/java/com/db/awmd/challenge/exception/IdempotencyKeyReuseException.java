@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+public class IdempotencyKeyReuseException extends RuntimeException {
+
+  private static final String ERROR_MSG_IDEMPOTENCYKEYREUSE = "Idempotency key %s was already used for a different transfer!";
+
+  public static String getErrorMessage(String idempotencyKey) {
+    return String.format(ERROR_MSG_IDEMPOTENCYKEYREUSE, idempotencyKey);
+  }
+
+  public IdempotencyKeyReuseException(String idempotencyKey) {
+    super(getErrorMessage(idempotencyKey));
+  }
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.persistence;
+
+import java.math.BigDecimal;
+
+/** Account store that can be written to a balance snapshot while transfers keep running. */
+public interface AccountSnapshotSource {
+
+  /**
+   * Visits every account with its balance and the sequence of the last journal record that changed
+   * it, both read together under the account's lock. Accounts never changed since startup report 0.
+   */
+  void forEachAccount(AccountVisitor visitor);
+
+  @FunctionalInterface
+  interface AccountVisitor {
+
+    void visit(String accountId, BigDecimal balance, long sequence);
+  }
+}
@@ -0,0 +1,145 @@
+package com.db.awmd.challenge.persistence;
+
+import com.db.awmd.challenge.persistence.AccountSnapshotSource.AccountVisitor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary image of all balances, named after the journal sequence it was cut at.
+ *
+ * <p>Layout: {@code int magic | long sequence}, then per account {@code byte 1 | UTF accountId |
+ * long sequence | int scale | short length | unscaled bytes}, then {@code byte 0 | int count |
+ * int crc32}, the checksum covering everything before it.
+ */
+public final class BalanceSnapshotFile {
+
+  private static final int MAGIC = 0x534e4150;
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".snap";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private BalanceSnapshotFile() {
+  }
+
+  public static Path path(Path directory, long sequence) {
+    return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+  }
+
+  public static long sequenceOf(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+
+  /** Returns the snapshot files of the directory, oldest first. */
+  public static List<Path> list(Path directory) throws IOException {
+    List<Path> snapshots = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      for (Path path : stream) {
+        snapshots.add(path);
+      }
+    }
+    Collections.sort(snapshots);
+    return snapshots;
+  }
+
+  /** Writes and forces a snapshot of all accounts to the given file and returns the account count. */
+  public static int write(Path file, long sequence, AccountSnapshotSource accounts) throws IOException {
+    try (FileOutputStream fileStream = new FileOutputStream(file.toFile())) {
+      CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE),
+        new CRC32());
+      DataOutputStream out = new DataOutputStream(checked);
+      out.writeInt(MAGIC);
+      out.writeLong(sequence);
+      int[] count = new int[1];
+      try {
+        accounts.forEachAccount((accountId, balance, accountSequence) -> {
+          try {
+            out.writeByte(1);
+            out.writeUTF(accountId);
+            out.writeLong(accountSequence);
+            byte[] unscaled = balance.unscaledValue().toByteArray();
+            out.writeInt(balance.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+            count[0]++;
+          } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+          }
+        });
+      } catch (UncheckedIOException uioe) {
+        throw uioe.getCause();
+      }
+      out.writeByte(0);
+      out.writeInt(count[0]);
+      out.flush();
+      new DataOutputStream(fileStream).writeInt((int) checked.getChecksum().getValue());
+      fileStream.getChannel().force(true);
+      return count[0];
+    }
+  }
+
+  /** Whether the file is complete and its checksum matches. */
+  public static boolean isValid(Path file) {
+    try (InputStream in = Files.newInputStream(file)) {
+      long size = Files.size(file);
+      if (size < 4 + 8 + 1 + 4 + 4) {
+        return false;
+      }
+      BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+      CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+      DataInputStream data = new DataInputStream(checked);
+      if (data.readInt() != MAGIC) {
+        return false;
+      }
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long remaining = size - 4 - 4;
+      while (remaining > 0) {
+        int read = checked.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0) {
+          return false;
+        }
+        remaining -= read;
+      }
+      int expected = (int) checked.getChecksum().getValue();
+      return new DataInputStream(buffered).readInt() == expected;
+    } catch (IOException ioe) {
+      return false;
+    }
+  }
+
+  /** Feeds every account of a valid snapshot to the visitor and returns the snapshot's sequence. */
+  public static long read(Path file, AccountVisitor visitor) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a balance snapshot: " + file);
+      }
+      long sequence = in.readLong();
+      while (in.readByte() != 0) {
+        String accountId = in.readUTF();
+        long accountSequence = in.readLong();
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readShort()];
+        in.readFully(unscaled);
+        visitor.visit(accountId, new BigDecimal(new BigInteger(unscaled), scale), accountSequence);
+      }
+      return sequence;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.db.awmd.challenge.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Synchronized;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically writes the balances of all accounts next to the journal so that startup only has
+ * to replay the records written since. Accounts are read one at a time under their own stripe, so
+ * transfers are never stopped; the snapshot is cut at the journal sequence written when it starts
+ * and every account also records the last sequence it reflects (see {@link SnapshotTailFilter}).
+ * Once a snapshot is on disk, older snapshots beyond {@code journal.snapshot-retain} and the
+ * segments only they needed are deleted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+public class BalanceSnapshotter {
+
+  private final MappedTransferJournal journal;
+  private final AccountSnapshotSource accounts;
+  private final long intervalMillis;
+  private final int retain;
+  private ScheduledExecutorService scheduler;
+  private long lastSnapshotSequence;
+
+  @Autowired
+  public BalanceSnapshotter(MappedTransferJournal journal, AccountSnapshotSource accounts,
+    @Value("${journal.snapshot-interval-ms:60000}") long intervalMillis,
+    @Value("${journal.snapshot-retain:2}") int retain) {
+    if (retain <= 0) {
+      throw new IllegalArgumentException("At least one snapshot must be retained: " + retain);
+    }
+    this.journal = journal;
+    this.accounts = accounts;
+    this.intervalMillis = intervalMillis;
+    this.retain = retain;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    List<Path> snapshots = BalanceSnapshotFile.list(this.journal.getDirectory());
+    if (!snapshots.isEmpty()) {
+      this.lastSnapshotSequence = BalanceSnapshotFile.sequenceOf(snapshots.get(snapshots.size() - 1));
+    }
+    if (this.intervalMillis > 0) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "balance-snapshotter");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.scheduler.scheduleWithFixedDelay(this::snapshotQuietly, this.intervalMillis, this.intervalMillis,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws Exception {
+    if (this.scheduler != null) {
+      this.scheduler.shutdown();
+      this.scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    snapshotQuietly();
+  }
+
+  /** Writes a snapshot unless nothing was journaled since the last one, and returns its file. */
+  @Synchronized
+  public Path takeSnapshot() throws IOException {
+    long sequence = this.journal.getWrittenSequence();
+    if (sequence == this.lastSnapshotSequence) {
+      return null;
+    }
+    long start = System.nanoTime();
+    Path file = BalanceSnapshotFile.path(this.journal.getDirectory(), sequence);
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    int count = BalanceSnapshotFile.write(temporary, sequence, this.accounts);
+    // Accounts may already show changes newer than the cut; their records must not be lost in a crash.
+    this.journal.force();
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+    this.lastSnapshotSequence = sequence;
+    log.info("Snapshot of {} accounts at sequence {} written in {} ms", count, sequence,
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    prune();
+    return file;
+  }
+
+  private void prune() throws IOException {
+    List<Path> snapshots = BalanceSnapshotFile.list(this.journal.getDirectory());
+    for (int i = 0; i < snapshots.size() - this.retain; i++) {
+      Files.delete(snapshots.get(i));
+    }
+    Path oldest = snapshots.get(Math.max(0, snapshots.size() - this.retain));
+    this.journal.deleteSegmentsBefore(BalanceSnapshotFile.sequenceOf(oldest));
+  }
+
+  private void snapshotQuietly() {
+    try {
+      takeSnapshot();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Balance snapshot failed", e);
+    }
+  }
+}
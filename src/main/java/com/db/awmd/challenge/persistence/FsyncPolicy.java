@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.persistence;
+
+public enum FsyncPolicy {
+
+  /** Every commit waits until its record is forced to disk; concurrent commits share one force. */
+  EVERY_COMMIT,
+
+  /** A background thread forces the journal every flush interval; commits do not wait. */
+  INTERVAL,
+
+  /** The journal is never forced explicitly; the operating system writes pages back on its own. */
+  NEVER
+}
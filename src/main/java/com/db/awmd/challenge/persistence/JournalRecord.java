@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.persistence;
+
+import java.math.BigDecimal;
+import lombok.Value;
+
+@Value
+public class JournalRecord {
+
+  public enum Type { CREATE, UPDATE, DEBIT, CREDIT, TRANSFER, CLEAR }
+
+  private final long sequence;
+
+  private final Type type;
+
+  private final String accountId;
+
+  private final String counterpartyId;
+
+  private final BigDecimal amount;
+}
@@ -0,0 +1,588 @@
+package com.db.awmd.challenge.persistence;
+
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-ahead journal kept in fixed-size, memory-mapped segment files named after the sequence
+ * number of their first record. Appends only copy a record into the mapped segment; making it
+ * durable is a separate step governed by the {@link FsyncPolicy}, so callers can release their
+ * account locks before they wait for the disk.
+ *
+ * <p>Record layout: {@code int length | byte type | long sequence | string accountId |
+ * string counterpartyId | amount | int crc32}, where length counts the bytes after itself, a
+ * string is a short byte count (-1 for null) followed by UTF-8 bytes and an amount is an int scale,
+ * a short byte count (-1 for null) and the unscaled value. A zero length marks the end of a
+ * segment. Fields longer than a short byte count can hold are rejected before anything is appended.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+public class MappedTransferJournal implements TransferJournal {
+
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int LENGTH_BYTES = 4;
+  private static final int CRC_BYTES = 4;
+  private static final Type[] TYPES = Type.values();
+  private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+  private final Path directory;
+  private final int segmentSize;
+  private final FsyncPolicy fsyncPolicy;
+  private final long flushIntervalMillis;
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final CRC32 crc = new CRC32();
+  private FileChannel segmentChannel;
+  private MappedByteBuffer segment;
+  private long nextSequence = 1;
+  private volatile long writtenSequence;
+
+  private final ReentrantLock durabilityLock = new ReentrantLock();
+  private final Condition flushed = this.durabilityLock.newCondition();
+  private boolean flushing;
+  private volatile long durableSequence;
+
+  private ScheduledExecutorService flusher;
+
+  private final Queue<DurabilityWaiter> durabilityWaiters = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean syncScheduled = new AtomicBoolean();
+  private ExecutorService syncer;
+
+  @Autowired
+  public MappedTransferJournal(@Value("${journal.directory:data/journal}") String directory,
+    @Value("${journal.segment-size:67108864}") int segmentSize,
+    @Value("${journal.fsync-policy:EVERY_COMMIT}") FsyncPolicy fsyncPolicy,
+    @Value("${journal.flush-interval-ms:10}") long flushIntervalMillis) {
+    this.directory = Paths.get(directory);
+    this.segmentSize = segmentSize;
+    this.fsyncPolicy = fsyncPolicy;
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  @Override
+  public void replay(Consumer<JournalRecord> consumer) {
+    this.appendLock.lock();
+    try {
+      if (this.segment != null) {
+        throw new IllegalStateException("Journal has already been replayed");
+      }
+      Files.createDirectories(this.directory);
+      long start = System.nanoTime();
+      SnapshotTailFilter tail = restoreSnapshot(consumer);
+      List<Path> segments = listSegments();
+      // Segments that end before the snapshot's cut are not even mapped.
+      int first = 0;
+      while (first < segments.size() - 1
+        && firstSequenceOf(segments.get(first + 1)) <= tail.getSnapshotSequence() + 1) {
+        first++;
+      }
+      for (int i = first; i < segments.size(); i++) {
+        openSegment(segments.get(i));
+        this.nextSequence = firstSequenceOf(segments.get(i));
+        if (!readSegment(tail, tail.getSnapshotSequence())) {
+          truncateAfter(segments.subList(i + 1, segments.size()));
+          break;
+        }
+        if (i < segments.size() - 1) {
+          closeSegment();
+        }
+      }
+      this.nextSequence = Math.max(this.nextSequence, tail.getSnapshotSequence() + 1);
+      this.writtenSequence = this.nextSequence - 1;
+      if (this.segment == null) {
+        openSegment(segmentPath(this.nextSequence));
+      }
+      this.durableSequence = this.writtenSequence;
+      log.info("Journal recovered up to sequence {} from snapshot at {} and {} segment(s) in {} ms",
+        this.writtenSequence, tail.getSnapshotSequence(), segments.size() - first,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    } finally {
+      this.appendLock.unlock();
+    }
+    if (this.fsyncPolicy == FsyncPolicy.INTERVAL) {
+      this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.flusher.scheduleWithFixedDelay(this::flushQuietly, this.flushIntervalMillis,
+        this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+    } else if (this.fsyncPolicy == FsyncPolicy.EVERY_COMMIT) {
+      this.syncer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "journal-syncer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  @Override
+  public long append(Type type, String accountId, String counterpartyId, BigDecimal amount) {
+    byte[] accountBytes = encode(accountId);
+    byte[] counterpartyBytes = encode(counterpartyId);
+    byte[] unscaledBytes = amount == null ? null : amount.unscaledValue().toByteArray();
+    int recordLength = LENGTH_BYTES + bodyLength(accountBytes, counterpartyBytes, unscaledBytes) + CRC_BYTES;
+    if (recordLength + LENGTH_BYTES > this.segmentSize) {
+      throw new IllegalArgumentException("Journal record of " + recordLength + " bytes exceeds segment size");
+    }
+
+    this.appendLock.lock();
+    try {
+      if (this.segment == null) {
+        throw new IllegalStateException("Journal must be replayed before appending");
+      }
+      if (this.segment.remaining() < recordLength + LENGTH_BYTES) {
+        rollSegment();
+      }
+      long sequence = this.nextSequence++;
+      write(type, sequence, accountBytes, counterpartyBytes, amount == null ? 0 : amount.scale(), unscaledBytes);
+      this.writtenSequence = sequence;
+      return sequence;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    } finally {
+      this.appendLock.unlock();
+    }
+  }
+
+  /** Writes the records back to back into one segment, so a failure leaves none of them behind. */
+  @Override
+  public long appendAll(List<JournalRecord> records) {
+    List<byte[]> fields = new ArrayList<>(records.size() * 3);
+    int totalLength = 0;
+    for (JournalRecord record : records) {
+      byte[] accountBytes = encode(record.getAccountId());
+      byte[] counterpartyBytes = encode(record.getCounterpartyId());
+      byte[] unscaledBytes = record.getAmount() == null ? null : record.getAmount().unscaledValue().toByteArray();
+      totalLength += LENGTH_BYTES + bodyLength(accountBytes, counterpartyBytes, unscaledBytes) + CRC_BYTES;
+      fields.add(accountBytes);
+      fields.add(counterpartyBytes);
+      fields.add(unscaledBytes);
+    }
+    if (totalLength + LENGTH_BYTES > this.segmentSize) {
+      throw new IllegalArgumentException("Journal records of " + totalLength + " bytes exceed segment size");
+    }
+
+    this.appendLock.lock();
+    try {
+      if (this.segment == null) {
+        throw new IllegalStateException("Journal must be replayed before appending");
+      }
+      if (this.segment.remaining() < totalLength + LENGTH_BYTES) {
+        rollSegment();
+      }
+      long sequence = this.nextSequence - 1;
+      for (int i = 0; i < records.size(); i++) {
+        JournalRecord record = records.get(i);
+        sequence = this.nextSequence++;
+        write(record.getType(), sequence, fields.get(3 * i), fields.get(3 * i + 1),
+          record.getAmount() == null ? 0 : record.getAmount().scale(), fields.get(3 * i + 2));
+      }
+      this.writtenSequence = sequence;
+      return sequence;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    } finally {
+      this.appendLock.unlock();
+    }
+  }
+
+  private void write(Type type, long sequence, byte[] accountBytes, byte[] counterpartyBytes, int scale,
+    byte[] unscaledBytes) {
+    int bodyLength = bodyLength(accountBytes, counterpartyBytes, unscaledBytes);
+    int start = this.segment.position();
+    this.segment.putInt(bodyLength + CRC_BYTES);
+    this.segment.put((byte) type.ordinal());
+    this.segment.putLong(sequence);
+    putBytes(this.segment, accountBytes);
+    putBytes(this.segment, counterpartyBytes);
+    this.segment.putInt(scale);
+    putBytes(this.segment, unscaledBytes);
+    this.segment.putInt(checksum(this.segment, start + LENGTH_BYTES, bodyLength));
+  }
+
+  @Override
+  public void awaitDurable(long sequence) {
+    if (this.fsyncPolicy != FsyncPolicy.EVERY_COMMIT || this.durableSequence >= sequence) {
+      return;
+    }
+    this.durabilityLock.lock();
+    try {
+      while (this.durableSequence < sequence) {
+        if (this.flushing) {
+          this.flushed.awaitUninterruptibly();
+          continue;
+        }
+        // Group commit: this thread forces everything written so far on behalf of all waiters.
+        this.flushing = true;
+        this.durabilityLock.unlock();
+        long target = 0;
+        try {
+          target = flush();
+        } finally {
+          this.durabilityLock.lock();
+          this.flushing = false;
+          this.durableSequence = Math.max(this.durableSequence, target);
+          this.flushed.signalAll();
+        }
+      }
+    } finally {
+      this.durabilityLock.unlock();
+    }
+  }
+
+  /**
+   * Under EVERY_COMMIT the record is forced by the journal-syncer thread, which takes part in the
+   * same group commit as the blocking waiters and completes every future its force covered.
+   */
+  @Override
+  public CompletableFuture<Void> whenDurable(long sequence) {
+    if (this.fsyncPolicy != FsyncPolicy.EVERY_COMMIT || this.durableSequence >= sequence) {
+      return DURABLE;
+    }
+    CompletableFuture<Void> durable = new CompletableFuture<>();
+    this.durabilityWaiters.add(new DurabilityWaiter(sequence, durable));
+    if (this.syncScheduled.compareAndSet(false, true)) {
+      this.syncer.execute(this::syncWaiters);
+    }
+    return durable;
+  }
+
+  private void syncWaiters() {
+    do {
+      try {
+        awaitDurable(this.writtenSequence);
+        completeDurableWaiters(null);
+      } catch (RuntimeException re) {
+        log.warn("Journal sync failed", re);
+        completeDurableWaiters(re);
+      }
+      this.syncScheduled.set(false);
+      // A waiter added after the force started is either picked up here or by the task it scheduled.
+    } while (!this.durabilityWaiters.isEmpty() && this.syncScheduled.compareAndSet(false, true));
+  }
+
+  private void completeDurableWaiters(RuntimeException failure) {
+    long durable = this.durableSequence;
+    for (Iterator<DurabilityWaiter> it = this.durabilityWaiters.iterator(); it.hasNext(); ) {
+      DurabilityWaiter waiter = it.next();
+      if (failure != null) {
+        it.remove();
+        waiter.durable.completeExceptionally(failure);
+      } else if (waiter.sequence <= durable) {
+        it.remove();
+        waiter.durable.complete(null);
+      }
+    }
+  }
+
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  public long getWrittenSequence() {
+    return this.writtenSequence;
+  }
+
+  public long getDurableSequence() {
+    return this.durableSequence;
+  }
+
+  /** Forces everything written so far to disk regardless of the fsync policy. */
+  public void force() {
+    flush();
+  }
+
+  /**
+   * Deletes the closed segments that only hold records up to the given sequence, once a snapshot
+   * has made them unnecessary for recovery.
+   */
+  public void deleteSegmentsBefore(long sequence) throws IOException {
+    this.appendLock.lock();
+    try {
+      List<Path> segments = listSegments();
+      for (int i = 0; i < segments.size() - 1; i++) {
+        if (firstSequenceOf(segments.get(i + 1)) > sequence + 1) {
+          break;
+        }
+        Files.delete(segments.get(i));
+      }
+    } finally {
+      this.appendLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (this.flusher != null) {
+      this.flusher.shutdown();
+    }
+    if (this.syncer != null) {
+      this.syncer.shutdown();
+    }
+    this.appendLock.lock();
+    try {
+      if (this.segment != null) {
+        if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+          this.segment.force();
+        }
+        closeSegment();
+      }
+    } finally {
+      this.appendLock.unlock();
+    }
+  }
+
+  private long flush() {
+    MappedByteBuffer current;
+    long target;
+    this.appendLock.lock();
+    try {
+      current = this.segment;
+      target = this.writtenSequence;
+    } finally {
+      this.appendLock.unlock();
+    }
+    // Earlier segments were forced when they were rolled, so forcing the current one is enough.
+    current.force();
+    return target;
+  }
+
+  private void flushQuietly() {
+    try {
+      long target = flush();
+      this.durableSequence = Math.max(this.durableSequence, target);
+    } catch (RuntimeException re) {
+      log.warn("Journal flush failed", re);
+    }
+  }
+
+  /**
+   * Loads the newest intact snapshot into the consumer and returns the filter the journal tail has
+   * to pass through. Without a snapshot every record passes.
+   */
+  private SnapshotTailFilter restoreSnapshot(Consumer<JournalRecord> consumer) throws IOException {
+    List<Path> snapshots = BalanceSnapshotFile.list(this.directory);
+    for (int i = snapshots.size() - 1; i >= 0; i--) {
+      Path snapshot = snapshots.get(i);
+      if (!BalanceSnapshotFile.isValid(snapshot)) {
+        log.warn("Skipping damaged snapshot {}", snapshot);
+        continue;
+      }
+      Map<String, Long> accountSequences = new HashMap<>();
+      long sequence = BalanceSnapshotFile.read(snapshot, (accountId, balance, accountSequence) -> {
+        accountSequences.put(accountId, accountSequence);
+        consumer.accept(new JournalRecord(accountSequence, Type.CREATE, accountId, null, balance));
+      });
+      log.info("Restored {} accounts from snapshot {}", accountSequences.size(), snapshot);
+      return new SnapshotTailFilter(sequence, accountSequences, consumer);
+    }
+    return new SnapshotTailFilter(0, new HashMap<>(), consumer);
+  }
+
+  private void rollSegment() throws IOException {
+    if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+      this.segment.force();
+    }
+    closeSegment();
+    openSegment(segmentPath(this.nextSequence));
+  }
+
+  private void openSegment(Path path) throws IOException {
+    this.segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE);
+    this.segment = this.segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+  }
+
+  private void closeSegment() throws IOException {
+    this.segmentChannel.close();
+    this.segmentChannel = null;
+    this.segment = null;
+  }
+
+  /**
+   * Reads records from the start of the open segment and leaves its position after the last valid
+   * one. Returns false when the segment ends in a torn or corrupt record. Records up to
+   * {@code skipThrough} were forced before a snapshot covered them, so they are stepped over
+   * without being checked or decoded.
+   */
+  private boolean readSegment(Consumer<JournalRecord> consumer, long skipThrough) {
+    MappedByteBuffer buffer = this.segment;
+    while (buffer.remaining() >= LENGTH_BYTES) {
+      int start = buffer.position();
+      int length = buffer.getInt();
+      if (length == 0) {
+        buffer.position(start);
+        return true;
+      }
+      if (length < 1 + 8 + CRC_BYTES || length > buffer.remaining()) {
+        return discardTail(start);
+      }
+      long sequence = buffer.getLong(start + LENGTH_BYTES + 1);
+      if (sequence <= skipThrough && sequence == this.nextSequence) {
+        buffer.position(start + LENGTH_BYTES + length);
+        this.nextSequence = sequence + 1;
+        this.writtenSequence = sequence;
+        continue;
+      }
+      int bodyLength = length - CRC_BYTES;
+      int storedCrc = buffer.getInt(start + LENGTH_BYTES + bodyLength);
+      if (storedCrc != checksum(buffer, start + LENGTH_BYTES, bodyLength)) {
+        return discardTail(start);
+      }
+      JournalRecord record = decode(buffer);
+      buffer.position(start + LENGTH_BYTES + length);
+      this.nextSequence = record.getSequence() + 1;
+      this.writtenSequence = record.getSequence();
+      consumer.accept(record);
+    }
+    return true;
+  }
+
+  private boolean discardTail(int start) {
+    log.warn("Discarding torn journal record at offset {} after sequence {}", start, this.writtenSequence);
+    this.segment.position(start);
+    while (this.segment.hasRemaining()) {
+      this.segment.put((byte) 0);
+    }
+    this.segment.position(start);
+    return false;
+  }
+
+  private void truncateAfter(List<Path> laterSegments) throws IOException {
+    for (Path path : laterSegments) {
+      log.warn("Deleting journal segment {} that follows a torn record", path);
+      Files.delete(path);
+    }
+  }
+
+  private List<Path> listSegments() throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+      SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        segments.add(path);
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private static long firstSequenceOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private Path segmentPath(long firstSequence) {
+    return this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+  }
+
+  private int checksum(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + length).position(offset);
+    this.crc.reset();
+    this.crc.update(view);
+    return (int) this.crc.getValue();
+  }
+
+  private static JournalRecord decode(ByteBuffer buffer) {
+    Type type = TYPES[buffer.get()];
+    long sequence = buffer.getLong();
+    String accountId = decodeString(buffer);
+    String counterpartyId = decodeString(buffer);
+    int scale = buffer.getInt();
+    byte[] unscaled = getBytes(buffer);
+    BigDecimal amount = unscaled == null ? null : new BigDecimal(new BigInteger(unscaled), scale);
+    return new JournalRecord(sequence, type, accountId, counterpartyId, amount);
+  }
+
+  private static byte[] encode(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String decodeString(ByteBuffer buffer) {
+    byte[] bytes = getBytes(buffer);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int bodyLength(byte[] accountBytes, byte[] counterpartyBytes, byte[] unscaledBytes) {
+    return 1 + 8 + stringLength(accountBytes) + stringLength(counterpartyBytes) + 4 + stringLength(unscaledBytes);
+  }
+
+  private static int stringLength(byte[] bytes) {
+    if (bytes != null && bytes.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Journal field of " + bytes.length + " bytes exceeds " + Short.MAX_VALUE);
+    }
+    return 2 + (bytes == null ? 0 : bytes.length);
+  }
+
+  private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer.putShort((short) -1);
+    } else {
+      buffer.putShort((short) bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private static byte[] getBytes(ByteBuffer buffer) {
+    short length = buffer.getShort();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static final class DurabilityWaiter {
+
+    private final long sequence;
+    private final CompletableFuture<Void> durable;
+
+    private DurabilityWaiter(long sequence, CompletableFuture<Void> durable) {
+      this.sequence = sequence;
+      this.durable = durable;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.persistence;
+
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Passes on only the part of the journal that a restored snapshot does not contain yet. The
+ * snapshot is cut at a journal sequence, but each account was read a little later than that, so a
+ * record newer than the cut is applied to an account only if it is also newer than the sequence
+ * the account was read at. A transfer may therefore be reduced to just its debit or credit leg.
+ */
+class SnapshotTailFilter implements Consumer<JournalRecord> {
+
+  private final long snapshotSequence;
+  private final Map<String, Long> accountSequences;
+  private final Consumer<JournalRecord> consumer;
+  private long newestAccountSequence;
+
+  SnapshotTailFilter(long snapshotSequence, Map<String, Long> accountSequences,
+    Consumer<JournalRecord> consumer) {
+    this.snapshotSequence = snapshotSequence;
+    this.accountSequences = accountSequences;
+    this.consumer = consumer;
+    for (long sequence : accountSequences.values()) {
+      this.newestAccountSequence = Math.max(this.newestAccountSequence, sequence);
+    }
+  }
+
+  long getSnapshotSequence() {
+    return this.snapshotSequence;
+  }
+
+  @Override
+  public void accept(JournalRecord record) {
+    long sequence = record.getSequence();
+    if (sequence <= this.snapshotSequence) {
+      return;
+    }
+    if (sequence > this.newestAccountSequence) {
+      this.consumer.accept(record);
+      return;
+    }
+    switch (record.getType()) {
+      case CLEAR:
+        this.accountSequences.clear();
+        this.newestAccountSequence = 0;
+        this.consumer.accept(record);
+        break;
+      case TRANSFER:
+        boolean debit = isMissing(record.getAccountId(), sequence);
+        boolean credit = isMissing(record.getCounterpartyId(), sequence);
+        if (debit && credit) {
+          this.consumer.accept(record);
+        } else if (debit) {
+          this.consumer.accept(new JournalRecord(sequence, Type.DEBIT, record.getAccountId(), null,
+            record.getAmount()));
+        } else if (credit) {
+          this.consumer.accept(new JournalRecord(sequence, Type.CREDIT, record.getCounterpartyId(), null,
+            record.getAmount()));
+        }
+        break;
+      default:
+        if (isMissing(record.getAccountId(), sequence)) {
+          this.consumer.accept(record);
+        }
+    }
+  }
+
+  private boolean isMissing(String accountId, long sequence) {
+    Long accountSequence = this.accountSequences.get(accountId);
+    return accountSequence == null || sequence > accountSequence;
+  }
+}
@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.persistence;
+
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface TransferJournal {
+
+  /**
+   * Feeds every record written so far to the consumer in journal order. Must be called once at
+   * startup before the first append.
+   */
+  void replay(Consumer<JournalRecord> consumer);
+
+  /** Appends a record and returns its sequence number. */
+  long append(Type type, String accountId, String counterpartyId, BigDecimal amount);
+
+  /**
+   * Appends the records as one unit and returns the sequence number of the last: if it throws,
+   * none of them is kept. The sequence numbers of the given records are ignored.
+   */
+  default long appendAll(List<JournalRecord> records) {
+    long sequence = 0;
+    for (JournalRecord record : records) {
+      sequence = append(record.getType(), record.getAccountId(), record.getCounterpartyId(), record.getAmount());
+    }
+    return sequence;
+  }
+
+  /** Blocks until the record with the given sequence number is durable under the fsync policy. */
+  void awaitDurable(long sequence);
+
+  /**
+   * Returns a future that completes once the record with the given sequence number is durable, for
+   * callers that must not block while the disk is forced.
+   */
+  default CompletableFuture<Void> whenDurable(long sequence) {
+    awaitDurable(sequence);
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /** Whether appended records are kept at all, stores may skip ordering work when they are not. */
+  default boolean isEnabled() {
+    return true;
+  }
+}
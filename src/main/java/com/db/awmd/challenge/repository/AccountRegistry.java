@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Hands out dense int handles for account ids, 0 for the first account registered, 1 for the next
+ * and so on, so that per-account state can live in primitive arrays indexed by handle rather than
+ * in an object per account behind a map entry. Lookups take no lock.
+ */
+interface AccountRegistry {
+
+  int ABSENT = -1;
+
+  /** Handle of the account, or {@link #ABSENT} if the id was never registered. */
+  int handleOf(String accountId);
+
+  int size();
+
+  /**
+   * Registers the id and returns its new handle, or {@link #ABSENT} if it is registered already.
+   * The initializer gets the handle before any other thread can look it up, to set up the state
+   * stored under it.
+   */
+  int add(String accountId, IntConsumer initializer);
+
+  /** Visits every registered id with its handle, in no particular order. */
+  void forEach(ObjIntConsumer<String> visitor);
+}
@@ -1,17 +1,58 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.*;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
+
+  /**
+   * Creates the accounts in order and returns, for each one, null or the exception
+   * {@link #createAccount} would have thrown. Engines with a journal wait for it once for the whole
+   * list rather than once per account.
+   */
+  default List<RuntimeException> createAccounts(List<Account> accounts) {
+    List<RuntimeException> failures = new ArrayList<>(accounts.size());
+    for (Account account : accounts) {
+      try {
+        createAccount(account);
+        failures.add(null);
+      } catch (RuntimeException re) {
+        failures.add(re);
+      }
+    }
+    return failures;
+  }
   void updateAccount(Account account);
   void withDraw(String accountId, BigDecimal amount) throws InsufficientBalanceException;
   void credit(String accountId, BigDecimal amount);
+  void transfer(String accountFromId, String accountToId, BigDecimal amount) throws InsufficientBalanceException;
+
+  /**
+   * Same as {@link #transfer}, also rejecting amounts that are not positive, but reports a
+   * rejection as its outcome instead of throwing, so that a rejected transfer allocates nothing.
+   */
+  TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount);
+
+  /**
+   * Same as {@link #tryTransfer} without waiting for durability or a queued engine: the future
+   * completes with the outcome once the transfer is applied and, with a journal, forced to disk.
+   */
+  CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId, BigDecimal amount);
+  void transferAll(List<Transfer> transfers) throws BatchTransferException;
 
   Account getAccount(String accountId);
 
+  /** Consistent, immutable balance of the account, read without blocking or slowing its writers. */
+  AccountSnapshot getAccountSnapshot(String accountId);
+
   void clearAccounts();
 }
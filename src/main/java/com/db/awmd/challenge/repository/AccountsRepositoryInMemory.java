@@ -1,14 +1,34 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.persistence.AccountSnapshotSource;
+import com.db.awmd.challenge.persistence.JournalRecord;
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import com.db.awmd.challenge.persistence.TransferJournal;
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public class AccountsRepositoryInMemory implements AccountsRepository {
+@ConditionalOnProperty(name = "accounts.storage", havingValue = "big-decimal", matchIfMissing = true)
+public class AccountsRepositoryInMemory implements AccountsRepository, AccountSnapshotSource, PointInTimeBalances {
   private static final AccountsRepositoryInMemory accountsRepositoryInMemory=new AccountsRepositoryInMemory();  
   private AccountsRepositoryInMemory(){}  
    
@@ -16,50 +36,420 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
    return accountsRepositoryInMemory;  
   }  
 
-  private static final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private static final Map<String, VersionedAccount> accounts = new ConcurrentHashMap<>();
+
+  @Autowired
+  private StripedAccountLocks accountLocks;
+
+  @Autowired
+  private TransferJournal journal;
+
+  private final Map<String, Long> journalSequences = new ConcurrentHashMap<>();
+
+  private volatile ConsistentCut<String> cut;
+
+  @PostConstruct
+  public void recover() {
+    this.journal.replay(this::applyRecord);
+  }
+
+  /** Applies a journaled change without re-checking it, it was validated before it was written. */
+  private void applyRecord(JournalRecord record) {
+    switch (record.getType()) {
+      case CREATE:
+      case UPDATE:
+        accounts.put(record.getAccountId(), new VersionedAccount(record.getAccountId(), record.getAmount()));
+        break;
+      case DEBIT:
+        adjust(record.getAccountId(), record.getAmount().negate());
+        break;
+      case CREDIT:
+        adjust(record.getAccountId(), record.getAmount());
+        break;
+      case TRANSFER:
+        adjust(record.getAccountId(), record.getAmount().negate());
+        adjust(record.getCounterpartyId(), record.getAmount());
+        break;
+      case CLEAR:
+        accounts.clear();
+        break;
+    }
+  }
+
+  private static void adjust(String accountId, BigDecimal amount) {
+    Account account = accounts.get(accountId);
+    account.setBalance(account.getBalance().add(amount));
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
-      throw new DuplicateAccountIdException(account.getAccountId());
+    this.journal.awaitDurable(appendAccount(account));
+  }
+
+  @Override
+  public List<RuntimeException> createAccounts(List<Account> accounts) {
+    List<RuntimeException> failures = new ArrayList<>(accounts.size());
+    long lastSequence = 0;
+    for (Account account : accounts) {
+      try {
+        lastSequence = Math.max(lastSequence, appendAccount(account));
+        failures.add(null);
+      } catch (RuntimeException re) {
+        failures.add(re);
+      }
     }
+    this.journal.awaitDurable(lastSequence);
+    return failures;
+  }
+
+  /** Creates the account and journals it without waiting, returns the journal sequence. */
+  private long appendAccount(Account account) throws DuplicateAccountIdException {
+    long sequence;
+    this.accountLocks.lock(account.getAccountId());
+    try {
+      if (accounts.containsKey(account.getAccountId())) {
+        throw new DuplicateAccountIdException(account.getAccountId());
+      }
+      sequence = this.journal.append(Type.CREATE, account.getAccountId(), null, account.getBalance());
+      accounts.put(account.getAccountId(), new VersionedAccount(account.getAccountId(), account.getBalance()));
+      created(account.getAccountId());
+      recordSequence(account.getAccountId(), sequence);
+    } finally {
+      this.accountLocks.unlock(account.getAccountId());
+    }
+    return sequence;
   }
   @Override
   public void updateAccount(Account account) {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
-    	accounts.replace(previousAccount.getAccountId(), account);
+    long sequence;
+    this.accountLocks.lock(account.getAccountId());
+    try {
+      sequence = this.journal.append(Type.UPDATE, account.getAccountId(), null, account.getBalance());
+      Account previousAccount = accounts.putIfAbsent(account.getAccountId(),
+        new VersionedAccount(account.getAccountId(), account.getBalance()));
+      if (previousAccount != null) {
+        previousAccount.setBalance(account.getBalance());
+      } else {
+        created(account.getAccountId());
+      }
+      recordSequence(account.getAccountId(), sequence);
+    } finally {
+      this.accountLocks.unlock(account.getAccountId());
     }
+    this.journal.awaitDurable(sequence);
   }
 
   @Override
   public void withDraw(String accountId, BigDecimal amount) throws InsufficientBalanceException{
-    try{
-    accounts.compute(accountId, (ID,account) -> {account.withDraw(amount);
-    return account;}
-    );
-    }
-    catch (InsufficientBalanceException ibe) {
-      throw ibe;
+    long sequence;
+    this.accountLocks.lock(accountId);
+    try {
+      Account account = existingAccount(accountId);
+      BigDecimal balance = account.getBalance();
+      account.withDraw(amount);
+      sequence = appendOrRestore(Type.DEBIT, account, balance, null, null, amount);
+      recordSequence(accountId, sequence);
+    } finally {
+      this.accountLocks.unlock(accountId);
     }
+    this.journal.awaitDurable(sequence);
   }
 
   @Override
   public void credit(String accountId, BigDecimal amount) {
-    accounts.compute(accountId, (ID,account) -> {account.credit(amount);
-      return account;}
-      );
+    long sequence;
+    this.accountLocks.lock(accountId);
+    try {
+      Account account = existingAccount(accountId);
+      BigDecimal balance = account.getBalance();
+      account.credit(amount);
+      sequence = appendOrRestore(Type.CREDIT, account, balance, null, null, amount);
+      recordSequence(accountId, sequence);
+    } finally {
+      this.accountLocks.unlock(accountId);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, BigDecimal amount)
+    throws InsufficientBalanceException {
+    if (accountFromId.equals(accountToId)) {
+      throw new SameAccountTransferException(accountToId);
+    }
+    long sequence;
+    this.accountLocks.lock(accountFromId, accountToId);
+    try {
+      Account accountFrom = existingAccount(accountFromId);
+      Account accountTo = existingAccount(accountToId);
+      beforeChange(accountFromId, accountToId);
+      BigDecimal balanceFrom = accountFrom.getBalance();
+      BigDecimal balanceTo = accountTo.getBalance();
+      accountFrom.withDraw(amount);
+      try {
+        accountTo.credit(amount);
+      } catch (RuntimeException re) {
+        accountFrom.credit(amount);
+        throw re;
+      }
+      sequence = appendOrRestore(Type.TRANSFER, accountFrom, balanceFrom, accountTo, balanceTo, amount);
+      recordSequence(accountFromId, sequence);
+      recordSequence(accountToId, sequence);
+    } finally {
+      this.accountLocks.unlock(accountFromId, accountToId);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    long applied = applyTransfer(accountFromId, accountToId, amount);
+    if (AppliedTransfer.isRejected(applied)) {
+      return AppliedTransfer.rejection(applied);
+    }
+    this.journal.awaitDurable(applied);
+    return TransferOutcome.COMPLETED;
+  }
+
+  @Override
+  public CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId,
+    BigDecimal amount) {
+    return AppliedTransfer.whenDurable(this.journal, applyTransfer(accountFromId, accountToId, amount));
+  }
+
+  private long applyTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    if (accountFromId.equals(accountToId)) {
+      return AppliedTransfer.rejected(TransferOutcome.SAME_ACCOUNT);
+    }
+    long sequence;
+    this.accountLocks.lock(accountFromId, accountToId);
+    try {
+      Account accountFrom = accounts.get(accountFromId);
+      Account accountTo = accounts.get(accountToId);
+      if (accountFrom == null || accountTo == null) {
+        return AppliedTransfer.rejected(TransferOutcome.ACCOUNT_NOT_FOUND);
+      }
+      if (amount.signum() <= 0) {
+        return AppliedTransfer.rejected(TransferOutcome.NEGATIVE_AMOUNT);
+      }
+      beforeChange(accountFromId, accountToId);
+      BigDecimal balanceFrom = accountFrom.getBalance();
+      BigDecimal balanceTo = accountTo.getBalance();
+      if (!accountFrom.tryWithDraw(amount)) {
+        return AppliedTransfer.rejected(TransferOutcome.INSUFFICIENT_BALANCE);
+      }
+      accountTo.credit(amount);
+      sequence = appendOrRestore(Type.TRANSFER, accountFrom, balanceFrom, accountTo, balanceTo, amount);
+      recordSequence(accountFromId, sequence);
+      recordSequence(accountToId, sequence);
+    } finally {
+      this.accountLocks.unlock(accountFromId, accountToId);
+    }
+    return sequence;
+  }
+
+  @Override
+  public void transferAll(List<Transfer> transfers) throws BatchTransferException {
+    Set<String> accountIds = new HashSet<>();
+    for (Transfer transfer : transfers) {
+      accountIds.add(transfer.getAccountFrom());
+      accountIds.add(transfer.getAccountTo());
+    }
+    long sequence = 0;
+    int[] stripes = this.accountLocks.lockAll(accountIds);
+    try {
+      // Work on copies so that nothing is visible until every transfer of the batch has passed.
+      Map<String, Account> pending = new HashMap<>();
+      for (int i = 0; i < transfers.size(); i++) {
+        Transfer transfer = transfers.get(i);
+        try {
+          if (transfer.getAccountFrom().equals(transfer.getAccountTo())) {
+            throw new SameAccountTransferException(transfer.getAccountTo());
+          }
+          pendingAccount(pending, transfer.getAccountFrom()).withDraw(transfer.getAmount());
+          pendingAccount(pending, transfer.getAccountTo()).credit(transfer.getAmount());
+        } catch (RuntimeException re) {
+          throw new BatchTransferException(i, re);
+        }
+      }
+      List<JournalRecord> records = new ArrayList<>(transfers.size());
+      for (Transfer transfer : transfers) {
+        records.add(new JournalRecord(0, Type.TRANSFER, transfer.getAccountFrom(), transfer.getAccountTo(),
+          transfer.getAmount()));
+      }
+      sequence = this.journal.appendAll(records);
+      beforeChange(pending.keySet());
+      for (Account account : pending.values()) {
+        accounts.get(account.getAccountId()).setBalance(account.getBalance());
+      }
+      for (String accountId : accountIds) {
+        recordSequence(accountId, sequence);
+      }
+    } finally {
+      this.accountLocks.unlockAll(stripes);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void forEachAccount(AccountVisitor visitor) {
+    for (String accountId : accounts.keySet()) {
+      BigDecimal balance;
+      Long sequence;
+      this.accountLocks.lock(accountId);
+      try {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+          continue;
+        }
+        balance = account.getBalance();
+        sequence = this.journalSequences.get(accountId);
+      } finally {
+        this.accountLocks.unlock(accountId);
+      }
+      visitor.visit(accountId, balance, sequence == null ? 0 : sequence);
+    }
+  }
+
+  /**
+   * Reads the stripes in parallel against a {@link ConsistentCut}. Each stripe stays locked while
+   * its accounts are read, about {@code accounts / transfer.lock-stripes} of them.
+   */
+  @Override
+  public synchronized <S extends BalanceSink> S collectBalances(Supplier<S> sinks, BiConsumer<S, S> merge) {
+    ConsistentCut<String> cut = new ConsistentCut<>(this.accountLocks.stripeCount(), this::balanceOf);
+    this.cut = cut;
+    try {
+      List<List<String>> accountIdsByStripe = new ArrayList<>(this.accountLocks.stripeCount());
+      for (int i = 0; i < this.accountLocks.stripeCount(); i++) {
+        accountIdsByStripe.add(new ArrayList<>());
+      }
+      for (String accountId : accounts.keySet()) {
+        accountIdsByStripe.get(this.accountLocks.stripeOf(accountId)).add(accountId);
+      }
+      return IntStream.range(0, accountIdsByStripe.size()).parallel().collect(sinks, (sink, stripe) -> {
+        this.accountLocks.lockStripe(stripe);
+        try {
+          for (String accountId : accountIdsByStripe.get(stripe)) {
+            Object balance = cut.keptBalance(accountId);
+            if (balance == null) {
+              balance = balanceOf(accountId);
+            }
+            if (balance != ConsistentCut.ABSENT) {
+              sink.add((BigDecimal) balance);
+            }
+          }
+          cut.markRead(stripe);
+        } finally {
+          this.accountLocks.unlockStripe(stripe);
+        }
+      }, merge);
+    } finally {
+      this.cut = null;
+    }
+  }
+
+  private Object balanceOf(String accountId) {
+    Account account = accounts.get(accountId);
+    return account == null ? ConsistentCut.ABSENT : account.getBalance();
+  }
+
+  private void created(String accountId) {
+    ConsistentCut<String> cut = this.cut;
+    if (cut != null) {
+      cut.created(accountId, this.accountLocks.stripeOf(accountId));
+    }
+  }
+
+  /** Called under the stripe locks of a change to both accounts, before it changes either. */
+  private void beforeChange(String firstAccountId, String secondAccountId) {
+    ConsistentCut<String> cut = this.cut;
+    if (cut != null) {
+      cut.beforeChange(firstAccountId, this.accountLocks.stripeOf(firstAccountId), secondAccountId,
+        this.accountLocks.stripeOf(secondAccountId));
+    }
+  }
+
+  private void beforeChange(Set<String> accountIds) {
+    ConsistentCut<String> cut = this.cut;
+    if (cut == null) {
+      return;
+    }
+    for (String accountId : accountIds) {
+      if (cut.isAfter(accountId, this.accountLocks.stripeOf(accountId))) {
+        accountIds.forEach(keptId -> cut.keep(keptId, this.accountLocks.stripeOf(keptId)));
+        return;
+      }
+    }
+  }
+
+  private void recordSequence(String accountId, long sequence) {
+    if (this.journal.isEnabled()) {
+      this.journalSequences.put(accountId, sequence);
+    }
   }
 
+  /**
+   * Journals a change already made under the accounts' stripe locks. If the append fails, the
+   * balances they had before are put back, so memory never holds what the journal lacks.
+   */
+  private long appendOrRestore(Type type, Account account, BigDecimal balance, Account counterparty,
+    BigDecimal counterpartyBalance, BigDecimal amount) {
+    try {
+      return this.journal.append(type, account.getAccountId(),
+        counterparty == null ? null : counterparty.getAccountId(), amount);
+    } catch (RuntimeException re) {
+      account.setBalance(balance);
+      if (counterparty != null) {
+        counterparty.setBalance(counterpartyBalance);
+      }
+      throw re;
+    }
+  }
+
+  private Account pendingAccount(Map<String, Account> pending, String accountId) {
+    Account account = pending.get(accountId);
+    if (account == null) {
+      account = new Account(accountId, existingAccount(accountId).getBalance());
+      pending.put(accountId, account);
+    }
+    return account;
+  }
+
+  private Account existingAccount(String accountId) {
+    Account account = accounts.get(accountId);
+    if (account == null) {
+      throw new AccountNotFoundException(accountId);
+    }
+    return account;
+  }
+
+  /** Returns a copy, the stored account is only changed under its stripe lock. */
   @Override
   public Account getAccount(String accountId) {
-    return accounts.get(accountId);
+    Account account = accounts.get(accountId);
+    return account == null ? null : new Account(accountId, account.getBalance());
   }
 
   @Override
-  public void clearAccounts() {
-    accounts.clear();
+  public AccountSnapshot getAccountSnapshot(String accountId) {
+    VersionedAccount account = accounts.get(accountId);
+    return account == null ? null : account.snapshot();
+  }
+
+  /** Holds every stripe, so no change of an account can be journaled after the clear. */
+  @Override
+  public synchronized void clearAccounts() {
+    long sequence;
+    int[] stripes = this.accountLocks.lockAllStripes();
+    try {
+      sequence = this.journal.append(Type.CLEAR, null, null, null);
+      accounts.clear();
+      this.journalSequences.clear();
+    } finally {
+      this.accountLocks.unlockAll(stripes);
+    }
+    this.journal.awaitDurable(sequence);
   }
 
 }
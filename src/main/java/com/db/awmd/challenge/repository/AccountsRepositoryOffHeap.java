@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.persistence.TransferJournal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The scaled-long storage with the account ids, their index, the balances and the journal
+ * sequences all in direct buffers of fixed-size slots. There is no compare-and-set on direct
+ * memory, so every debit, credit and transfer holds the stripe locks of its accounts, hot accounts
+ * included, and updates the slots with plain loads and stores. The heap holds nothing per account,
+ * so the garbage collector has nothing per account to trace and its pauses no longer grow with the
+ * number of accounts. All of it counts against {@code -XX:MaxDirectMemorySize} rather than
+ * {@code -Xmx}. Selected with {@code accounts.storage=off-heap}.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.storage", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap extends AccountsRepositoryScaledLong {
+
+  public AccountsRepositoryOffHeap(StripedAccountLocks accountLocks, TransferJournal journal) {
+    this(accountLocks, journal, new String[0], 1);
+  }
+
+  @Autowired
+  public AccountsRepositoryOffHeap(StripedAccountLocks accountLocks, TransferJournal journal,
+    @Value("${accounts.hot-accounts:}") String[] hotAccounts,
+    @Value("${accounts.hot-account-stripes:16}") int hotAccountStripes) {
+    super(accountLocks, journal, hotAccounts, hotAccountStripes, true);
+  }
+}
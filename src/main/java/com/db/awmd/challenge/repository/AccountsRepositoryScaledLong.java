@@ -0,0 +1,682 @@
+package com.db.awmd.challenge.repository;
+
+import static com.db.awmd.challenge.domain.MinorUnits.fromMinorUnits;
+import static com.db.awmd.challenge.domain.MinorUnits.toMinorUnits;
+import static com.db.awmd.challenge.domain.MinorUnits.toMinorUnitsOrInvalid;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.persistence.AccountSnapshotSource;
+import com.db.awmd.challenge.persistence.JournalRecord;
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import com.db.awmd.challenge.persistence.TransferJournal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keeps every balance as a count of minor units in {@link MinorUnitAccounts}: each account id is
+ * looked up once per call and mapped to a dense int handle, and its balance is a long in a
+ * primitive array, with no object per account. Debits and credits are compare-and-set loops, so
+ * single-account updates and the insufficient balance check take no lock and allocate nothing.
+ * Transfers still hold the stripes of both accounts so that no other transfer observes one leg
+ * without the other. Selected with {@code accounts.storage=scaled-long}.
+ *
+ * <p>With the journal enabled, debits and credits also take their stripe so that their records
+ * cannot be ordered before an {@code updateAccount} they actually followed. Off-heap, they take it
+ * too, since the balance slots are then only updated under their stripe lock.
+ *
+ * <p>Accounts listed in {@code accounts.hot-accounts}, such as clearing accounts on one side of
+ * most transfers, get a {@link StripedBalance} of {@code accounts.hot-account-stripes}
+ * sub-balances instead. Without the journal a transfer then leaves the hot account's stripe
+ * unlocked, so transfers to and from it no longer queue behind each other. A transfer in flight
+ * while such a hot account is read by {@link #collectBalances} can then be counted on one side
+ * only.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.storage", havingValue = "scaled-long")
+public class AccountsRepositoryScaledLong implements AccountsRepository, AccountSnapshotSource,
+  PointInTimeBalances {
+
+  /** Replaced as a whole on clear, so a call still holding handles of the old accounts cannot touch new ones. */
+  private volatile MinorUnitAccounts accounts;
+
+  /** The accounts before the last clear, kept so that off-heap memory a late call may still touch is not freed. */
+  private MinorUnitAccounts clearedAccounts;
+
+  private final StripedAccountLocks accountLocks;
+
+  private final TransferJournal journal;
+
+  private volatile ConsistentCut<Integer> cut;
+
+  private final Set<String> hotAccounts;
+
+  private final int hotAccountStripes;
+
+  private final boolean offHeap;
+
+  public AccountsRepositoryScaledLong(StripedAccountLocks accountLocks, TransferJournal journal) {
+    this(accountLocks, journal, new String[0], 1);
+  }
+
+  @Autowired
+  public AccountsRepositoryScaledLong(StripedAccountLocks accountLocks, TransferJournal journal,
+    @Value("${accounts.hot-accounts:}") String[] hotAccounts,
+    @Value("${accounts.hot-account-stripes:16}") int hotAccountStripes) {
+    this(accountLocks, journal, hotAccounts, hotAccountStripes, false);
+  }
+
+  protected AccountsRepositoryScaledLong(StripedAccountLocks accountLocks, TransferJournal journal,
+    String[] hotAccounts, int hotAccountStripes, boolean offHeap) {
+    if (hotAccountStripes <= 0) {
+      throw new IllegalArgumentException("Hot account stripe count must be positive: " + hotAccountStripes);
+    }
+    this.accountLocks = accountLocks;
+    this.journal = journal;
+    this.hotAccounts = new HashSet<>(Arrays.asList(hotAccounts));
+    this.hotAccountStripes = hotAccountStripes;
+    this.offHeap = offHeap;
+    this.accounts = new MinorUnitAccounts(journal.isEnabled(), offHeap);
+  }
+
+  @PostConstruct
+  public void recover() {
+    this.journal.replay(this::applyRecord);
+  }
+
+  private void applyRecord(JournalRecord record) {
+    MinorUnitAccounts accounts = this.accounts;
+    switch (record.getType()) {
+      case CREATE:
+      case UPDATE:
+        putBalance(accounts, record.getAccountId(), toMinorUnits(record.getAmount()));
+        break;
+      case DEBIT:
+        accounts.add(accounts.handleOf(record.getAccountId()), -toMinorUnits(record.getAmount()));
+        break;
+      case CREDIT:
+        accounts.add(accounts.handleOf(record.getAccountId()), toMinorUnits(record.getAmount()));
+        break;
+      case TRANSFER:
+        accounts.add(accounts.handleOf(record.getAccountId()), -toMinorUnits(record.getAmount()));
+        accounts.add(accounts.handleOf(record.getCounterpartyId()), toMinorUnits(record.getAmount()));
+        break;
+      case CLEAR:
+        replaceAccounts();
+        break;
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    this.journal.awaitDurable(appendAccount(account));
+  }
+
+  @Override
+  public List<RuntimeException> createAccounts(List<Account> accounts) {
+    List<RuntimeException> failures = new ArrayList<>(accounts.size());
+    long lastSequence = 0;
+    for (Account account : accounts) {
+      try {
+        lastSequence = Math.max(lastSequence, appendAccount(account));
+        failures.add(null);
+      } catch (RuntimeException re) {
+        failures.add(re);
+      }
+    }
+    this.journal.awaitDurable(lastSequence);
+    return failures;
+  }
+
+  /** Creates the account and journals it without waiting, returns the journal sequence. */
+  private long appendAccount(Account account) throws DuplicateAccountIdException {
+    long units = toMinorUnits(account.getBalance());
+    long sequence;
+    this.accountLocks.lock(account.getAccountId());
+    try {
+      MinorUnitAccounts accounts = this.accounts;
+      if (accounts.handleOf(account.getAccountId()) != AccountRegistry.ABSENT) {
+        throw new DuplicateAccountIdException(account.getAccountId());
+      }
+      sequence = this.journal.append(Type.CREATE, account.getAccountId(), null, account.getBalance());
+      int handle = accounts.create(account.getAccountId(), units, stripesOf(account.getAccountId()));
+      ConsistentCut<Integer> cut = this.cut;
+      if (cut != null) {
+        cut.created(handle, this.accountLocks.stripeOf(account.getAccountId()));
+      }
+      recordSequence(accounts, handle, sequence);
+    } finally {
+      this.accountLocks.unlock(account.getAccountId());
+    }
+    return sequence;
+  }
+
+  @Override
+  public void updateAccount(Account account) {
+    long units = toMinorUnits(account.getBalance());
+    long sequence;
+    this.accountLocks.lock(account.getAccountId());
+    try {
+      MinorUnitAccounts accounts = this.accounts;
+      sequence = this.journal.append(Type.UPDATE, account.getAccountId(), null, account.getBalance());
+      ConsistentCut<Integer> cut = this.cut;
+      boolean created = cut != null && accounts.handleOf(account.getAccountId()) == AccountRegistry.ABSENT;
+      int handle = putBalance(accounts, account.getAccountId(), units);
+      if (created) {
+        cut.created(handle, this.accountLocks.stripeOf(account.getAccountId()));
+      }
+      recordSequence(accounts, handle, sequence);
+    } finally {
+      this.accountLocks.unlock(account.getAccountId());
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void withDraw(String accountId, BigDecimal amount) throws InsufficientBalanceException {
+    long units = toMinorUnits(amount);
+    MinorUnitAccounts accounts = this.accounts;
+    int handle = existingHandle(accounts, accountId);
+    if (!locksEveryChange()) {
+      debit(accounts, handle, units);
+      return;
+    }
+    long sequence;
+    this.accountLocks.lock(accountId);
+    try {
+      checkCurrent(accounts, accountId);
+      debit(accounts, handle, units);
+      sequence = appendOrUndo(accounts, Type.DEBIT, accountId, null, handle, AccountRegistry.ABSENT, units,
+        amount);
+      recordSequence(accounts, handle, sequence);
+    } finally {
+      this.accountLocks.unlock(accountId);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void credit(String accountId, BigDecimal amount) {
+    long units = toMinorUnits(amount);
+    MinorUnitAccounts accounts = this.accounts;
+    int handle = existingHandle(accounts, accountId);
+    if (!locksEveryChange()) {
+      accounts.credit(handle, units);
+      return;
+    }
+    long sequence;
+    this.accountLocks.lock(accountId);
+    try {
+      checkCurrent(accounts, accountId);
+      accounts.credit(handle, units);
+      sequence = appendOrUndo(accounts, Type.CREDIT, accountId, null, AccountRegistry.ABSENT, handle, units,
+        amount);
+      recordSequence(accounts, handle, sequence);
+    } finally {
+      this.accountLocks.unlock(accountId);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, BigDecimal amount)
+    throws InsufficientBalanceException {
+    if (accountFromId.equals(accountToId)) {
+      throw new SameAccountTransferException(accountToId);
+    }
+    long units = toMinorUnits(amount);
+    MinorUnitAccounts accounts = this.accounts;
+    int handleFrom = existingHandle(accounts, accountFromId);
+    int handleTo = existingHandle(accounts, accountToId);
+    long sequence;
+    lockTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo);
+    try {
+      checkCurrent(accounts, accountFromId);
+      ConsistentCut<Integer> cut = this.cut;
+      if (cut != null) {
+        beforeChange(cut, accountFromId, handleFrom, accountToId, handleTo);
+      }
+      debit(accounts, handleFrom, units);
+      try {
+        accounts.credit(handleTo, units);
+      } catch (RuntimeException re) {
+        accounts.add(handleFrom, units);
+        throw re;
+      }
+      sequence = appendOrUndo(accounts, Type.TRANSFER, accountFromId, accountToId, handleFrom, handleTo, units,
+        amount);
+      recordSequence(accounts, handleFrom, sequence);
+      recordSequence(accounts, handleTo, sequence);
+    } finally {
+      unlockTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    if (accountFromId.equals(accountToId)) {
+      return TransferOutcome.SAME_ACCOUNT;
+    }
+    MinorUnitAccounts accounts = this.accounts;
+    int handleFrom = accounts.handleOf(accountFromId);
+    int handleTo = accounts.handleOf(accountToId);
+    if (handleFrom == AccountRegistry.ABSENT || handleTo == AccountRegistry.ABSENT) {
+      return TransferOutcome.ACCOUNT_NOT_FOUND;
+    }
+    if (amount.signum() <= 0) {
+      return TransferOutcome.NEGATIVE_AMOUNT;
+    }
+    long units = toMinorUnitsOrInvalid(amount);
+    if (units == MinorUnits.INVALID) {
+      return TransferOutcome.AMOUNT_PRECISION;
+    }
+    long applied = applyTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo, units, amount);
+    if (AppliedTransfer.isRejected(applied)) {
+      return AppliedTransfer.rejection(applied);
+    }
+    this.journal.awaitDurable(applied);
+    return TransferOutcome.COMPLETED;
+  }
+
+  /**
+   * Same checks as {@link #tryTransfer}, repeated rather than shared: one call level deeper, the
+   * BigDecimal temporaries of the unit conversion end up beyond the JIT's inlining depth and a
+   * rejected transfer would allocate again.
+   */
+  @Override
+  public CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId,
+    BigDecimal amount) {
+    if (accountFromId.equals(accountToId)) {
+      return TransferOutcome.SAME_ACCOUNT.asCompletedFuture();
+    }
+    MinorUnitAccounts accounts = this.accounts;
+    int handleFrom = accounts.handleOf(accountFromId);
+    int handleTo = accounts.handleOf(accountToId);
+    if (handleFrom == AccountRegistry.ABSENT || handleTo == AccountRegistry.ABSENT) {
+      return TransferOutcome.ACCOUNT_NOT_FOUND.asCompletedFuture();
+    }
+    if (amount.signum() <= 0) {
+      return TransferOutcome.NEGATIVE_AMOUNT.asCompletedFuture();
+    }
+    long units = toMinorUnitsOrInvalid(amount);
+    if (units == MinorUnits.INVALID) {
+      return TransferOutcome.AMOUNT_PRECISION.asCompletedFuture();
+    }
+    return AppliedTransfer.whenDurable(this.journal,
+      applyTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo, units, amount));
+  }
+
+  private long applyTransfer(MinorUnitAccounts accounts, String accountFromId, int handleFrom, String accountToId,
+    int handleTo, long units, BigDecimal amount) {
+    long sequence;
+    lockTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo);
+    try {
+      if (accounts != this.accounts) {
+        return AppliedTransfer.rejected(TransferOutcome.ACCOUNT_NOT_FOUND);
+      }
+      ConsistentCut<Integer> cut = this.cut;
+      if (cut != null) {
+        beforeChange(cut, accountFromId, handleFrom, accountToId, handleTo);
+      }
+      if (!accounts.tryDebit(handleFrom, units)) {
+        return AppliedTransfer.rejected(TransferOutcome.INSUFFICIENT_BALANCE);
+      }
+      try {
+        accounts.credit(handleTo, units);
+      } catch (RuntimeException re) {
+        accounts.add(handleFrom, units);
+        throw re;
+      }
+      sequence = appendOrUndo(accounts, Type.TRANSFER, accountFromId, accountToId, handleFrom, handleTo, units,
+        amount);
+      recordSequence(accounts, handleFrom, sequence);
+      recordSequence(accounts, handleTo, sequence);
+    } finally {
+      unlockTransfer(accounts, accountFromId, handleFrom, accountToId, handleTo);
+    }
+    return sequence;
+  }
+
+  /**
+   * Replays the batch on tentative balances first. Only the resulting net change of each account is
+   * applied, debits before credits, so a concurrent lock-free withdrawal can never spend money that
+   * the batch might still take back.
+   */
+  @Override
+  public void transferAll(List<Transfer> transfers) throws BatchTransferException {
+    Set<String> accountIds = new HashSet<>();
+    for (Transfer transfer : transfers) {
+      accountIds.add(transfer.getAccountFrom());
+      accountIds.add(transfer.getAccountTo());
+    }
+    long sequence = 0;
+    int[] stripes = this.accountLocks.lockAll(accountIds);
+    try {
+      MinorUnitAccounts accounts = this.accounts;
+      Map<String, PendingBalance> pending = new LinkedHashMap<>();
+      for (int i = 0; i < transfers.size(); i++) {
+        Transfer transfer = transfers.get(i);
+        try {
+          if (transfer.getAccountFrom().equals(transfer.getAccountTo())) {
+            throw new SameAccountTransferException(transfer.getAccountTo());
+          }
+          long units = toMinorUnits(transfer.getAmount());
+          PendingBalance balanceFrom = pendingBalance(accounts, pending, transfer.getAccountFrom(), i);
+          PendingBalance balanceTo = pendingBalance(accounts, pending, transfer.getAccountTo(), i);
+          if (units > balanceFrom.tentative) {
+            throw new InsufficientBalanceException(fromMinorUnits(balanceFrom.tentative));
+          }
+          balanceFrom.tentative -= units;
+          balanceTo.tentative = Math.addExact(balanceTo.tentative, units);
+        } catch (RuntimeException re) {
+          throw new BatchTransferException(i, re);
+        }
+      }
+      List<JournalRecord> records = new ArrayList<>(transfers.size());
+      for (Transfer transfer : transfers) {
+        records.add(new JournalRecord(0, Type.TRANSFER, transfer.getAccountFrom(), transfer.getAccountTo(),
+          transfer.getAmount()));
+      }
+      sequence = this.journal.appendAll(records);
+      beforeChange(pending);
+      applyNetChanges(accounts, pending);
+      for (PendingBalance balance : pending.values()) {
+        recordSequence(accounts, balance.handle, sequence);
+      }
+    } finally {
+      this.accountLocks.unlockAll(stripes);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  private static PendingBalance pendingBalance(MinorUnitAccounts accounts, Map<String, PendingBalance> pending,
+    String accountId, int index) {
+    PendingBalance balance = pending.get(accountId);
+    if (balance == null) {
+      int handle = existingHandle(accounts, accountId);
+      balance = new PendingBalance(handle, accounts.get(handle), index);
+      pending.put(accountId, balance);
+    }
+    return balance;
+  }
+
+  private static void applyNetChanges(MinorUnitAccounts accounts, Map<String, PendingBalance> pending) {
+    List<PendingBalance> applied = new ArrayList<>(pending.size());
+    PendingBalance current = null;
+    try {
+      for (PendingBalance balance : pending.values()) {
+        if (balance.delta() < 0) {
+          current = balance;
+          debit(accounts, balance.handle, -balance.delta());
+          applied.add(balance);
+        }
+      }
+      for (PendingBalance balance : pending.values()) {
+        if (balance.delta() > 0) {
+          current = balance;
+          accounts.credit(balance.handle, balance.delta());
+          applied.add(balance);
+        }
+      }
+    } catch (RuntimeException re) {
+      for (int i = applied.size() - 1; i >= 0; i--) {
+        accounts.add(applied.get(i).handle, -applied.get(i).delta());
+      }
+      throw new BatchTransferException(current.firstIndex, re);
+    }
+  }
+
+  private static final class PendingBalance {
+
+    private final int handle;
+    private final long original;
+    private final int firstIndex;
+    private long tentative;
+
+    private PendingBalance(int handle, long original, int firstIndex) {
+      this.handle = handle;
+      this.original = original;
+      this.firstIndex = firstIndex;
+      this.tentative = this.original;
+    }
+
+    private long delta() {
+      return this.tentative - this.original;
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    MinorUnitAccounts accounts = this.accounts;
+    int handle = accounts.handleOf(accountId);
+    return handle == AccountRegistry.ABSENT ? null : new Account(accountId, fromMinorUnits(accounts.get(handle)));
+  }
+
+  /** Balances change lock-free here, so snapshots are consistent but carry no version. */
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) {
+    MinorUnitAccounts accounts = this.accounts;
+    int handle = accounts.handleOf(accountId);
+    return handle == AccountRegistry.ABSENT ? null
+      : new AccountSnapshot(accountId, fromMinorUnits(accounts.get(handle)), AccountSnapshot.UNVERSIONED);
+  }
+
+  /**
+   * Holds every stripe, so no change of an account can be journaled after the clear. Changes that
+   * looked up their accounts before it find them gone once they hold their stripes.
+   */
+  @Override
+  public synchronized void clearAccounts() {
+    long sequence;
+    int[] stripes = this.accountLocks.lockAllStripes();
+    try {
+      sequence = this.journal.append(Type.CLEAR, null, null, null);
+      replaceAccounts();
+    } finally {
+      this.accountLocks.unlockAll(stripes);
+    }
+    this.journal.awaitDurable(sequence);
+  }
+
+  @Override
+  public void forEachAccount(AccountVisitor visitor) {
+    MinorUnitAccounts accounts = this.accounts;
+    accounts.forEach((accountId, handle) -> {
+      long units;
+      long sequence;
+      this.accountLocks.lock(accountId);
+      try {
+        units = accounts.get(handle);
+        sequence = accounts.journalSequence(handle);
+      } finally {
+        this.accountLocks.unlock(accountId);
+      }
+      visitor.visit(accountId, fromMinorUnits(units), sequence);
+    });
+  }
+
+  /**
+   * Reads the stripes in parallel against a {@link ConsistentCut}, holding each while its accounts
+   * are read. A clear waits for the collection to finish.
+   */
+  @Override
+  public synchronized <S extends BalanceSink> S collectBalances(Supplier<S> sinks, BiConsumer<S, S> merge) {
+    MinorUnitAccounts accounts = this.accounts;
+    int stripeCount = this.accountLocks.stripeCount();
+    ConsistentCut<Integer> cut = new ConsistentCut<>(stripeCount, accounts::get);
+    this.cut = cut;
+    try {
+      int[][] handlesByStripe = new int[stripeCount][16];
+      int[] counts = new int[stripeCount];
+      accounts.forEach((accountId, handle) -> {
+        int stripe = this.accountLocks.stripeOf(accountId);
+        if (counts[stripe] == handlesByStripe[stripe].length) {
+          handlesByStripe[stripe] = Arrays.copyOf(handlesByStripe[stripe], counts[stripe] * 2);
+        }
+        handlesByStripe[stripe][counts[stripe]++] = handle;
+      });
+      return IntStream.range(0, stripeCount).parallel().collect(sinks, (sink, stripe) -> {
+        this.accountLocks.lockStripe(stripe);
+        try {
+          int[] handles = handlesByStripe[stripe];
+          for (int i = 0; i < counts[stripe]; i++) {
+            Object kept = cut.keptBalance(handles[i]);
+            if (kept == null) {
+              sink.addMinorUnits(accounts.get(handles[i]));
+            } else if (kept != ConsistentCut.ABSENT) {
+              sink.addMinorUnits((Long) kept);
+            }
+          }
+          cut.markRead(stripe);
+        } finally {
+          this.accountLocks.unlockStripe(stripe);
+        }
+      }, merge);
+    } finally {
+      this.cut = null;
+    }
+  }
+
+  private void beforeChange(ConsistentCut<Integer> cut, String accountFromId, int handleFrom, String accountToId,
+    int handleTo) {
+    cut.beforeChange(handleFrom, this.accountLocks.stripeOf(accountFromId), handleTo,
+      this.accountLocks.stripeOf(accountToId));
+  }
+
+  private void beforeChange(Map<String, PendingBalance> pending) {
+    ConsistentCut<Integer> cut = this.cut;
+    if (cut == null) {
+      return;
+    }
+    for (Map.Entry<String, PendingBalance> entry : pending.entrySet()) {
+      if (cut.isAfter(entry.getValue().handle, this.accountLocks.stripeOf(entry.getKey()))) {
+        pending.forEach((accountId, balance) -> cut.keep(balance.handle, this.accountLocks.stripeOf(accountId)));
+        return;
+      }
+    }
+  }
+
+  private synchronized void replaceAccounts() {
+    this.clearedAccounts = this.accounts;
+    this.accounts = new MinorUnitAccounts(this.journal.isEnabled(), this.offHeap);
+  }
+
+  /**
+   * Journals a change already made under the accounts' stripe locks. If the append fails, the units
+   * are given back to the debited account and taken from the credited one, either of which may be
+   * {@link AccountRegistry#ABSENT}.
+   */
+  private long appendOrUndo(MinorUnitAccounts accounts, Type type, String accountId, String counterpartyId,
+    int debited, int credited, long units, BigDecimal amount) {
+    try {
+      return this.journal.append(type, accountId, counterpartyId, amount);
+    } catch (RuntimeException re) {
+      if (credited != AccountRegistry.ABSENT) {
+        accounts.add(credited, -units);
+      }
+      if (debited != AccountRegistry.ABSENT) {
+        accounts.add(debited, units);
+      }
+      throw re;
+    }
+  }
+
+  private void recordSequence(MinorUnitAccounts accounts, int handle, long sequence) {
+    if (this.journal.isEnabled()) {
+      accounts.recordJournalSequence(handle, sequence);
+    }
+  }
+
+  /** Creates the account or replaces its balance, returns its handle. */
+  private int putBalance(MinorUnitAccounts accounts, String accountId, long units) {
+    int handle = accounts.handleOf(accountId);
+    if (handle == AccountRegistry.ABSENT) {
+      handle = accounts.create(accountId, units, stripesOf(accountId));
+    }
+    if (handle == AccountRegistry.ABSENT) {
+      handle = accounts.handleOf(accountId);
+    }
+    accounts.set(handle, units);
+    return handle;
+  }
+
+  /** Fails a change that raced with {@link #clearAccounts()}, called once it holds its stripes. */
+  private void checkCurrent(MinorUnitAccounts accounts, String accountId) {
+    if (accounts != this.accounts) {
+      throw new AccountNotFoundException(accountId);
+    }
+  }
+
+  private static int existingHandle(MinorUnitAccounts accounts, String accountId) {
+    int handle = accounts.handleOf(accountId);
+    if (handle == AccountRegistry.ABSENT) {
+      throw new AccountNotFoundException(accountId);
+    }
+    return handle;
+  }
+
+  private int stripesOf(String accountId) {
+    return this.hotAccounts.contains(accountId) ? this.hotAccountStripes : 0;
+  }
+
+  /** The journal orders records by the stripe locks, and direct memory has no compare-and-set. */
+  private boolean locksEveryChange() {
+    return this.journal.isEnabled() || this.offHeap;
+  }
+
+  private boolean needsLock(MinorUnitAccounts accounts, int handle) {
+    return locksEveryChange() || !accounts.isStriped(handle);
+  }
+
+  private void lockTransfer(MinorUnitAccounts accounts, String accountFromId, int handleFrom, String accountToId,
+    int handleTo) {
+    boolean lockFrom = needsLock(accounts, handleFrom);
+    boolean lockTo = needsLock(accounts, handleTo);
+    if (lockFrom && lockTo) {
+      this.accountLocks.lock(accountFromId, accountToId);
+    } else if (lockFrom) {
+      this.accountLocks.lock(accountFromId);
+    } else if (lockTo) {
+      this.accountLocks.lock(accountToId);
+    }
+  }
+
+  private void unlockTransfer(MinorUnitAccounts accounts, String accountFromId, int handleFrom, String accountToId,
+    int handleTo) {
+    boolean lockFrom = needsLock(accounts, handleFrom);
+    boolean lockTo = needsLock(accounts, handleTo);
+    if (lockFrom && lockTo) {
+      this.accountLocks.unlock(accountFromId, accountToId);
+    } else if (lockFrom) {
+      this.accountLocks.unlock(accountFromId);
+    } else if (lockTo) {
+      this.accountLocks.unlock(accountToId);
+    }
+  }
+
+  private static void debit(MinorUnitAccounts accounts, int handle, long units) throws InsufficientBalanceException {
+    if (!accounts.tryDebit(handle, units)) {
+      throw new InsufficientBalanceException(fromMinorUnits(accounts.get(handle)));
+    }
+  }
+}
@@ -0,0 +1,527 @@
+package com.db.awmd.challenge.repository;
+
+import static com.db.awmd.challenge.domain.MinorUnits.fromMinorUnits;
+import static com.db.awmd.challenge.domain.MinorUnits.toMinorUnits;
+import static com.db.awmd.challenge.domain.MinorUnits.toMinorUnitsOrInvalid;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.persistence.TransferJournal;
+import com.db.awmd.challenge.repository.ShardCommand.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Single-writer engine: accounts are partitioned into {@code accounts.shards} shards, each owned
+ * by one thread that applies every change to its accounts from a preallocated {@link CommandRing}
+ * of {@code accounts.ring-size} slots. Balances are minor units in a volatile field written only
+ * by the owning thread, so nothing is locked and reads go straight to the balance. Selected with
+ * {@code accounts.storage=sharded}.
+ *
+ * <p>A transfer runs on the shard of the source account. If the destination lives on another
+ * shard, the debited amount is handed to that shard as a credit leg, which is sent back as a
+ * refund if the credit cannot be applied; until the leg arrives the money is in neither balance.
+ * Batches and {@code clearAccounts} hold every shard at a barrier and work on all accounts from
+ * the calling thread.
+ *
+ * <p>The journal is not supported: its records are ordered by the account stripe locks this
+ * engine does without.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.storage", havingValue = "sharded")
+public class AccountsRepositorySharded implements AccountsRepository {
+
+  private static final int IDLE_SPINS = 100;
+
+  private final Shard[] shards;
+
+  private final int mask;
+
+  @Autowired
+  public AccountsRepositorySharded(TransferJournal journal,
+    @Value("${accounts.shards:4}") int shardCount,
+    @Value("${accounts.ring-size:1024}") int ringSize) {
+    if (journal.isEnabled()) {
+      throw new IllegalStateException("accounts.storage=sharded does not support journal.enabled=true");
+    }
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+    }
+    int size = Integer.highestOneBit(shardCount);
+    if (size < shardCount) {
+      size <<= 1;
+    }
+    this.shards = new Shard[size];
+    for (int i = 0; i < size; i++) {
+      this.shards[i] = new Shard(i, ringSize);
+    }
+    this.mask = size - 1;
+  }
+
+  @PostConstruct
+  public void start() {
+    for (Shard shard : this.shards) {
+      shard.thread.start();
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    for (Shard shard : this.shards) {
+      shard.running = false;
+      LockSupport.unpark(shard.thread);
+    }
+    for (Shard shard : this.shards) {
+      shard.thread.join();
+    }
+  }
+
+  public int shardCount() {
+    return this.shards.length;
+  }
+
+  private Shard shardOf(String accountId) {
+    int h = accountId.hashCode();
+    return this.shards[(h ^ (h >>> 16)) & this.mask];
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    long units = toMinorUnits(account.getBalance());
+    await(shardOf(account.getAccountId()).submit(Type.CREATE, account.getAccountId(), null, units));
+  }
+
+  /** Queues every account before waiting for the first, so the shards work through them together. */
+  @Override
+  public List<RuntimeException> createAccounts(List<Account> accounts) {
+    List<CompletableFuture<TransferOutcome>> results = new ArrayList<>(accounts.size());
+    List<RuntimeException> failures = new ArrayList<>(accounts.size());
+    for (Account account : accounts) {
+      try {
+        long units = toMinorUnits(account.getBalance());
+        results.add(shardOf(account.getAccountId()).submit(Type.CREATE, account.getAccountId(), null, units));
+        failures.add(null);
+      } catch (RuntimeException re) {
+        results.add(null);
+        failures.add(re);
+      }
+    }
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i) != null) {
+        try {
+          await(results.get(i));
+        } catch (RuntimeException re) {
+          failures.set(i, re);
+        }
+      }
+    }
+    return failures;
+  }
+
+  @Override
+  public void updateAccount(Account account) {
+    long units = toMinorUnits(account.getBalance());
+    await(shardOf(account.getAccountId()).submit(Type.UPDATE, account.getAccountId(), null, units));
+  }
+
+  @Override
+  public void withDraw(String accountId, BigDecimal amount) throws InsufficientBalanceException {
+    long units = toMinorUnits(amount);
+    TransferOutcome outcome = await(shardOf(accountId).submit(Type.DEBIT, accountId, null, units));
+    if (outcome == TransferOutcome.ACCOUNT_NOT_FOUND) {
+      throw new AccountNotFoundException(accountId);
+    } else if (outcome == TransferOutcome.INSUFFICIENT_BALANCE) {
+      throw new InsufficientBalanceException(balanceOf(accountId));
+    }
+  }
+
+  @Override
+  public void credit(String accountId, BigDecimal amount) {
+    long units = toMinorUnits(amount);
+    if (await(shardOf(accountId).submit(Type.CREDIT, accountId, null, units)) == TransferOutcome.ACCOUNT_NOT_FOUND) {
+      throw new AccountNotFoundException(accountId);
+    }
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, BigDecimal amount)
+    throws InsufficientBalanceException {
+    if (accountFromId.equals(accountToId)) {
+      throw new SameAccountTransferException(accountToId);
+    }
+    long units = toMinorUnits(amount);
+    TransferOutcome outcome = await(submitTransfer(accountFromId, accountToId, units));
+    if (outcome == TransferOutcome.ACCOUNT_NOT_FOUND) {
+      throw new AccountNotFoundException(getAccount(accountFromId) == null ? accountFromId : accountToId);
+    } else if (outcome == TransferOutcome.INSUFFICIENT_BALANCE) {
+      throw new InsufficientBalanceException(balanceOf(accountFromId));
+    }
+  }
+
+  @Override
+  public TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    return await(submitTransfer(accountFromId, accountToId, amount));
+  }
+
+  @Override
+  public CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId,
+    BigDecimal amount) {
+    if (accountFromId.equals(accountToId)) {
+      return TransferOutcome.SAME_ACCOUNT.asCompletedFuture();
+    }
+    if (!shardOf(accountFromId).cells.containsKey(accountFromId)
+      || !shardOf(accountToId).cells.containsKey(accountToId)) {
+      return TransferOutcome.ACCOUNT_NOT_FOUND.asCompletedFuture();
+    }
+    if (amount.signum() <= 0) {
+      return TransferOutcome.NEGATIVE_AMOUNT.asCompletedFuture();
+    }
+    long units = toMinorUnitsOrInvalid(amount);
+    if (units == MinorUnits.INVALID) {
+      return TransferOutcome.AMOUNT_PRECISION.asCompletedFuture();
+    }
+    return submitTransfer(accountFromId, accountToId, units);
+  }
+
+  /** Queues the transfer on the shard of the source account, the future completes with its outcome. */
+  public CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId, long units) {
+    return shardOf(accountFromId).submit(Type.TRANSFER, accountFromId, accountToId, units);
+  }
+
+  @Override
+  public void transferAll(List<Transfer> transfers) throws BatchTransferException {
+    exclusively(() -> {
+      Map<String, long[]> pending = new HashMap<>();
+      for (int i = 0; i < transfers.size(); i++) {
+        Transfer transfer = transfers.get(i);
+        try {
+          if (transfer.getAccountFrom().equals(transfer.getAccountTo())) {
+            throw new SameAccountTransferException(transfer.getAccountTo());
+          }
+          long units = toMinorUnits(transfer.getAmount());
+          long[] balanceFrom = pendingBalance(pending, transfer.getAccountFrom());
+          long[] balanceTo = pendingBalance(pending, transfer.getAccountTo());
+          if (units > balanceFrom[0]) {
+            throw new InsufficientBalanceException(fromMinorUnits(balanceFrom[0]));
+          }
+          balanceFrom[0] -= units;
+          balanceTo[0] = Math.addExact(balanceTo[0], units);
+        } catch (RuntimeException re) {
+          throw new BatchTransferException(i, re);
+        }
+      }
+      for (Map.Entry<String, long[]> entry : pending.entrySet()) {
+        shardOf(entry.getKey()).cells.get(entry.getKey()).set(entry.getValue()[0]);
+      }
+      return null;
+    });
+  }
+
+  private long[] pendingBalance(Map<String, long[]> pending, String accountId) {
+    long[] balance = pending.get(accountId);
+    if (balance == null) {
+      Cell cell = shardOf(accountId).cells.get(accountId);
+      if (cell == null) {
+        throw new AccountNotFoundException(accountId);
+      }
+      balance = new long[] {cell.units};
+      pending.put(accountId, balance);
+    }
+    return balance;
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    Cell cell = shardOf(accountId).cells.get(accountId);
+    return cell == null ? null : new Account(accountId, fromMinorUnits(cell.units));
+  }
+
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) {
+    Cell cell = shardOf(accountId).cells.get(accountId);
+    return cell == null ? null : cell.snapshot(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    exclusively(() -> {
+      for (Shard shard : this.shards) {
+        shard.cells.clear();
+      }
+      return null;
+    });
+  }
+
+  private BigDecimal balanceOf(String accountId) {
+    Cell cell = shardOf(accountId).cells.get(accountId);
+    return fromMinorUnits(cell == null ? 0 : cell.units);
+  }
+
+  /**
+   * Runs the action while every shard waits at a barrier. Callers are serialized, otherwise two
+   * barriers could be queued in opposite orders on two shards and wait for each other.
+   */
+  private synchronized <T> T exclusively(Supplier<T> action) {
+    ShardBarrier barrier = new ShardBarrier(this.shards.length);
+    for (Shard shard : this.shards) {
+      shard.submit(Type.PAUSE, null, null, 0, null, barrier);
+    }
+    barrier.awaitPaused();
+    try {
+      return action.get();
+    } finally {
+      barrier.release();
+    }
+  }
+
+  private static TransferOutcome await(CompletableFuture<TransferOutcome> result) {
+    try {
+      return result.join();
+    } catch (CompletionException ce) {
+      if (ce.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ce.getCause();
+      }
+      throw ce;
+    }
+  }
+
+  /**
+   * Balance of one account, written only by the thread of the shard that owns it or while every
+   * shard waits at a barrier. Each write bumps a counter before and after it, so other threads can
+   * read a versioned snapshot without stopping the shard.
+   */
+  private static final class Cell {
+
+    private volatile long units;
+    private volatile long changes;
+
+    private Cell(long units) {
+      this.units = units;
+    }
+
+    private void set(long units) {
+      this.changes++;
+      this.units = units;
+      this.changes++;
+    }
+
+    private AccountSnapshot snapshot(String accountId) {
+      while (true) {
+        long before = this.changes;
+        long units = this.units;
+        if ((before & 1) == 0 && this.changes == before) {
+          return new AccountSnapshot(accountId, fromMinorUnits(units), before >>> 1);
+        }
+      }
+    }
+  }
+
+  private final class Shard implements Runnable {
+
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+    private final CommandRing ring;
+    private final Queue<ShardCommand> legs = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    private Shard(int index, int ringSize) {
+      this.ring = new CommandRing(ringSize);
+      this.thread = new Thread(this, "transfer-shard-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    private CompletableFuture<TransferOutcome> submit(Type type, String accountId, String counterpartyId,
+      long units) {
+      CompletableFuture<TransferOutcome> result = new CompletableFuture<>();
+      submit(type, accountId, counterpartyId, units, result, null);
+      return result;
+    }
+
+    private void submit(Type type, String accountId, String counterpartyId, long units,
+      CompletableFuture<TransferOutcome> result, ShardBarrier barrier) {
+      long sequence = this.ring.claim();
+      this.ring.slot(sequence).set(type, accountId, counterpartyId, units, result, barrier);
+      this.ring.publish(sequence);
+      wake();
+    }
+
+    /** Legs from other shards bypass the ring, so two shards handing legs to each other never block. */
+    private void handOver(ShardCommand leg) {
+      this.legs.offer(leg);
+      wake();
+    }
+
+    private void wake() {
+      if (this.idle) {
+        LockSupport.unpark(this.thread);
+      }
+    }
+
+    @Override
+    public void run() {
+      long next = 0;
+      int spins = 0;
+      while (this.running) {
+        ShardCommand leg = this.legs.poll();
+        if (leg != null) {
+          process(leg);
+          spins = 0;
+        } else if (this.ring.isPublished(next)) {
+          ShardCommand command = this.ring.slot(next);
+          try {
+            process(command);
+          } finally {
+            command.clear();
+            this.ring.release(next);
+          }
+          next++;
+          spins = 0;
+        } else if (++spins <= IDLE_SPINS) {
+          Thread.yield();
+        } else {
+          this.idle = true;
+          if (this.legs.isEmpty() && !this.ring.isPublished(next) && this.running) {
+            LockSupport.park(this);
+          }
+          this.idle = false;
+          spins = 0;
+        }
+      }
+    }
+
+    private void process(ShardCommand command) {
+      try {
+        switch (command.type) {
+          case CREATE:
+            if (this.cells.putIfAbsent(command.accountId, new Cell(command.units)) != null) {
+              throw new DuplicateAccountIdException(command.accountId);
+            }
+            command.result.complete(TransferOutcome.COMPLETED);
+            break;
+          case UPDATE:
+            Cell existing = this.cells.get(command.accountId);
+            if (existing == null) {
+              this.cells.put(command.accountId, new Cell(command.units));
+            } else {
+              existing.set(command.units);
+            }
+            command.result.complete(TransferOutcome.COMPLETED);
+            break;
+          case DEBIT:
+            command.result.complete(debit(this.cells.get(command.accountId), command.units));
+            break;
+          case CREDIT:
+            command.result.complete(credit(this.cells.get(command.accountId), command.units));
+            break;
+          case TRANSFER:
+            transfer(command);
+            break;
+          case CREDIT_LEG:
+            creditLeg(command);
+            break;
+          case REFUND_LEG:
+            Cell source = this.cells.get(command.accountId);
+            if (source != null) {
+              source.set(source.units + command.units);
+            }
+            if (command.failure != null) {
+              command.result.completeExceptionally(command.failure);
+            } else {
+              command.result.complete(TransferOutcome.ACCOUNT_NOT_FOUND);
+            }
+            break;
+          case PAUSE:
+            command.barrier.pause();
+            break;
+        }
+      } catch (RuntimeException re) {
+        if (command.result != null) {
+          command.result.completeExceptionally(re);
+        } else {
+          log.error("Shard command {} failed", command.type, re);
+        }
+      }
+    }
+
+    private void transfer(ShardCommand command) {
+      Cell from = this.cells.get(command.accountId);
+      Shard target = shardOf(command.counterpartyId);
+      if (from == null || !target.cells.containsKey(command.counterpartyId)) {
+        command.result.complete(TransferOutcome.ACCOUNT_NOT_FOUND);
+        return;
+      }
+      if (command.units > from.units) {
+        command.result.complete(TransferOutcome.INSUFFICIENT_BALANCE);
+        return;
+      }
+      from.set(from.units - command.units);
+      if (target != this) {
+        target.handOver(ShardCommand.leg(Type.CREDIT_LEG, command.counterpartyId, command.accountId,
+          command.units, command.result, null));
+        return;
+      }
+      try {
+        command.result.complete(credit(this.cells.get(command.counterpartyId), command.units));
+      } catch (RuntimeException re) {
+        from.set(from.units + command.units);
+        throw re;
+      }
+    }
+
+    private void creditLeg(ShardCommand command) {
+      RuntimeException failure = null;
+      try {
+        if (credit(this.cells.get(command.accountId), command.units) == TransferOutcome.COMPLETED) {
+          command.result.complete(TransferOutcome.COMPLETED);
+          return;
+        }
+      } catch (RuntimeException re) {
+        failure = re;
+      }
+      shardOf(command.counterpartyId).handOver(ShardCommand.leg(Type.REFUND_LEG, command.counterpartyId,
+        command.accountId, command.units, command.result, failure));
+    }
+
+    private TransferOutcome debit(Cell cell, long units) {
+      if (cell == null) {
+        return TransferOutcome.ACCOUNT_NOT_FOUND;
+      }
+      if (units > cell.units) {
+        return TransferOutcome.INSUFFICIENT_BALANCE;
+      }
+      cell.set(cell.units - units);
+      return TransferOutcome.COMPLETED;
+    }
+
+    private TransferOutcome credit(Cell cell, long units) {
+      if (cell == null) {
+        return TransferOutcome.ACCOUNT_NOT_FOUND;
+      }
+      cell.set(Math.addExact(cell.units, units));
+      return TransferOutcome.COMPLETED;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.persistence.TransferJournal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Result of the locked part of a transfer: the journal sequence of the applied transfer, or a
+ * negative code for the outcome it was rejected with. The caller then waits for durability in its
+ * own way, blocking or with a future, and the locked part stays free of allocation.
+ */
+final class AppliedTransfer {
+
+  private static final TransferOutcome[] OUTCOMES = TransferOutcome.values();
+
+  private AppliedTransfer() {
+  }
+
+  static long rejected(TransferOutcome outcome) {
+    return -1L - outcome.ordinal();
+  }
+
+  static boolean isRejected(long applied) {
+    return applied < 0;
+  }
+
+  static TransferOutcome rejection(long applied) {
+    return OUTCOMES[(int) (-1L - applied)];
+  }
+
+  /** Completes with the outcome once the applied transfer is durable in the journal. */
+  static CompletableFuture<TransferOutcome> whenDurable(TransferJournal journal, long applied) {
+    if (isRejected(applied)) {
+      return rejection(applied).asCompletedFuture();
+    }
+    if (!journal.isEnabled()) {
+      return TransferOutcome.COMPLETED.asCompletedFuture();
+    }
+    return journal.whenDurable(applied).thenApply(durable -> TransferOutcome.COMPLETED);
+  }
+}
@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated {@link ShardCommand} slots in the
+ * style of the LMAX Disruptor. A producer claims the next sequence, fills that slot in place and
+ * publishes it; the consumer reads slots strictly in sequence order and releases each one after
+ * processing it. A producer that finds the ring full yields until the consumer catches up.
+ */
+final class CommandRing {
+
+  private final ShardCommand[] slots;
+  private final int mask;
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(-1);
+  private volatile long released = -1;
+
+  CommandRing(int capacity) {
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new ShardCommand[size];
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.slots[i] = new ShardCommand();
+      this.published.set(i, -1);
+    }
+    this.mask = size - 1;
+  }
+
+  long claim() {
+    long sequence = this.claimed.incrementAndGet();
+    while (sequence - this.slots.length > this.released) {
+      Thread.yield();
+    }
+    return sequence;
+  }
+
+  ShardCommand slot(long sequence) {
+    return this.slots[(int) sequence & this.mask];
+  }
+
+  void publish(long sequence) {
+    this.published.set((int) sequence & this.mask, sequence);
+  }
+
+  boolean isPublished(long sequence) {
+    return this.published.get((int) sequence & this.mask) == sequence;
+  }
+
+  void release(long sequence) {
+    this.released = sequence;
+  }
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * One point in time across all accounts of an engine that changes every account under its stripe
+ * lock, taken without stopping it: the stripes are read one at a time under their lock, and
+ * changes made meanwhile are split into those before and those after the cut.
+ *
+ * <p>A change that holds the stripes of all its accounts is after the cut if one of those stripes
+ * has been read already, or if one of its accounts took part in a change after the cut before.
+ * It then keeps the balance that each of its accounts on a stripe not read yet had before it, and
+ * the read uses that instead. Every change is thereby either entirely in the cut or entirely
+ * outside of it, and so is everything that follows from one outside of it. A change of a single
+ * account needs no hook: whichever side of the read it lands on, the cut stays consistent.
+ *
+ * <p>Accounts created while the cut is taken are after it and keep {@link #ABSENT}.
+ *
+ * @param <K> how the engine identifies an account
+ */
+final class ConsistentCut<K> {
+
+  static final Object ABSENT = new Object();
+
+  private final boolean[] read;
+
+  private final ConcurrentHashMap<K, Object> keptBalances = new ConcurrentHashMap<>();
+
+  private final Function<K, Object> balanceOf;
+
+  /** @param balanceOf reads the current balance of an account, called under its stripe lock */
+  ConsistentCut(int stripeCount, Function<K, Object> balanceOf) {
+    this.read = new boolean[stripeCount];
+    this.balanceOf = balanceOf;
+  }
+
+  /** Whether a change holding this account's stripe comes after the cut, checked before it changes anything. */
+  boolean isAfter(K account, int stripe) {
+    return this.read[stripe] || this.keptBalances.containsKey(account);
+  }
+
+  /** Called for every account of a change after the cut, under its stripe lock and before changing it. */
+  void keep(K account, int stripe) {
+    if (!this.read[stripe] && !this.keptBalances.containsKey(account)) {
+      this.keptBalances.put(account, this.balanceOf.apply(account));
+    }
+  }
+
+  void beforeChange(K first, int firstStripe, K second, int secondStripe) {
+    if (isAfter(first, firstStripe) || isAfter(second, secondStripe)) {
+      keep(first, firstStripe);
+      keep(second, secondStripe);
+    }
+  }
+
+  void created(K account, int stripe) {
+    if (!this.read[stripe]) {
+      this.keptBalances.putIfAbsent(account, ABSENT);
+    }
+  }
+
+  /**
+   * The balance kept for the account, {@link #ABSENT} if it did not exist yet at the cut, or
+   * {@code null} if its current balance is the one at the cut. Called under its stripe lock.
+   */
+  Object keptBalance(K account) {
+    return this.keptBalances.get(account);
+  }
+
+  /** Called once all accounts of the stripe are read, before its lock is released. */
+  void markRead(int stripe) {
+    this.read[stripe] = true;
+  }
+
+  int keptCount() {
+    return this.keptBalances.size();
+  }
+}
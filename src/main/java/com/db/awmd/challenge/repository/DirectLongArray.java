@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link HandleLongArray} in direct buffers, outside the heap, in chunks of {@value #CHUNK_SIZE}
+ * longs. Each long is one aligned slot, read and written with a single plain load or store, so a
+ * reader never sees half of a write. There is no compare-and-set on direct memory, so
+ * {@link #compareAndSet} is a plain compare and store: every write of a slot must hold a lock that
+ * covers it, such as the stripe lock of the slot's account, and a reader without that lock may see
+ * a value a moment old.
+ */
+final class DirectLongArray implements HandleLongArray {
+
+  static final int CHUNK_SIZE = 1 << 16;
+
+  private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private volatile LongBuffer[] chunks = new LongBuffer[16];
+
+  DirectLongArray() {
+  }
+
+  /** All {@code capacity} slots at once, zeroed. */
+  DirectLongArray(int capacity) {
+    LongBuffer[] chunks = new LongBuffer[(capacity + CHUNK_MASK) >>> CHUNK_SHIFT];
+    for (int chunk = 0; chunk < chunks.length; chunk++) {
+      chunks[chunk] = allocate(Math.min(CHUNK_SIZE, capacity - (chunk << CHUNK_SHIFT)));
+    }
+    this.chunks = chunks;
+  }
+
+  @Override
+  public long get(int handle) {
+    return this.chunks[handle >>> CHUNK_SHIFT].get(handle & CHUNK_MASK);
+  }
+
+  @Override
+  public void set(int handle, long value) {
+    this.chunks[handle >>> CHUNK_SHIFT].put(handle & CHUNK_MASK, value);
+  }
+
+  @Override
+  public boolean compareAndSet(int handle, long expected, long value) {
+    LongBuffer chunk = this.chunks[handle >>> CHUNK_SHIFT];
+    if (chunk.get(handle & CHUNK_MASK) != expected) {
+      return false;
+    }
+    chunk.put(handle & CHUNK_MASK, value);
+    return true;
+  }
+
+  @Override
+  public synchronized void ensureCapacity(int handle) {
+    int chunk = handle >>> CHUNK_SHIFT;
+    LongBuffer[] chunks = this.chunks;
+    if (chunk >= chunks.length) {
+      chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1));
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = allocate(CHUNK_SIZE);
+    }
+    this.chunks = chunks;
+  }
+
+  private static LongBuffer allocate(int longs) {
+    return ByteBuffer.allocateDirect(longs * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+  }
+}
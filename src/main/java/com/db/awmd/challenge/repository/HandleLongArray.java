@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * Longs indexed by account handle, read and written atomically. {@link DirectLongArray} only
+ * compares and sets under a lock held by the caller.
+ */
+interface HandleLongArray {
+
+  long get(int handle);
+
+  void set(int handle, long value);
+
+  boolean compareAndSet(int handle, long expected, long value);
+
+  /** Makes room for the handle, before it is published to other threads. */
+  void ensureCapacity(int handle);
+}
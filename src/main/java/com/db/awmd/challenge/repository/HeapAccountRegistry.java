@@ -0,0 +1,112 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@link AccountRegistry} keeping the ids in an open-addressing table on the heap, with linear
+ * probing: a lookup takes no lock and allocates nothing. Registrations are serialized and double
+ * the table once it is half full; lookups racing with that keep reading the old table.
+ */
+final class HeapAccountRegistry implements AccountRegistry {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+
+  private volatile int size;
+
+  @Override
+  public int handleOf(String accountId) {
+    return this.table.get(accountId);
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public synchronized int add(String accountId, IntConsumer initializer) {
+    Table table = this.table;
+    if (table.get(accountId) != ABSENT) {
+      return ABSENT;
+    }
+    int handle = this.size;
+    initializer.accept(handle);
+    if ((handle + 1) * 2 > table.capacity()) {
+      table = table.grow();
+    }
+    table.put(accountId, handle);
+    this.table = table;
+    this.size = handle + 1;
+    return handle;
+  }
+
+  @Override
+  public void forEach(ObjIntConsumer<String> visitor) {
+    this.table.forEach(visitor);
+  }
+
+  private static final class Table {
+
+    private final AtomicReferenceArray<String> ids;
+    private final int[] handles;
+    private final int shift;
+
+    private Table(int capacity) {
+      this.ids = new AtomicReferenceArray<>(capacity);
+      this.handles = new int[capacity];
+      this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private int capacity() {
+      return this.handles.length;
+    }
+
+    private int get(String accountId) {
+      int mask = this.handles.length - 1;
+      for (int slot = slot(accountId); ; slot = (slot + 1) & mask) {
+        String id = this.ids.get(slot);
+        if (id == null) {
+          return ABSENT;
+        }
+        if (id.equals(accountId)) {
+          return this.handles[slot];
+        }
+      }
+    }
+
+    /** Stores the handle first, the id written after it is what makes the entry visible. */
+    private void put(String accountId, int handle) {
+      int mask = this.handles.length - 1;
+      int slot = slot(accountId);
+      while (this.ids.get(slot) != null) {
+        slot = (slot + 1) & mask;
+      }
+      this.handles[slot] = handle;
+      this.ids.set(slot, accountId);
+    }
+
+    private Table grow() {
+      Table grown = new Table(this.handles.length * 2);
+      forEach(grown::put);
+      return grown;
+    }
+
+    private void forEach(ObjIntConsumer<String> visitor) {
+      for (int slot = 0; slot < this.handles.length; slot++) {
+        String id = this.ids.get(slot);
+        if (id != null) {
+          visitor.accept(id, this.handles[slot]);
+        }
+      }
+    }
+
+    /** Fibonacci hashing, so that ids with neighbouring hash codes do not fill neighbouring slots. */
+    private int slot(String accountId) {
+      return (accountId.hashCode() * 0x9E3779B9) >>> this.shift;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link HandleLongArray} on the heap. Storage grows in chunks of {@value #CHUNK_SIZE} as handles
+ * are handed out, so growing never copies the values and readers never wait for it.
+ */
+final class HeapLongArray implements HandleLongArray {
+
+  static final int CHUNK_SIZE = 1 << 12;
+
+  private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private volatile AtomicLongArray[] chunks = new AtomicLongArray[16];
+
+  @Override
+  public long get(int handle) {
+    return this.chunks[handle >>> CHUNK_SHIFT].get(handle & CHUNK_MASK);
+  }
+
+  @Override
+  public void set(int handle, long value) {
+    this.chunks[handle >>> CHUNK_SHIFT].set(handle & CHUNK_MASK, value);
+  }
+
+  @Override
+  public boolean compareAndSet(int handle, long expected, long value) {
+    return this.chunks[handle >>> CHUNK_SHIFT].compareAndSet(handle & CHUNK_MASK, expected, value);
+  }
+
+  @Override
+  public synchronized void ensureCapacity(int handle) {
+    int chunk = handle >>> CHUNK_SHIFT;
+    AtomicLongArray[] chunks = this.chunks;
+    if (chunk >= chunks.length) {
+      chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1));
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = new AtomicLongArray(CHUNK_SIZE);
+    }
+    this.chunks = chunks;
+  }
+}
@@ -0,0 +1,143 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Accounts of the scaled-long storage without an object per account. The {@link AccountRegistry}
+ * gives each account a handle, and the account's balance in minor units and its last journal
+ * sequence are the longs at that handle in two {@link HandleLongArray}s. Balances change with
+ * compare-and-set loops. A hot account's slot holds a marker instead, the index of its
+ * {@link StripedBalance}. Off-heap, the ids, balances and sequences are all in direct buffers, and
+ * every change of a slot must hold its account's stripe lock.
+ */
+final class MinorUnitAccounts {
+
+  /** Slots below {@code STRIPED + MAX_STRIPED} are markers, no balance can be that negative. */
+  private static final long STRIPED = Long.MIN_VALUE;
+
+  private static final int MAX_STRIPED = 1 << 16;
+
+  private final AccountRegistry registry;
+
+  private final HandleLongArray balances;
+
+  private final HandleLongArray journalSequences;
+
+  private volatile StripedBalance[] stripedBalances = new StripedBalance[0];
+
+  /** Journal sequences are only stored with {@code journaled}, they are always 0 otherwise. */
+  MinorUnitAccounts(boolean journaled, boolean offHeap) {
+    this.registry = offHeap ? new OffHeapAccountRegistry() : new HeapAccountRegistry();
+    this.balances = offHeap ? new DirectLongArray() : new HeapLongArray();
+    this.journalSequences = !journaled ? null : offHeap ? new DirectLongArray() : new HeapLongArray();
+  }
+
+  int handleOf(String accountId) {
+    return this.registry.handleOf(accountId);
+  }
+
+  /**
+   * Registers the account and returns its handle, or {@link AccountRegistry#ABSENT} if it exists
+   * already. With {@code stripes} above zero its balance is a {@link StripedBalance}.
+   */
+  int create(String accountId, long units, int stripes) {
+    return this.registry.add(accountId, handle -> {
+      this.balances.ensureCapacity(handle);
+      if (this.journalSequences != null) {
+        this.journalSequences.ensureCapacity(handle);
+      }
+      this.balances.set(handle, stripes > 0 ? addStriped(new StripedBalance(stripes, units)) : units);
+    });
+  }
+
+  /** Visits every account id with its handle, in no particular order. */
+  void forEach(ObjIntConsumer<String> visitor) {
+    this.registry.forEach(visitor);
+  }
+
+  boolean isStriped(int handle) {
+    return isMarker(this.balances.get(handle));
+  }
+
+  long get(int handle) {
+    long units = this.balances.get(handle);
+    return isMarker(units) ? striped(units).get() : units;
+  }
+
+  void set(int handle, long units) {
+    long current = this.balances.get(handle);
+    if (isMarker(current)) {
+      striped(current).set(units);
+    } else {
+      this.balances.set(handle, units);
+    }
+  }
+
+  /** Adds the units without any check, for journal replay and for reverting a change. */
+  void add(int handle, long units) {
+    long current;
+    do {
+      current = this.balances.get(handle);
+      if (isMarker(current)) {
+        striped(current).add(units);
+        return;
+      }
+    } while (!this.balances.compareAndSet(handle, current, current + units));
+  }
+
+  /** Debits the units if the balance covers them, returns false and changes nothing otherwise. */
+  boolean tryDebit(int handle, long units) {
+    long current;
+    do {
+      current = this.balances.get(handle);
+      if (isMarker(current)) {
+        return striped(current).tryDebit(units);
+      }
+      if (units > current) {
+        return false;
+      }
+    } while (!this.balances.compareAndSet(handle, current, current - units));
+    return true;
+  }
+
+  /** Credits the units, throws {@link ArithmeticException} if the balance would overflow. */
+  void credit(int handle, long units) {
+    long current;
+    do {
+      current = this.balances.get(handle);
+      if (isMarker(current)) {
+        striped(current).credit(units);
+        return;
+      }
+    } while (!this.balances.compareAndSet(handle, current, Math.addExact(current, units)));
+  }
+
+  long journalSequence(int handle) {
+    return this.journalSequences == null ? 0 : this.journalSequences.get(handle);
+  }
+
+  void recordJournalSequence(int handle, long sequence) {
+    this.journalSequences.set(handle, sequence);
+  }
+
+  /** Called under the registry lock, which also serializes these copies. */
+  private long addStriped(StripedBalance balance) {
+    StripedBalance[] stripedBalances = this.stripedBalances;
+    if (stripedBalances.length == MAX_STRIPED) {
+      throw new IllegalStateException("Too many hot accounts: " + MAX_STRIPED);
+    }
+    stripedBalances = Arrays.copyOf(stripedBalances, stripedBalances.length + 1);
+    stripedBalances[stripedBalances.length - 1] = balance;
+    this.stripedBalances = stripedBalances;
+    return STRIPED + stripedBalances.length - 1;
+  }
+
+  private StripedBalance striped(long marker) {
+    return this.stripedBalances[(int) (marker - STRIPED)];
+  }
+
+  private static boolean isMarker(long units) {
+    return units < STRIPED + MAX_STRIPED;
+  }
+}
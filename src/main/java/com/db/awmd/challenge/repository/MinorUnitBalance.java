@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.repository;
+
+/** Balance of one account as a count of minor units, updated without taking a lock. */
+interface MinorUnitBalance {
+
+  long get();
+
+  void set(long units);
+
+  /** Adds the units without any check, for journal replay and for reverting a change. */
+  void add(long units);
+
+  /** Debits the units if the balance covers them, returns false and changes nothing otherwise. */
+  boolean tryDebit(long units);
+
+  /** Credits the units, throws {@link ArithmeticException} if the balance would overflow. */
+  void credit(long units);
+}
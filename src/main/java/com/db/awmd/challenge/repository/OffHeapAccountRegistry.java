@@ -0,0 +1,192 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@link AccountRegistry} that keeps the ids and their index in direct buffers, so that tens of
+ * millions of accounts leave nothing per id on the heap for the garbage collector to trace. Each id
+ * is appended to an arena buffer as its length followed by its UTF-16 chars, and its place, the
+ * arena index and the offset in it, is stored under the account's handle in a
+ * {@link DirectLongArray}. The index is an open-addressing table in another one, each long holding
+ * an id's hash code and its handle, written with one aligned store. A lookup compares the id with
+ * the arena char by char and allocates nothing. Registrations are serialized and double the table
+ * once it is half full.
+ *
+ * <p>Direct memory has no volatile stores, so a registration is published by the volatile size
+ * written after it: a lookup only trusts an entry whose handle is below the size it reads, which
+ * makes the id written before visible too. An entry written meanwhile is not registered yet.
+ *
+ * <p>All memory is owned by the JDK: a buffer or table is released by the garbage collector once
+ * no lookup can reach it any more.
+ */
+final class OffHeapAccountRegistry implements AccountRegistry {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final int ARENA_SIZE = 1 << 20;
+
+  private final HandleLongArray idPlaces = new DirectLongArray();
+
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+
+  /** Copied on growth, published before any id stored in the new arena. */
+  private volatile ByteBuffer[] arenas = new ByteBuffer[0];
+
+  private ByteBuffer arena;
+
+  private volatile int size;
+
+  @Override
+  public int handleOf(String accountId) {
+    Table table = this.table;
+    int hash = accountId.hashCode();
+    for (int slot = table.slot(hash); ; slot = (slot + 1) & table.mask) {
+      long entry = table.get(slot);
+      if (entry == 0) {
+        return ABSENT;
+      }
+      int handle = (int) entry - 1;
+      if ((int) (entry >>> 32) == hash && isPublished(handle) && matches(this.idPlaces.get(handle), accountId)) {
+        return handle;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public synchronized int add(String accountId, IntConsumer initializer) {
+    if (handleOf(accountId) != ABSENT) {
+      return ABSENT;
+    }
+    int handle = this.size;
+    this.idPlaces.ensureCapacity(handle);
+    this.idPlaces.set(handle, storeId(accountId));
+    initializer.accept(handle);
+    Table table = this.table;
+    if ((handle + 1L) * 2 > table.capacity) {
+      table = table.grow();
+    }
+    table.put(entry(accountId.hashCode(), handle));
+    this.table = table;
+    this.size = handle + 1;
+    return handle;
+  }
+
+  @Override
+  public void forEach(ObjIntConsumer<String> visitor) {
+    Table table = this.table;
+    for (int slot = 0; slot < table.capacity; slot++) {
+      long entry = table.get(slot);
+      int handle = (int) entry - 1;
+      if (entry != 0 && isPublished(handle)) {
+        visitor.accept(readId(this.idPlaces.get(handle)), handle);
+      }
+    }
+  }
+
+  /** Reads the volatile size, after which everything registered before it is visible. */
+  private boolean isPublished(int handle) {
+    return handle >= 0 && handle < this.size;
+  }
+
+  /** Handles are stored plus one, so that an empty slot is 0. */
+  private static long entry(int hash, int handle) {
+    return ((long) hash << 32) | (handle + 1L);
+  }
+
+  /** Returns the place of the id, the arena index in the high and the offset in the low half. */
+  private long storeId(String accountId) {
+    int bytes = (Integer.BYTES + accountId.length() * 2 + 3) & ~3;
+    ByteBuffer arena = this.arena;
+    if (arena == null || arena.remaining() < bytes) {
+      arena = ByteBuffer.allocateDirect(Math.max(ARENA_SIZE, bytes)).order(ByteOrder.nativeOrder());
+      ByteBuffer[] arenas = Arrays.copyOf(this.arenas, this.arenas.length + 1);
+      arenas[arenas.length - 1] = arena;
+      this.arenas = arenas;
+      this.arena = arena;
+    }
+    int offset = arena.position();
+    arena.putInt(offset, accountId.length());
+    for (int i = 0; i < accountId.length(); i++) {
+      arena.putChar(offset + Integer.BYTES + (i << 1), accountId.charAt(i));
+    }
+    arena.position(offset + bytes);
+    return ((long) (this.arenas.length - 1) << 32) | offset;
+  }
+
+  private boolean matches(long place, String accountId) {
+    ByteBuffer arena = this.arenas[(int) (place >>> 32)];
+    int offset = (int) place;
+    int length = arena.getInt(offset);
+    if (length != accountId.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (arena.getChar(offset + Integer.BYTES + (i << 1)) != accountId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String readId(long place) {
+    ByteBuffer arena = this.arenas[(int) (place >>> 32)];
+    int offset = (int) place;
+    char[] chars = new char[arena.getInt(offset)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = arena.getChar(offset + Integer.BYTES + (i << 1));
+    }
+    return new String(chars);
+  }
+
+  private static final class Table {
+
+    private final DirectLongArray entries;
+    private final int capacity;
+    private final int mask;
+    private final int shift;
+
+    private Table(int capacity) {
+      this.entries = new DirectLongArray(capacity);
+      this.capacity = capacity;
+      this.mask = capacity - 1;
+      this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private long get(int slot) {
+      return this.entries.get(slot);
+    }
+
+    private void put(long entry) {
+      int slot = slot((int) (entry >>> 32));
+      while (get(slot) != 0) {
+        slot = (slot + 1) & this.mask;
+      }
+      this.entries.set(slot, entry);
+    }
+
+    private Table grow() {
+      Table grown = new Table(this.capacity * 2);
+      for (int slot = 0; slot < this.capacity; slot++) {
+        long entry = get(slot);
+        if (entry != 0) {
+          grown.put(entry);
+        }
+      }
+      return grown;
+    }
+
+    /** Fibonacci hashing, so that ids with neighbouring hash codes do not fill neighbouring slots. */
+    private int slot(int hash) {
+      return (hash * 0x9E3779B9) >>> this.shift;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/** Account store whose balances can all be read as of one point in time while transfers keep running. */
+public interface PointInTimeBalances {
+
+  /**
+   * Adds the balance of every account that existed at one consistent cut to a sink. The lock
+   * stripes are read in parallel on the common fork-join pool, each task fills its own sink from
+   * {@code sinks} and the sinks are combined pairwise with {@code merge}, which folds the second
+   * into the first. Only one collection runs at a time.
+   */
+  <S extends BalanceSink> S collectBalances(Supplier<S> sinks, BiConsumer<S, S> merge);
+
+  interface BalanceSink {
+
+    void add(BigDecimal balance);
+
+    /** Same as {@link #add(BigDecimal)} for a balance kept as a count of minor units. */
+    void addMinorUnits(long units);
+  }
+}
@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.CountDownLatch;
+
+/** Holds every shard of {@link AccountsRepositorySharded} still while one thread works on all accounts. */
+final class ShardBarrier {
+
+  private final CountDownLatch paused;
+  private final CountDownLatch resumed = new CountDownLatch(1);
+
+  ShardBarrier(int shards) {
+    this.paused = new CountDownLatch(shards);
+  }
+
+  /** Called by a shard thread, returns once the barrier is released. */
+  void pause() {
+    this.paused.countDown();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        this.resumed.await();
+        break;
+      } catch (InterruptedException ie) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void awaitPaused() {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        this.paused.await();
+        break;
+      } catch (InterruptedException ie) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void release() {
+    this.resumed.countDown();
+  }
+}
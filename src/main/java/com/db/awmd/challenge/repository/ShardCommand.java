@@ -0,0 +1,45 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mutable command processed by a shard of {@link AccountsRepositorySharded}. Ring slots are
+ * preallocated instances that are filled in place by the submitter and cleared after processing;
+ * only the legs a cross-shard transfer hands to another shard are allocated.
+ */
+final class ShardCommand {
+
+  enum Type { CREATE, UPDATE, DEBIT, CREDIT, TRANSFER, CREDIT_LEG, REFUND_LEG, PAUSE }
+
+  Type type;
+  String accountId;
+  String counterpartyId;
+  long units;
+  CompletableFuture<TransferOutcome> result;
+  ShardBarrier barrier;
+  RuntimeException failure;
+
+  void set(Type type, String accountId, String counterpartyId, long units,
+    CompletableFuture<TransferOutcome> result, ShardBarrier barrier) {
+    this.type = type;
+    this.accountId = accountId;
+    this.counterpartyId = counterpartyId;
+    this.units = units;
+    this.result = result;
+    this.barrier = barrier;
+    this.failure = null;
+  }
+
+  static ShardCommand leg(Type type, String accountId, String counterpartyId, long units,
+    CompletableFuture<TransferOutcome> result, RuntimeException failure) {
+    ShardCommand command = new ShardCommand();
+    command.set(type, accountId, counterpartyId, units, result, null);
+    command.failure = failure;
+    return command;
+  }
+
+  void clear() {
+    set(null, null, null, 0, null, null);
+  }
+}
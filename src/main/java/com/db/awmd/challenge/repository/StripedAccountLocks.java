@@ -0,0 +1,187 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.service.LatencyHistogram;
+import com.db.awmd.challenge.service.LockContentionProfiler;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fixed pool of locks that account ids are hashed onto. Transfers lock only the stripes of the
+ * accounts they touch, always in ascending stripe order, so two transfers can never wait on each
+ * other in a cycle.
+ *
+ * <p>Time spent waiting for a stripe is recorded separately from the work done under it. An
+ * uncontended acquisition succeeds on the first {@code tryLock} and is only counted, so the clock
+ * is read only when a thread actually has to wait. Acquisitions picked by the
+ * {@link LockContentionProfiler} are also timed until release and reported with the account they
+ * were taken for; the holder keeps that state in per-stripe slots, so an unsampled release only
+ * reads one flag.
+ */
+@Component
+public class StripedAccountLocks {
+
+  private final ReentrantLock[] stripes;
+  private final int mask;
+  private final LongAdder acquisitions = new LongAdder();
+  private final LatencyHistogram lockWait = new LatencyHistogram();
+  private final LockContentionProfiler profiler;
+  private final boolean[] sampled;
+  private final long[] sampledSince;
+  private final long[] sampledWait;
+  private final String[] sampledAccountIds;
+
+  public StripedAccountLocks(int stripeCount) {
+    this(stripeCount, LockContentionProfiler.disabled());
+  }
+
+  @Autowired
+  public StripedAccountLocks(@Value("${transfer.lock-stripes:1024}") int stripeCount,
+    LockContentionProfiler profiler) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("Lock stripe count must be positive: " + stripeCount);
+    }
+    int size = Integer.highestOneBit(stripeCount);
+    if (size < stripeCount) {
+      size <<= 1;
+    }
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+    this.mask = size - 1;
+    this.profiler = profiler;
+    this.sampled = new boolean[size];
+    this.sampledSince = new long[size];
+    this.sampledWait = new long[size];
+    this.sampledAccountIds = new String[size];
+  }
+
+  public int stripeCount() {
+    return this.stripes.length;
+  }
+
+  public int stripeOf(String accountId) {
+    int h = accountId.hashCode();
+    return (h ^ (h >>> 16)) & this.mask;
+  }
+
+  public long getAcquisitions() {
+    return this.acquisitions.sum();
+  }
+
+  public LatencyHistogram getLockWait() {
+    return this.lockWait;
+  }
+
+  public void lock(String accountId) {
+    acquire(stripeOf(accountId), accountId);
+  }
+
+  public void unlock(String accountId) {
+    release(stripeOf(accountId));
+  }
+
+  public void lock(String firstAccountId, String secondAccountId) {
+    int first = stripeOf(firstAccountId);
+    int second = stripeOf(secondAccountId);
+    if (first == second) {
+      acquire(first, firstAccountId);
+    } else if (first < second) {
+      acquire(first, firstAccountId);
+      acquire(second, secondAccountId);
+    } else {
+      acquire(second, secondAccountId);
+      acquire(first, firstAccountId);
+    }
+  }
+
+  public void unlock(String firstAccountId, String secondAccountId) {
+    int first = stripeOf(firstAccountId);
+    int second = stripeOf(secondAccountId);
+    if (first == second) {
+      release(first);
+    } else {
+      release(Math.max(first, second));
+      release(Math.min(first, second));
+    }
+  }
+
+  /**
+   * Locks the stripes of all given accounts in ascending order and returns them, so that the same
+   * array can be handed back to {@link #unlockAll(int[])}. Sampled acquisitions only count in the
+   * profiler's totals, a stripe may stand for several of the accounts.
+   */
+  public int[] lockAll(Collection<String> accountIds) {
+    int[] stripeIndexes = accountIds.stream().mapToInt(this::stripeOf).distinct().toArray();
+    Arrays.sort(stripeIndexes);
+    for (int stripe : stripeIndexes) {
+      acquire(stripe, null);
+    }
+    return stripeIndexes;
+  }
+
+  /** Locks every stripe in ascending order, for work that no change of any account may overlap. */
+  public int[] lockAllStripes() {
+    int[] stripeIndexes = IntStream.range(0, this.stripes.length).toArray();
+    for (int stripe : stripeIndexes) {
+      acquire(stripe, null);
+    }
+    return stripeIndexes;
+  }
+
+  /** Locks one stripe by its index, for work over all the accounts hashed onto it. */
+  public void lockStripe(int stripe) {
+    acquire(stripe, null);
+  }
+
+  public void unlockStripe(int stripe) {
+    release(stripe);
+  }
+
+  private void acquire(int stripe, String accountId) {
+    ReentrantLock lock = this.stripes[stripe];
+    this.acquisitions.increment();
+    boolean sample = this.profiler.sample();
+    long wait = 0;
+    if (!lock.tryLock()) {
+      long start = System.nanoTime();
+      lock.lock();
+      wait = System.nanoTime() - start;
+      this.lockWait.record(wait);
+    }
+    if (sample && lock.getHoldCount() == 1) {
+      this.sampled[stripe] = true;
+      this.sampledSince[stripe] = System.nanoTime();
+      this.sampledWait[stripe] = wait;
+      this.sampledAccountIds[stripe] = accountId;
+    }
+  }
+
+  /** Reports a sampled acquisition once the stripe is unlocked, so the profiler is never called under it. */
+  private void release(int stripe) {
+    ReentrantLock lock = this.stripes[stripe];
+    if (!this.sampled[stripe] || lock.getHoldCount() > 1) {
+      lock.unlock();
+      return;
+    }
+    long held = System.nanoTime() - this.sampledSince[stripe];
+    long wait = this.sampledWait[stripe];
+    String accountId = this.sampledAccountIds[stripe];
+    this.sampled[stripe] = false;
+    this.sampledAccountIds[stripe] = null;
+    lock.unlock();
+    this.profiler.record(accountId, wait, held);
+  }
+
+  public void unlockAll(int[] stripeIndexes) {
+    for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+      release(stripeIndexes[i]);
+    }
+  }
+}
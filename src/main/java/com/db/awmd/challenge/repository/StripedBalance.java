@@ -0,0 +1,116 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Balance of a hot account split into sub-balances, so that threads updating it concurrently do
+ * not all compete for one value. Each thread credits and debits the sub-balance its id maps to. A
+ * debit that finds its sub-balance short moves everything the others hold into it before deciding;
+ * these moves are serialized, so two short debits can never each see part of the money and both
+ * fail. The balance is the sum of the sub-balances, read without stopping writers. Moves bump a
+ * counter before and after, seqlock style, and a sum that overlapped a move is read again, so it
+ * never counts moved money twice or not at all.
+ */
+final class StripedBalance implements MinorUnitBalance {
+
+  /** Sub-balances are 8 longs apart so that each sits on its own cache line. */
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells;
+  private final int mask;
+  private volatile long moves;
+
+  StripedBalance(int stripes, long units) {
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) {
+      size <<= 1;
+    }
+    this.cells = new AtomicLongArray(size * PADDING);
+    this.mask = size - 1;
+    this.cells.set(0, units);
+  }
+
+  int stripeCount() {
+    return this.mask + 1;
+  }
+
+  @Override
+  public long get() {
+    while (true) {
+      long before = this.moves;
+      long units = 0;
+      for (int i = 0; i < this.cells.length(); i += PADDING) {
+        units += this.cells.get(i);
+      }
+      if ((before & 1) == 0 && this.moves == before) {
+        return units;
+      }
+    }
+  }
+
+  @Override
+  public synchronized void set(long units) {
+    this.moves++;
+    try {
+      for (int i = PADDING; i < this.cells.length(); i += PADDING) {
+        this.cells.set(i, 0);
+      }
+      this.cells.set(0, units);
+    } finally {
+      this.moves++;
+    }
+  }
+
+  @Override
+  public void add(long units) {
+    this.cells.getAndAdd(home(), units);
+  }
+
+  @Override
+  public boolean tryDebit(long units) {
+    int home = home();
+    if (take(home, units)) {
+      return true;
+    }
+    synchronized (this) {
+      this.moves++;
+      try {
+        for (int i = 0; i < this.cells.length(); i += PADDING) {
+          if (i != home) {
+            long moved = this.cells.getAndSet(i, 0);
+            if (moved != 0) {
+              this.cells.getAndAdd(home, moved);
+            }
+          }
+        }
+      } finally {
+        this.moves++;
+      }
+      return take(home, units);
+    }
+  }
+
+  @Override
+  public void credit(long units) {
+    int home = home();
+    long current;
+    do {
+      current = this.cells.get(home);
+    } while (!this.cells.compareAndSet(home, current, Math.addExact(current, units)));
+  }
+
+  private boolean take(int cell, long units) {
+    long current;
+    do {
+      current = this.cells.get(cell);
+      if (units > current) {
+        return false;
+      }
+    } while (!this.cells.compareAndSet(cell, current, current - units));
+    return true;
+  }
+
+  private int home() {
+    return ((int) Thread.currentThread().getId() & this.mask) * PADDING;
+  }
+}
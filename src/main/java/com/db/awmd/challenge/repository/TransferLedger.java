@@ -0,0 +1,322 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.domain.TransferHistoryPage;
+import com.db.awmd.challenge.domain.TransferRecord;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * In-memory history of completed transfers. Each transfer gets an increasing id and is stored with
+ * both of its accounts as primitive fields: the id, the other account's handle, the amount in minor
+ * units and the time. A page is found by a binary search on the account's ids and read from
+ * consecutive memory, so it costs the same however long the history is.
+ * <p>
+ * With {@code ledger.max-transfers} above zero only that many of the newest transfers are kept.
+ * Older entries are dropped when an account records its next transfer, and every eighth recorded
+ * transfer also trims one idle account in turn, so accounts that stopped trading do not hold on to
+ * them. An account left without transfers is dropped altogether and its handle reused, as soon as
+ * no transfer is being recorded or read at that moment; otherwise on the sweep's next round.
+ * Zero keeps everything. With {@code ledger.enabled=false} nothing is recorded and every page is
+ * empty.
+ */
+@Repository
+public class TransferLedger {
+
+  private static final int SWEEP_MASK = 7;
+  private static final int INITIAL_HANDLES = 1024;
+
+  private final boolean enabled;
+  private final long maxTransfers;
+  private final AtomicLong nextId = new AtomicLong();
+  private final ConcurrentMap<String, AccountHistory> histories = new ConcurrentHashMap<>();
+  private final Object registryLock = new Object();
+  private volatile AccountHistory[] handles = new AccountHistory[INITIAL_HANDLES];
+  private int accountCount;
+  private int[] freeHandles = new int[16];
+  private int freeCount;
+  /** Held shared while transfers are recorded or read, exclusively to drop accounts or clear. */
+  private final StampedLock handlesLock = new StampedLock();
+  private int sweepCursor;
+  private volatile long clearedBefore;
+
+  /** Amounts that have no exact minor unit count, only accepted by the big-decimal storage. */
+  private final ConcurrentNavigableMap<Long, BigDecimal> oddAmounts = new ConcurrentSkipListMap<>();
+
+  @Autowired
+  public TransferLedger(@Value("${ledger.enabled:true}") boolean enabled,
+    @Value("${ledger.max-transfers:1048576}") long maxTransfers) {
+    if (maxTransfers < 0) {
+      throw new IllegalArgumentException("Ledger retention must not be negative: " + maxTransfers);
+    }
+    this.enabled = enabled;
+    this.maxTransfers = maxTransfers;
+  }
+
+  /** Records a completed transfer and returns its id, or -1 with {@code ledger.enabled=false}. */
+  public long record(String accountFrom, String accountTo, BigDecimal amount) {
+    if (!this.enabled) {
+      return -1;
+    }
+    long id;
+    long oldest;
+    long stamp = this.handlesLock.readLock();
+    try {
+      AccountHistory from = history(accountFrom);
+      AccountHistory to = history(accountTo);
+      id = this.nextId.getAndIncrement();
+      long units = MinorUnits.toMinorUnitsOrInvalid(amount);
+      if (units == MinorUnits.INVALID) {
+        this.oddAmounts.put(id, amount);
+      }
+      long timestamp = System.currentTimeMillis();
+      oldest = oldestId(id);
+      from.add(id, ~to.handle, units, timestamp, oldest);
+      to.add(id, from.handle, units, timestamp, oldest);
+    } finally {
+      this.handlesLock.unlockRead(stamp);
+    }
+    if (this.maxTransfers > 0 && (id & SWEEP_MASK) == 0) {
+      sweep(oldest);
+    }
+    return id;
+  }
+
+  /**
+   * Returns up to {@code limit} transfers of the account with an id below {@code before}, newest
+   * first.
+   */
+  public TransferHistoryPage page(String accountId, long before, int limit) {
+    long stamp = this.handlesLock.readLock();
+    try {
+      return page(this.histories.get(accountId), accountId, before, limit);
+    } finally {
+      this.handlesLock.unlockRead(stamp);
+    }
+  }
+
+  private TransferHistoryPage page(AccountHistory history, String accountId, long before, int limit) {
+    if (history == null || limit <= 0) {
+      return new TransferHistoryPage(Collections.emptyList(), null);
+    }
+    long[] page = history.before(before, limit + 1, oldestId(this.nextId.get()));
+    int count = Math.min(page.length / AccountHistory.FIELDS, limit);
+    List<TransferRecord> transfers = new ArrayList<>(count);
+    AccountHistory[] handles = this.handles;
+    for (int i = 0; i < count; i++) {
+      int entry = i * AccountHistory.FIELDS;
+      long id = page[entry + AccountHistory.ID];
+      int counterparty = (int) page[entry + AccountHistory.COUNTERPARTY];
+      String other = handles[counterparty < 0 ? ~counterparty : counterparty].accountId;
+      long units = page[entry + AccountHistory.AMOUNT];
+      BigDecimal amount = units == MinorUnits.INVALID ? this.oddAmounts.get(id) : MinorUnits.fromMinorUnits(units);
+      long timestamp = page[entry + AccountHistory.TIMESTAMP];
+      transfers.add(counterparty < 0
+        ? new TransferRecord(id, accountId, other, amount, timestamp)
+        : new TransferRecord(id, other, accountId, amount, timestamp));
+    }
+    Long nextBefore = count == limit && page.length > limit * AccountHistory.FIELDS
+      ? transfers.get(limit - 1).getTransferId() : null;
+    return new TransferHistoryPage(transfers, nextBefore);
+  }
+
+  /**
+   * Forgets all transfers and accounts and starts over with a new handle table; ids keep
+   * increasing. Waits for the transfers being recorded or read.
+   */
+  public void clear() {
+    long stamp = this.handlesLock.writeLock();
+    try {
+      this.clearedBefore = this.nextId.get();
+      this.histories.clear();
+      this.oddAmounts.clear();
+      synchronized (this.registryLock) {
+        this.handles = new AccountHistory[INITIAL_HANDLES];
+        this.accountCount = 0;
+        this.freeCount = 0;
+      }
+    } finally {
+      this.handlesLock.unlockWrite(stamp);
+    }
+  }
+
+  /** Number of accounts that have transfers in the ledger. */
+  public int getAccountCount() {
+    return this.histories.size();
+  }
+
+  private long oldestId(long newestId) {
+    return this.maxTransfers > 0 ? Math.max(this.clearedBefore, newestId - this.maxTransfers) : this.clearedBefore;
+  }
+
+  private AccountHistory history(String accountId) {
+    AccountHistory history = this.histories.get(accountId);
+    return history != null ? history : this.histories.computeIfAbsent(accountId, this::register);
+  }
+
+  private AccountHistory register(String accountId) {
+    synchronized (this.registryLock) {
+      int handle = this.freeCount > 0 ? this.freeHandles[--this.freeCount] : this.accountCount++;
+      AccountHistory[] handles = this.handles;
+      if (handle == handles.length) {
+        handles = Arrays.copyOf(handles, handles.length * 2);
+      }
+      AccountHistory history = new AccountHistory(handle, accountId);
+      handles[handle] = history;
+      this.handles = handles;
+      return history;
+    }
+  }
+
+  /** Trims the next account in turn. The cursor is racy, a skipped account waits for the next round. */
+  private void sweep(long oldestId) {
+    AccountHistory[] handles = this.handles;
+    int cursor = this.sweepCursor++ & Integer.MAX_VALUE;
+    AccountHistory history = handles[cursor % handles.length];
+    if (history != null && history.trim(oldestId)) {
+      retire(history);
+    }
+    if ((cursor & 127) == 0 && !this.oddAmounts.isEmpty()) {
+      this.oddAmounts.headMap(oldestId).clear();
+    }
+  }
+
+  /**
+   * Drops an account whose transfers have all been trimmed. Only entries older than the retention,
+   * which no page returns any more, still name its handle, so the handle can be given to the next
+   * new account.
+   */
+  private void retire(AccountHistory history) {
+    long stamp = this.handlesLock.tryWriteLock();
+    if (stamp == 0) {
+      return;
+    }
+    try {
+      if (history.isEmpty() && this.histories.remove(history.accountId, history)) {
+        synchronized (this.registryLock) {
+          this.handles[history.handle] = null;
+          if (this.freeCount == this.freeHandles.length) {
+            this.freeHandles = Arrays.copyOf(this.freeHandles, this.freeCount * 2);
+          }
+          this.freeHandles[this.freeCount++] = history.handle;
+        }
+      }
+    } finally {
+      this.handlesLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Transfers of one account in ascending id order, {@value #FIELDS} longs per transfer in one
+   * array so that appending one touches a single cache line: the id, the other account's handle
+   * (complemented when this account was the source), the amount in minor units and the time. Ids
+   * are taken before the account is locked, so an id can arrive after a larger one and is then
+   * inserted in place.
+   */
+  private static final class AccountHistory {
+
+    static final int FIELDS = 4;
+    static final int ID = 0;
+    static final int COUNTERPARTY = 1;
+    static final int AMOUNT = 2;
+    static final int TIMESTAMP = 3;
+
+    final int handle;
+    final String accountId;
+    private long[] entries = new long[8 * FIELDS];
+    private int start;
+    private int end;
+
+    AccountHistory(int handle, String accountId) {
+      this.handle = handle;
+      this.accountId = accountId;
+    }
+
+    synchronized void add(long id, int counterparty, long amount, long timestamp, long oldestId) {
+      if (this.end == this.entries.length) {
+        dropBefore(oldestId);
+        int size = this.end - this.start;
+        resize(size * 2 > this.entries.length ? this.entries.length * 2 : this.entries.length);
+      }
+      int position = this.end;
+      while (position > this.start && this.entries[position - FIELDS + ID] > id) {
+        position -= FIELDS;
+      }
+      if (position < this.end) {
+        System.arraycopy(this.entries, position, this.entries, position + FIELDS, this.end - position);
+      }
+      this.entries[position + ID] = id;
+      this.entries[position + COUNTERPARTY] = counterparty;
+      this.entries[position + AMOUNT] = amount;
+      this.entries[position + TIMESTAMP] = timestamp;
+      this.end += FIELDS;
+    }
+
+    /** Drops the transfers older than the retention, returns whether none are left. */
+    synchronized boolean trim(long oldestId) {
+      if (this.start < this.end && this.entries[this.start + ID] < oldestId) {
+        dropBefore(oldestId);
+        int size = this.end - this.start;
+        if (size * 4 < this.entries.length && this.entries.length > 8 * FIELDS) {
+          resize(Math.max(8 * FIELDS, this.entries.length / 2));
+        }
+      }
+      return this.start == this.end;
+    }
+
+    synchronized boolean isEmpty() {
+      return this.start == this.end;
+    }
+
+    /** Copies up to {@code count} transfers with an id below {@code before}, newest first. */
+    synchronized long[] before(long before, int count, long oldestId) {
+      int position = search(this.start, this.end, before);
+      int first = search(this.start, position, oldestId);
+      long[] page = new long[Math.min(count * FIELDS, position - first)];
+      for (int i = 0; i < page.length; i += FIELDS) {
+        System.arraycopy(this.entries, position - FIELDS - i, page, i, FIELDS);
+      }
+      return page;
+    }
+
+    /** Position of the first entry in the range whose id is not below the given one. */
+    private int search(int from, int to, long id) {
+      int low = from / FIELDS;
+      int high = to / FIELDS;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (this.entries[middle * FIELDS + ID] < id) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low * FIELDS;
+    }
+
+    private void dropBefore(long oldestId) {
+      this.start = search(this.start, this.end, oldestId);
+    }
+
+    private void resize(int capacity) {
+      int size = this.end - this.start;
+      long[] entries = capacity == this.entries.length ? this.entries : new long[capacity];
+      System.arraycopy(this.entries, this.start, entries, 0, size);
+      this.entries = entries;
+      this.start = 0;
+      this.end = size;
+    }
+  }
+}
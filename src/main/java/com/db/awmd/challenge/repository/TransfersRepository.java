@@ -3,14 +3,24 @@ package com.db.awmd.challenge.repository;
 import com.db.awmd.challenge.domain.*;
 import com.db.awmd.challenge.exception.*;
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface TransfersRepository {
 
   void createTransfer(Transfer transfer) throws RuntimeException;
+  TransferOutcome tryCreateTransfer(Transfer transfer);
+  CompletableFuture<TransferOutcome> submitTransfer(Transfer transfer);
+  void createTransfers(List<Transfer> transfers) throws BatchTransferException;
+
+  /** Applies every leg or none; a rejection carries the index of the leg it concerns. */
+  void createMultiLegTransfer(MultiLegTransfer transfer) throws BatchTransferException;
   void updateAccount(Account account);
   void withDraw(String accountId, BigDecimal amount) throws InsufficientBalanceException;
   void credit(String accountId, BigDecimal amount);
+  void transfer(String accountFromId, String accountToId, BigDecimal amount) throws InsufficientBalanceException;
   Account getAccount(String accountId);
+  TransferHistoryPage getTransferHistory(String accountId, long before, int limit);
 
   void notifyTransfer(Account accountFrom, Account accountTo, BigDecimal amount);
 }
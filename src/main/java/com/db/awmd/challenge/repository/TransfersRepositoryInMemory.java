@@ -2,14 +2,19 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.*;
 import com.db.awmd.challenge.exception.*;
-import com.db.awmd.challenge.service.EmailNotificationService;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferAuditLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Repository
@@ -24,39 +29,171 @@ public class TransfersRepositoryInMemory implements TransfersRepository {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private NotificationDispatcher notificationDispatcher;
+
+  @Autowired
+  private TransferLedger transferLedger;
+
+  @Autowired
+  private TransferAuditLog transferAuditLog;
+
   @Override
-  @Synchronized
   public void createTransfer(Transfer transfer) throws RuntimeException {
 	  Account accountFrom=this.getAccount(transfer.getAccountFrom());
 	  Account accountTo=this.getAccount(transfer.getAccountTo());
+	  this.validateTransfer(transfer, accountFrom, accountTo);
+	  try {
+		  this.transfer(accountFrom.getAccountId(),accountTo.getAccountId(),transfer.getAmount());
+	  } catch (RuntimeException re) {
+		  this.transferAuditLog.rejected(TransferOutcome.of(re),transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+		  throw re;
+	  }
+	  this.transferAuditLog.completed(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+	  this.transferLedger.record(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+	  this.notifyTransfer(accountFrom,accountTo, transfer.getAmount());
+  }
+
+  /**
+   * Same checks and transfer as {@link #createTransfer} with the rejection returned as a
+   * preallocated outcome, no exception, message or account copy is built for it.
+   */
+  @Override
+  public TransferOutcome tryCreateTransfer(Transfer transfer) {
+	  TransferOutcome outcome=this.accountsService.tryTransfer(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+	  if (outcome!=TransferOutcome.COMPLETED) {
+		  this.transferAuditLog.rejected(outcome,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+		  return outcome;
+	  }
+	  this.transferAuditLog.completed(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+	  this.transferLedger.record(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+	  this.notifyTransfer(this.getAccount(transfer.getAccountFrom()),this.getAccount(transfer.getAccountTo()), transfer.getAmount());
+	  return outcome;
+  }
+
+  /**
+   * Asynchronous {@link #tryCreateTransfer}: logging and the notification run on whichever thread
+   * completes the transfer, the caller's for a rejection.
+   */
+  @Override
+  public CompletableFuture<TransferOutcome> submitTransfer(Transfer transfer) {
+	  return this.accountsService.submitTransfer(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount())
+		  .thenApply(outcome -> {
+			  if (outcome!=TransferOutcome.COMPLETED) {
+				  this.transferAuditLog.rejected(outcome,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+				  return outcome;
+			  }
+			  this.transferAuditLog.completed(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+			  this.transferLedger.record(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+			  this.notifyTransfer(this.getAccount(transfer.getAccountFrom()),this.getAccount(transfer.getAccountTo()), transfer.getAmount());
+			  return outcome;
+		  });
+  }
+
+  @Override
+  public void createTransfers(List<Transfer> transfers) throws BatchTransferException {
+	  Account[] accountsFrom=new Account[transfers.size()];
+	  Account[] accountsTo=new Account[transfers.size()];
+	  for (int i = 0; i < transfers.size(); i++) {
+		  Transfer transfer=transfers.get(i);
+		  accountsFrom[i]=this.getAccount(transfer.getAccountFrom());
+		  accountsTo[i]=this.getAccount(transfer.getAccountTo());
+		  try {
+			  this.validateTransfer(transfer, accountsFrom[i], accountsTo[i]);
+		  } catch (RuntimeException re) {
+			  throw new BatchTransferException(i, re);
+		  }
+	  }
+	  try {
+		  this.accountsService.transferAll(transfers);
+	  } catch (BatchTransferException bte) {
+		  Transfer failed=transfers.get(bte.getIndex());
+		  log.info("Transfer batch failed at {} {}", bte.getIndex(), failed);
+		  this.transferAuditLog.rejected(TransferOutcome.of((RuntimeException) bte.getCause()),failed.getAccountFrom(),failed.getAccountTo(),failed.getAmount());
+		  throw bte;
+	  }
+	  log.info("Transfer batch complete, {} transfers", transfers.size());
+	  for (int i = 0; i < transfers.size(); i++) {
+		  Transfer transfer=transfers.get(i);
+		  this.transferAuditLog.completed(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+		  this.transferLedger.record(transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
+		  this.notifyTransfer(accountsFrom[i],accountsTo[i], transfer.getAmount());
+	  }
+  }
+
+  /**
+   * Looks the source and every distinct recipient up once, merges the legs per recipient and
+   * commits them as one batch under the locks of all participants, which the engine takes in
+   * canonical order. The source balance is only checked there, under its lock. A rejection of a
+   * merged credit is reported at the recipient's first leg. The ledger and the audit log record
+   * every leg as requested, and each recipient gets one notification for its total.
+   */
+  @Override
+  public void createMultiLegTransfer(MultiLegTransfer transfer) throws BatchTransferException {
+	  List<TransferLeg> legs=transfer.getLegs();
+	  Account accountFrom=this.getAccount(transfer.getAccountFrom());
+	  Map<String,Integer> recipients=new HashMap<>();
+	  List<Transfer> legTransfers=new ArrayList<>(legs.size());
+	  List<Transfer> credits=new ArrayList<>();
+	  List<Account> accountsTo=new ArrayList<>();
+	  int[] firstLegs=new int[legs.size()];
+	  for (int i = 0; i < legs.size(); i++) {
+		  TransferLeg leg=legs.get(i);
+		  Transfer credit=new Transfer(transfer.getAccountFrom(),leg.getAccountTo(),leg.getAmount());
+		  legTransfers.add(credit);
+		  Integer recipient=recipients.get(leg.getAccountTo());
+		  Account accountTo=recipient==null ? this.getAccount(leg.getAccountTo()) : accountsTo.get(recipient);
+		  try {
+			  this.validateTransfer(credit, accountFrom, accountTo);
+		  } catch (RuntimeException re) {
+			  throw new BatchTransferException(i, re);
+		  }
+		  if (recipient==null) {
+			  firstLegs[credits.size()]=i;
+			  recipients.put(leg.getAccountTo(), credits.size());
+			  credits.add(new Transfer(credit.getAccountFrom(),credit.getAccountTo(),credit.getAmount()));
+			  accountsTo.add(accountTo);
+		  } else {
+			  Transfer merged=credits.get(recipient);
+			  merged.setAmount(merged.getAmount().add(leg.getAmount()));
+		  }
+	  }
+	  try {
+		  this.accountsService.transferAll(credits);
+	  } catch (BatchTransferException bte) {
+		  Transfer failed=legTransfers.get(firstLegs[bte.getIndex()]);
+		  this.transferAuditLog.rejected(TransferOutcome.of((RuntimeException) bte.getCause()),failed.getAccountFrom(),failed.getAccountTo(),failed.getAmount());
+		  throw new BatchTransferException(firstLegs[bte.getIndex()], (RuntimeException) bte.getCause());
+	  }
+	  log.info("Multi-leg transfer complete, {} legs to {} accounts", legs.size(), credits.size());
+	  for (Transfer credit : legTransfers) {
+		  this.transferAuditLog.completed(credit.getAccountFrom(),credit.getAccountTo(),credit.getAmount());
+		  this.transferLedger.record(credit.getAccountFrom(),credit.getAccountTo(),credit.getAmount());
+	  }
+	  for (int i = 0; i < credits.size(); i++) {
+		  this.notifyTransfer(accountFrom,accountsTo.get(i), credits.get(i).getAmount());
+	  }
+  }
+
+  private void validateTransfer(Transfer transfer, Account accountFrom, Account accountTo) {
 	    if (accountFrom== null) {
-			log.info("Transfer failed {}", transfer);
+			this.transferAuditLog.rejected(TransferOutcome.ACCOUNT_NOT_FOUND,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
 	      throw new AccountNotFoundException(transfer.getAccountFrom());
 	    }
 	    else if (accountTo == null) {
-			log.info("Transfer failed {}", transfer);
+			this.transferAuditLog.rejected(TransferOutcome.ACCOUNT_NOT_FOUND,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
 	      throw new AccountNotFoundException(transfer.getAccountTo());
 	    }
 	    else if (accountFrom.getAccountId().equals(accountTo.getAccountId())) {
-			log.info("Transfer failed {}", transfer);
+			this.transferAuditLog.rejected(TransferOutcome.SAME_ACCOUNT,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
 		      throw new SameAccountTransferException(accountTo.getAccountId());
 		}
 	    else if (transfer.getAmount().compareTo(BigDecimal.ZERO)<=0 ) {
-			log.info("Transfer failed {}", transfer);
+			this.transferAuditLog.rejected(TransferOutcome.NEGATIVE_AMOUNT,transfer.getAccountFrom(),transfer.getAccountTo(),transfer.getAmount());
 	      throw new NegativeAmountException(transfer.getAmount());
 	    }
-	    else {
-			try {
-				this.withDraw(accountFrom.getAccountId(),transfer.getAmount());
-			} catch (InsufficientBalanceException ibe) {
-				log.info("Transfer failed {}", transfer);
-				throw ibe;
-			}
-			this.credit(accountTo.getAccountId(),transfer.getAmount());
-			log.info("Transfer complete {}", transfer);
-			this.notifyTransfer(accountFrom,accountTo, transfer.getAmount());
-		}
   }
+
   @Override
   public void updateAccount(Account account) {
 	this.accountsService.updateAccount(account);
@@ -77,16 +214,24 @@ public class TransfersRepositoryInMemory implements TransfersRepository {
     this.accountsService.credit(accountId,amount);
   }
 
+  @Override
+  public void transfer(String accountFromId, String accountToId, BigDecimal amount) throws InsufficientBalanceException {
+    this.accountsService.transfer(accountFromId,accountToId,amount);
+  }
+
   @Override
   public Account getAccount(String accountId) {
     return this.accountsService.getAccount(accountId);
   }
 
+  @Override
+  public TransferHistoryPage getTransferHistory(String accountId, long before, int limit) {
+    return this.transferLedger.page(accountId, before, limit);
+  }
+
   @Override
   public void notifyTransfer(Account accountFrom, Account accountTo, BigDecimal amount) {
-	  EmailNotificationService emailnotificationService=new EmailNotificationService();
-	  emailnotificationService.notifyAboutTransfer(accountTo,"You have received "+amount+" from Account: "+accountFrom.getAccountId());
-	  emailnotificationService.notifyAboutTransfer(accountFrom,"You have transferred "+amount+" to Account: "+accountTo.getAccountId());
+	  this.notificationDispatcher.submit(accountFrom, accountTo, amount);
   }
 
 }
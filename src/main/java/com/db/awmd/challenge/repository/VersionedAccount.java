@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import java.math.BigDecimal;
+
+/**
+ * Account as stored by {@link AccountsRepositoryInMemory}, only ever changed under its stripe lock.
+ * Each change bumps a counter before and after it, seqlock style, so a reader can take a versioned
+ * snapshot without the lock: an odd count, or a count that moved while the balance was read, means
+ * a change was in progress and the read is repeated. Writers never wait for readers.
+ */
+final class VersionedAccount extends Account {
+
+  private volatile long changes;
+
+  VersionedAccount(String accountId, BigDecimal balance) {
+    super(accountId, balance);
+  }
+
+  @Override
+  public boolean tryWithDraw(BigDecimal amount) {
+    if (amount.compareTo(getBalance()) > 0) {
+      return false;
+    }
+    beginChange();
+    try {
+      return super.tryWithDraw(amount);
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public void credit(BigDecimal amount) {
+    beginChange();
+    try {
+      super.credit(amount);
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public void setBalance(BigDecimal balance) {
+    beginChange();
+    try {
+      super.setBalance(balance);
+    } finally {
+      endChange();
+    }
+  }
+
+  AccountSnapshot snapshot() {
+    while (true) {
+      long before = this.changes;
+      BigDecimal balance = getBalance();
+      if ((before & 1) == 0 && this.changes == before) {
+        return new AccountSnapshot(getAccountId(), balance, before >>> 1);
+      }
+    }
+  }
+
+  // Writers of one account are serialized by its stripe lock, so the increments cannot race.
+  private void beginChange() {
+    this.changes++;
+  }
+
+  private void endChange() {
+    this.changes++;
+  }
+}
@@ -0,0 +1,416 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImport;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bulk load of accounts from a CSV file ({@code accountId,balance} per line, optionally under a
+ * header line) or an NDJSON file ({@code {"accountId":..,"balance":..}} per line), for seeding a
+ * test or DR environment. The file is cut into segments of {@code accounts.import.segment-size}
+ * bytes (64 MB) that worker threads map and parse in parallel, each segment owning the lines that
+ * begin in it. Lines are scanned straight from the mapped bytes with buffers reused by the worker,
+ * so a line costs its id, its balance and the account; an NDJSON line the scanner does not handle,
+ * such as one with escaped characters, is handed to Jackson. Accounts reach the repository in
+ * chunks of {@value #CHUNK_SIZE}, lines that are malformed or have a negative balance are counted
+ * as rejected. A file named by {@code accounts.import.file} is loaded at startup, after the journal
+ * has been replayed.
+ */
+@Slf4j
+@Service
+public class AccountImporter {
+
+  static final int MAX_LINE_LENGTH = 64 << 10;
+
+  static final int CHUNK_SIZE = 1000;
+
+  private static final byte[] ACCOUNT_ID = "accountId".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] BALANCE = "balance".getBytes(StandardCharsets.US_ASCII);
+
+  private final AccountsRepository accountsRepository;
+  private final ObjectMapper objectMapper;
+  private final String startupFile;
+  private final int threads;
+  private final int segmentSize;
+
+  @Autowired
+  public AccountImporter(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+    @Value("${accounts.import.file:}") String startupFile,
+    @Value("${accounts.import.threads:0}") int threads,
+    @Value("${accounts.import.segment-size:67108864}") int segmentSize) {
+    if (threads < 0) {
+      throw new IllegalArgumentException("Import thread count must not be negative: " + threads);
+    }
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Import segment size must be positive: " + segmentSize);
+    }
+    this.accountsRepository = accountsRepository;
+    this.objectMapper = objectMapper;
+    this.startupFile = startupFile;
+    this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.segmentSize = segmentSize;
+  }
+
+  @PostConstruct
+  public void importStartupFile() throws IOException {
+    if (!this.startupFile.isEmpty()) {
+      importFile(Paths.get(this.startupFile));
+    }
+  }
+
+  /** Imports every account of the file, CSV if its name ends in .csv and NDJSON otherwise. */
+  public synchronized AccountImport importFile(Path file) throws IOException {
+    boolean csv = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    long start = System.nanoTime();
+    Totals totals = new Totals();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int segments = (int) ((size + this.segmentSize - 1) / this.segmentSize);
+      AtomicInteger nextSegment = new AtomicInteger();
+      AtomicInteger workerNumber = new AtomicInteger();
+      int workerCount = Math.max(1, Math.min(this.threads, segments));
+      ExecutorService workers = Executors.newFixedThreadPool(workerCount, r -> {
+        Thread thread = new Thread(r, "account-import-" + workerNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        List<Future<Void>> parsed = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+          parsed.add(workers.submit(() -> {
+            Parser parser = new Parser(csv, totals);
+            for (int segment = nextSegment.getAndIncrement(); segment < segments;
+              segment = nextSegment.getAndIncrement()) {
+              parser.parse(channel, size, (long) segment * this.segmentSize);
+            }
+            parser.flush();
+            return null;
+          }));
+        }
+        for (Future<Void> worker : parsed) {
+          worker.get();
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Import of " + file + " interrupted");
+      } catch (ExecutionException ee) {
+        if (ee.getCause() instanceof IOException) {
+          throw (IOException) ee.getCause();
+        }
+        if (ee.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ee.getCause();
+        }
+        throw new IllegalStateException(ee.getCause());
+      } finally {
+        workers.shutdownNow();
+      }
+    }
+    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+    long created = totals.created.sum();
+    AccountImport result = new AccountImport(file.toString(), created, totals.duplicates.sum(),
+      totals.rejected.sum(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+      (long) (created * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos));
+    log.info("Imported {} accounts from {} in {} ms, {} accounts/s, {} duplicates, {} rejected",
+      result.getCreated(), file, result.getElapsedMillis(), result.getAccountsPerSecond(),
+      result.getDuplicates(), result.getRejected());
+    return result;
+  }
+
+  private static final class Totals {
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+  }
+
+  /** Parses the segments taken by one worker, keeping its buffers and pending chunk across them. */
+  private final class Parser {
+
+    private final boolean csv;
+    private final Totals totals;
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private final char[] digits = new char[MAX_LINE_LENGTH];
+    private final List<Account> chunk = new ArrayList<>(CHUNK_SIZE);
+    private int idStart;
+    private int idEnd;
+    private int balanceStart;
+    private int balanceEnd;
+
+    private Parser(boolean csv, Totals totals) {
+      this.csv = csv;
+      this.totals = totals;
+    }
+
+    /**
+     * Parses the lines beginning in the segment. The mapping starts one byte early, to tell whether
+     * the first line began in the previous segment, and reaches a maximum line length past the end,
+     * so that the last line can be read whole.
+     */
+    private void parse(FileChannel channel, long fileSize, long segmentStart) throws IOException {
+      long mapStart = Math.max(0, segmentStart - 1);
+      long segmentEnd = Math.min(fileSize, segmentStart + AccountImporter.this.segmentSize);
+      long mapEnd = Math.min(fileSize, segmentEnd + MAX_LINE_LENGTH + 1);
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+      int position = (int) (segmentStart - mapStart);
+      int end = (int) (segmentEnd - mapStart);
+      int limit = buffer.limit();
+      if (segmentStart > 0 && buffer.get(0) != '\n') {
+        while (position < limit && buffer.get(position++) != '\n') {
+        }
+      }
+      while (position < end) {
+        int lineEnd = position;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        if (lineEnd - position > MAX_LINE_LENGTH) {
+          this.totals.rejected.increment();
+        } else {
+          buffer.position(position);
+          buffer.get(this.line, 0, lineEnd - position);
+          accept(lineEnd - position, mapStart + position == 0);
+        }
+        position = lineEnd + 1;
+      }
+    }
+
+    private void accept(int length, boolean firstLine) {
+      if (length > 0 && this.line[length - 1] == '\r') {
+        length--;
+      }
+      if (blankLine(length)) {
+        return;
+      }
+      if (this.csv) {
+        if (!scanCsv(length)) {
+          this.totals.rejected.increment();
+          return;
+        }
+        if (firstLine && equalsAscii(this.idStart, this.idEnd, ACCOUNT_ID)) {
+          return;
+        }
+      } else if (!scanJson(length)) {
+        try {
+          Account account = AccountImporter.this.objectMapper.readValue(this.line, 0, length, Account.class);
+          add(account.getAccountId(), account.getBalance());
+        } catch (IOException ioe) {
+          this.totals.rejected.increment();
+        }
+        return;
+      }
+      add(new String(this.line, this.idStart, this.idEnd - this.idStart, StandardCharsets.UTF_8), balance());
+    }
+
+    private void add(String accountId, BigDecimal balance) {
+      if (accountId == null || accountId.isEmpty() || balance == null || balance.signum() < 0) {
+        this.totals.rejected.increment();
+        return;
+      }
+      this.chunk.add(new Account(accountId, balance));
+      if (this.chunk.size() == CHUNK_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (this.chunk.isEmpty()) {
+        return;
+      }
+      for (RuntimeException failure : AccountImporter.this.accountsRepository.createAccounts(this.chunk)) {
+        if (failure == null) {
+          this.totals.created.increment();
+        } else if (failure instanceof DuplicateAccountIdException) {
+          this.totals.duplicates.increment();
+        } else {
+          this.totals.rejected.increment();
+        }
+      }
+      this.chunk.clear();
+    }
+
+    /** The balance between balanceStart and balanceEnd, null if it is not a number. */
+    private BigDecimal balance() {
+      int length = this.balanceEnd - this.balanceStart;
+      for (int i = 0; i < length; i++) {
+        byte b = this.line[this.balanceStart + i];
+        if ((b < '0' || b > '9') && b != '.' && b != '-' && b != '+' && b != 'e' && b != 'E') {
+          return null;
+        }
+        this.digits[i] = (char) b;
+      }
+      try {
+        return new BigDecimal(this.digits, 0, length);
+      } catch (NumberFormatException nfe) {
+        return null;
+      }
+    }
+
+    private boolean scanCsv(int length) {
+      int comma = 0;
+      while (comma < length && this.line[comma] != ',') {
+        comma++;
+      }
+      if (comma == length) {
+        return false;
+      }
+      this.idStart = skipBlanks(0, comma);
+      this.idEnd = trimBlanks(this.idStart, comma);
+      this.balanceStart = skipBlanks(comma + 1, length);
+      this.balanceEnd = trimBlanks(this.balanceStart, length);
+      if (quoted(this.idStart, this.idEnd)) {
+        this.idStart++;
+        this.idEnd--;
+      }
+      if (quoted(this.balanceStart, this.balanceEnd)) {
+        this.balanceStart++;
+        this.balanceEnd--;
+      }
+      return true;
+    }
+
+    /**
+     * Finds the accountId and balance values of a flat JSON object. Returns false for anything it
+     * does not handle, which the caller leaves to Jackson.
+     */
+    private boolean scanJson(int length) {
+      this.idStart = -1;
+      this.balanceStart = -1;
+      int i = skipBlanks(0, length);
+      if (i == length || this.line[i] != '{') {
+        return false;
+      }
+      i = skipBlanks(i + 1, length);
+      while (i < length && this.line[i] != '}') {
+        if (this.line[i] != '"') {
+          return false;
+        }
+        int keyStart = i + 1;
+        int keyEnd = closingQuote(keyStart, length);
+        if (keyEnd < 0) {
+          return false;
+        }
+        i = skipBlanks(keyEnd + 1, length);
+        if (i == length || this.line[i] != ':') {
+          return false;
+        }
+        i = skipBlanks(i + 1, length);
+        if (i == length || this.line[i] == '{' || this.line[i] == '[') {
+          return false;
+        }
+        int valueStart;
+        int valueEnd;
+        boolean quotedValue = this.line[i] == '"';
+        if (quotedValue) {
+          valueStart = i + 1;
+          valueEnd = closingQuote(valueStart, length);
+          if (valueEnd < 0) {
+            return false;
+          }
+          i = valueEnd + 1;
+        } else {
+          valueStart = i;
+          while (i < length && this.line[i] != ',' && this.line[i] != '}' && !isBlank(this.line[i])) {
+            i++;
+          }
+          valueEnd = i;
+        }
+        if (equalsAscii(keyStart, keyEnd, ACCOUNT_ID)) {
+          if (!quotedValue) {
+            return false;
+          }
+          this.idStart = valueStart;
+          this.idEnd = valueEnd;
+        } else if (equalsAscii(keyStart, keyEnd, BALANCE)) {
+          this.balanceStart = valueStart;
+          this.balanceEnd = valueEnd;
+        }
+        i = skipBlanks(i, length);
+        if (i < length && this.line[i] == ',') {
+          i = skipBlanks(i + 1, length);
+        } else if (i == length || this.line[i] != '}') {
+          return false;
+        }
+      }
+      return i < length && skipBlanks(i + 1, length) == length && this.idStart >= 0 && this.balanceStart >= 0;
+    }
+
+    private boolean quoted(int start, int end) {
+      return end - start >= 2 && this.line[start] == '"' && this.line[end - 1] == '"';
+    }
+
+    /** Index of the quote ending a string starting at from, or -1 if it has escapes or no end. */
+    private int closingQuote(int from, int length) {
+      for (int i = from; i < length; i++) {
+        if (this.line[i] == '"') {
+          return i;
+        }
+        if (this.line[i] == '\\') {
+          return -1;
+        }
+      }
+      return -1;
+    }
+
+    private boolean equalsAscii(int start, int end, byte[] expected) {
+      if (end - start != expected.length) {
+        return false;
+      }
+      for (int i = 0; i < expected.length; i++) {
+        if (this.line[start + i] != expected[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int skipBlanks(int from, int to) {
+      while (from < to && isBlank(this.line[from])) {
+        from++;
+      }
+      return from;
+    }
+
+    private int trimBlanks(int from, int to) {
+      while (to > from && isBlank(this.line[to - 1])) {
+        to--;
+      }
+      return to;
+    }
+
+    private boolean blankLine(int length) {
+      return skipBlanks(0, length) == length;
+    }
+
+    private boolean isBlank(byte b) {
+      return b == ' ' || b == '\t' || b == '\r';
+    }
+  }
+}
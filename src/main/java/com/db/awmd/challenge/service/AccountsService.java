@@ -1,11 +1,23 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountResult;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.TransferMetricsRecorder.AccountOperation;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 
 @Service
 public class AccountsService {
@@ -13,22 +25,101 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final TransferMetricsRecorder metricsRecorder;
+
+  private final Validator validator;
+
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository, TransferMetricsRecorder metricsRecorder,
+    Validator validator) {
     this.accountsRepository = accountsRepository;
+    this.metricsRecorder = metricsRecorder;
+    this.validator = validator;
   }
 
   public void createAccount(Account account) {
     this.accountsRepository.createAccount(account);
   }
+
+  /**
+   * Validates and creates a chunk of a bulk request in one call to the repository. Results are
+   * numbered from {@code firstIndex}, the position of the chunk in the whole request.
+   */
+  public List<AccountResult> createAccounts(List<Account> accounts, int firstIndex) {
+    AccountResult[] results = new AccountResult[accounts.size()];
+    List<Account> valid = new ArrayList<>(accounts.size());
+    for (int i = 0; i < accounts.size(); i++) {
+      Account account = accounts.get(i);
+      String violation = firstViolation(account);
+      if (violation != null) {
+        results[i] = AccountResult.rejected(firstIndex + i, account == null ? null : account.getAccountId(), violation);
+      } else {
+        valid.add(account);
+      }
+    }
+    List<RuntimeException> failures = this.accountsRepository.createAccounts(valid);
+    List<AccountResult> resultList = new ArrayList<>(results.length);
+    for (int i = 0, created = 0; i < results.length; i++) {
+      if (results[i] == null) {
+        String accountId = accounts.get(i).getAccountId();
+        RuntimeException failure = failures.get(created++);
+        if (failure == null) {
+          results[i] = AccountResult.created(firstIndex + i, accountId);
+        } else if (failure instanceof DuplicateAccountIdException) {
+          results[i] = AccountResult.duplicate(firstIndex + i, accountId, failure.getMessage());
+        } else {
+          results[i] = AccountResult.rejected(firstIndex + i, accountId, failure.getMessage());
+        }
+      }
+      resultList.add(results[i]);
+    }
+    return resultList;
+  }
+
+  private String firstViolation(Account account) {
+    if (account == null) {
+      return "Account must not be null";
+    }
+    Set<ConstraintViolation<Account>> violations = this.validator.validate(account);
+    if (violations.isEmpty()) {
+      return null;
+    }
+    ConstraintViolation<Account> violation = violations.iterator().next();
+    return violation.getPropertyPath() + " " + violation.getMessage();
+  }
   public void updateAccount(Account account){this.accountsRepository.updateAccount(account);}
   public void withDraw(String accountId, BigDecimal amount) {
-    this.accountsRepository.withDraw(accountId,amount);
+    long start = System.nanoTime();
+    try {
+      this.accountsRepository.withDraw(accountId,amount);
+    } finally {
+      this.metricsRecorder.recordAccountOperation(AccountOperation.WITHDRAW, start);
+    }
   }
   public void credit(String accountId, BigDecimal amount) {
-    this.accountsRepository.credit(accountId,amount);
+    long start = System.nanoTime();
+    try {
+      this.accountsRepository.credit(accountId,amount);
+    } finally {
+      this.metricsRecorder.recordAccountOperation(AccountOperation.CREDIT, start);
+    }
+  }
+  public void transfer(String accountFromId, String accountToId, BigDecimal amount) {
+    this.accountsRepository.transfer(accountFromId,accountToId,amount);
+  }
+  public TransferOutcome tryTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    return this.accountsRepository.tryTransfer(accountFromId,accountToId,amount);
+  }
+  public CompletableFuture<TransferOutcome> submitTransfer(String accountFromId, String accountToId, BigDecimal amount) {
+    return this.accountsRepository.submitTransfer(accountFromId,accountToId,amount);
+  }
+  public void transferAll(List<Transfer> transfers) {
+    this.accountsRepository.transferAll(transfers);
   }
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+  public AccountSnapshot getAccountSnapshot(String accountId) {
+    return this.accountsRepository.getAccountSnapshot(accountId);
+  }
 }
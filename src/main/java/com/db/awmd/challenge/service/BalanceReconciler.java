@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.service;
+
+import static com.db.awmd.challenge.domain.MinorUnits.fromMinorUnits;
+
+import com.db.awmd.challenge.domain.BalanceBucket;
+import com.db.awmd.challenge.domain.BalanceReport;
+import com.db.awmd.challenge.domain.MinorUnits;
+import com.db.awmd.challenge.repository.PointInTimeBalances;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Totals all balances as of one point in time, see {@link PointInTimeBalances}, with the accounts
+ * split into buckets by the number of digits of their whole balance: below 1, 1 to 10, 10 to 100
+ * and so on up to 10^12 and above. Storages that cannot read balances as of one point in time,
+ * such as the sharded one whose cross-shard credits are in neither balance while in flight, do not
+ * support it.
+ */
+@Slf4j
+@Service
+public class BalanceReconciler {
+
+  static final int BUCKETS = 14;
+
+  private static final long WHOLE_UNIT = BigDecimal.ONE.movePointRight(MinorUnits.SCALE).longValueExact();
+
+  private final PointInTimeBalances balances;
+
+  @Autowired
+  public BalanceReconciler(Optional<PointInTimeBalances> balances) {
+    this.balances = balances.orElse(null);
+  }
+
+  public boolean isSupported() {
+    return this.balances != null;
+  }
+
+  public BalanceReport reconcile() {
+    if (this.balances == null) {
+      throw new UnsupportedOperationException("Account storage cannot read balances as of one point in time");
+    }
+    long start = System.nanoTime();
+    Tally tally = this.balances.collectBalances(Tally::new, Tally::merge);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    BalanceReport report = tally.report(elapsedMillis);
+    log.info("Reconciled {} accounts with a total of {} in {} ms", report.getAccounts(),
+      report.getTotal().toPlainString(), elapsedMillis);
+    return report;
+  }
+
+  /**
+   * One task's share of the totals. Balances kept as minor units are summed as longs and only
+   * turned into a BigDecimal when a sum would overflow or the report is built.
+   */
+  static final class Tally implements PointInTimeBalances.BalanceSink {
+
+    private final long[] counts = new long[BUCKETS];
+    private final long[] units = new long[BUCKETS];
+    private final BigDecimal[] totals = new BigDecimal[BUCKETS];
+    private long minimumUnits = Long.MAX_VALUE;
+    private long maximumUnits = Long.MIN_VALUE;
+    private BigDecimal minimum;
+    private BigDecimal maximum;
+
+    Tally() {
+      Arrays.fill(this.totals, BigDecimal.ZERO);
+    }
+
+    @Override
+    public void add(BigDecimal balance) {
+      int bucket = balance.compareTo(BigDecimal.ONE) < 0 ? 0 : Math.min(balance.precision() - balance.scale(),
+        BUCKETS - 1);
+      this.counts[bucket]++;
+      this.totals[bucket] = this.totals[bucket].add(balance);
+      this.minimum = min(this.minimum, balance);
+      this.maximum = max(this.maximum, balance);
+    }
+
+    @Override
+    public void addMinorUnits(long balance) {
+      int bucket = 0;
+      for (long whole = balance / WHOLE_UNIT; whole > 0 && bucket < BUCKETS - 1; whole /= 10) {
+        bucket++;
+      }
+      this.counts[bucket]++;
+      addUnits(bucket, balance);
+      this.minimumUnits = Math.min(this.minimumUnits, balance);
+      this.maximumUnits = Math.max(this.maximumUnits, balance);
+    }
+
+    private void addUnits(int bucket, long balance) {
+      long sum = this.units[bucket] + balance;
+      if (((this.units[bucket] ^ sum) & (balance ^ sum)) < 0) {
+        this.totals[bucket] = this.totals[bucket].add(fromMinorUnits(this.units[bucket]));
+        sum = balance;
+      }
+      this.units[bucket] = sum;
+    }
+
+    void merge(Tally other) {
+      for (int i = 0; i < BUCKETS; i++) {
+        this.counts[i] += other.counts[i];
+        this.totals[i] = this.totals[i].add(other.totals[i]);
+        addUnits(i, other.units[i]);
+      }
+      this.minimumUnits = Math.min(this.minimumUnits, other.minimumUnits);
+      this.maximumUnits = Math.max(this.maximumUnits, other.maximumUnits);
+      this.minimum = min(this.minimum, other.minimum);
+      this.maximum = max(this.maximum, other.maximum);
+    }
+
+    BalanceReport report(long elapsedMillis) {
+      if (this.minimumUnits <= this.maximumUnits) {
+        this.minimum = min(this.minimum, fromMinorUnits(this.minimumUnits));
+        this.maximum = max(this.maximum, fromMinorUnits(this.maximumUnits));
+      }
+      long accounts = 0;
+      BigDecimal total = BigDecimal.ZERO;
+      List<BalanceBucket> buckets = new ArrayList<>(BUCKETS);
+      for (int i = 0; i < BUCKETS; i++) {
+        BigDecimal bucketTotal = this.totals[i].add(fromMinorUnits(this.units[i]));
+        buckets.add(new BalanceBucket(i == 0 ? null : BigDecimal.TEN.pow(i - 1),
+          i == BUCKETS - 1 ? null : BigDecimal.TEN.pow(i), this.counts[i], bucketTotal));
+        accounts += this.counts[i];
+        total = total.add(bucketTotal);
+      }
+      return new BalanceReport(accounts, total, this.minimum, this.maximum, buckets, elapsedMillis);
+    }
+
+    private static BigDecimal min(BigDecimal first, BigDecimal second) {
+      return first == null || second != null && second.compareTo(first) < 0 ? second : first;
+    }
+
+    private static BigDecimal max(BigDecimal first, BigDecimal second) {
+      return first == null || second != null && second.compareTo(first) > 0 ? second : first;
+    }
+  }
+}
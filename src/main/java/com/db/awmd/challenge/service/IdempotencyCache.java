@@ -0,0 +1,128 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.IdempotencyMetrics;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.IdempotencyKeyReuseException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Remembers the outcome of transfers submitted with an idempotency key, so a retried request gets
+ * the original result instead of moving the money again. A retry that arrives while the first
+ * attempt is still running waits for it. Keys expire after {@code idempotency.ttl-ms}; since every
+ * key lives equally long, insertion order is expiry order and eviction only ever looks at the head
+ * of a queue, which also drops the oldest keys once {@code idempotency.max-keys} is exceeded.
+ */
+@Service
+public class IdempotencyCache {
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final int maxKeys;
+  private final long ttlNanos;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evicted = new LongAdder();
+
+  @Autowired
+  public IdempotencyCache(@Value("${idempotency.max-keys:100000}") int maxKeys,
+    @Value("${idempotency.ttl-ms:86400000}") long ttlMillis) {
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("Idempotency cache size must be positive: " + maxKeys);
+    }
+    this.maxKeys = maxKeys;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Runs the transfer unless the key has been seen before, and returns the outcome recorded for the
+   * key. Throws {@link IdempotencyKeyReuseException} if the key was used for a different transfer.
+   * Outcomes are the preallocated constants, so a replay answers exactly like the first request.
+   */
+  public TransferOutcome execute(String idempotencyKey, Transfer transfer, Supplier<TransferOutcome> action) {
+    long now = System.nanoTime();
+    Entry existing = this.entries.get(idempotencyKey);
+    if (existing == null || existing.expiresAt - now <= 0) {
+      Entry entry = new Entry(idempotencyKey, transfer, now + this.ttlNanos);
+      do {
+        existing = this.entries.putIfAbsent(idempotencyKey, entry);
+      } while (existing != null && existing.expiresAt - now <= 0
+        && !this.entries.replace(idempotencyKey, existing, entry));
+      if (existing == null || existing.expiresAt - now <= 0) {
+        return run(entry, action, now);
+      }
+    }
+
+    this.hits.increment();
+    if (!existing.transfer.equals(transfer)) {
+      throw new IdempotencyKeyReuseException(idempotencyKey);
+    }
+    try {
+      return existing.outcome.join();
+    } catch (CompletionException ce) {
+      throw (RuntimeException) ce.getCause();
+    }
+  }
+
+  private TransferOutcome run(Entry entry, Supplier<TransferOutcome> action, long now) {
+    this.misses.increment();
+    this.insertionOrder.add(entry);
+    this.size.incrementAndGet();
+    evict(now);
+    try {
+      TransferOutcome outcome = action.get();
+      entry.outcome.complete(outcome);
+      return outcome;
+    } catch (RuntimeException re) {
+      // Nothing was recorded, so let a retry run again instead of replaying the failure forever.
+      this.entries.remove(entry.idempotencyKey, entry);
+      entry.outcome.completeExceptionally(re);
+      throw re;
+    }
+  }
+
+  public IdempotencyMetrics getMetrics() {
+    return new IdempotencyMetrics(this.size.get(), this.maxKeys, this.hits.sum(), this.misses.sum(),
+      this.evicted.sum());
+  }
+
+  private void evict(long now) {
+    Entry head;
+    while ((head = this.insertionOrder.peek()) != null
+      && (head.expiresAt - now <= 0 || this.size.get() > this.maxKeys)) {
+      if (this.insertionOrder.remove(head)) {
+        this.entries.remove(head.idempotencyKey, head);
+        this.size.decrementAndGet();
+        this.evicted.increment();
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final String idempotencyKey;
+    private final Transfer transfer;
+    private final long expiresAt;
+    private final CompletableFuture<TransferOutcome> outcome = new CompletableFuture<>();
+
+    private Entry(String idempotencyKey, Transfer transfer, long expiresAt) {
+      this.idempotencyKey = idempotencyKey;
+      this.transfer = transfer;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
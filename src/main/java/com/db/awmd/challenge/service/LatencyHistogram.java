@@ -0,0 +1,94 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.LatencySummary;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram: values below
+ * 64ns get a bucket each, above that every power of two is split into 32 buckets, so any recorded
+ * value is reported within about 3%. Recording is one atomic increment plus a sum update; values
+ * beyond about 18 minutes are clamped.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    this.counts.incrementAndGet(bucketOf(value));
+    this.totalNanos.add(value);
+    long max;
+    while (value > (max = this.maxNanos.get()) && !this.maxNanos.compareAndSet(max, value)) {
+      // Lost the race against another maximum, check again.
+    }
+  }
+
+  /** Reports count, mean, percentiles and maximum in microseconds. */
+  public LatencySummary summarize() {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = this.counts.get(i);
+      count += snapshot[i];
+    }
+    long max = this.maxNanos.get();
+    if (count == 0) {
+      return new LatencySummary(0, 0, 0, 0, 0, 0, 0);
+    }
+    return new LatencySummary(count, micros(this.totalNanos.sum() / count),
+      micros(percentile(snapshot, count, 0.50, max)), micros(percentile(snapshot, count, 0.90, max)),
+      micros(percentile(snapshot, count, 0.99, max)), micros(percentile(snapshot, count, 0.999, max)),
+      micros(max));
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += this.counts.get(i);
+    }
+    return count;
+  }
+
+  static int bucketOf(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  static long highestValueIn(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static long percentile(long[] snapshot, long count, double quantile, long max) {
+    long rank = (long) Math.ceil(quantile * count);
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), max);
+      }
+    }
+    return max;
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+}
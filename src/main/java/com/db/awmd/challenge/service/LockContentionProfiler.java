@@ -0,0 +1,148 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountContention;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Samples the acquisitions of {@link StripedAccountLocks}: one in
+ * {@code transfer.lock-profile.sample-interval}, picked at random, is timed from asking for the
+ * stripe to getting it and on to releasing it, so that waiting for a lock can be told apart from
+ * the work done under it. Samples are totalled per account for the
+ * {@code transfer.lock-profile.max-accounts} accounts with the most lock time, kept space-saving
+ * style: a new account replaces the one with the least time and inherits that time for ranking
+ * only, so an account whose share exceeds that of the least busy one is never lost from the list.
+ * Each account's reported times are its own. An interval of 0 turns sampling off.
+ */
+@Service
+public class LockContentionProfiler {
+
+  private static final double NANOS_PER_MICRO = 1000.0;
+
+  private final int sampleInterval;
+  private final int sampleMask;
+  private final int maxAccounts;
+  private final Map<String, AccountTotals> accounts = new HashMap<>();
+  private long samples;
+  private long contended;
+  private long waitNanos;
+  private long heldNanos;
+
+  @Autowired
+  public LockContentionProfiler(@Value("${transfer.lock-profile.sample-interval:64}") int sampleInterval,
+    @Value("${transfer.lock-profile.max-accounts:256}") int maxAccounts) {
+    if (sampleInterval < 0) {
+      throw new IllegalArgumentException("Lock profile sample interval must not be negative: " + sampleInterval);
+    }
+    if (maxAccounts <= 0) {
+      throw new IllegalArgumentException("Lock profile account count must be positive: " + maxAccounts);
+    }
+    int interval = sampleInterval == 0 ? 0 : Integer.highestOneBit(sampleInterval);
+    if (interval < sampleInterval) {
+      interval <<= 1;
+    }
+    this.sampleInterval = interval;
+    this.sampleMask = interval - 1;
+    this.maxAccounts = maxAccounts;
+  }
+
+  /** A profiler that never samples. */
+  public static LockContentionProfiler disabled() {
+    return new LockContentionProfiler(0, 1);
+  }
+
+  /** Decides whether the acquisition about to happen is timed. */
+  public boolean sample() {
+    return this.sampleInterval != 0 && (ThreadLocalRandom.current().nextInt() & this.sampleMask) == 0;
+  }
+
+  /** Records a timed acquisition; without an account id it only counts in the totals. */
+  public synchronized void record(String accountId, long waitNanos, long heldNanos) {
+    this.samples++;
+    this.waitNanos += waitNanos;
+    this.heldNanos += heldNanos;
+    if (waitNanos > 0) {
+      this.contended++;
+    }
+    if (accountId == null) {
+      return;
+    }
+    AccountTotals totals = this.accounts.get(accountId);
+    if (totals == null) {
+      totals = new AccountTotals(this.accounts.size() < this.maxAccounts ? 0 : evictLeastBusy());
+      this.accounts.put(accountId, totals);
+    }
+    totals.add(waitNanos, heldNanos);
+  }
+
+  /** The totals and the {@code top} accounts with the most lock time, busiest first. */
+  public synchronized LockContention getContention(int top) {
+    List<Map.Entry<String, AccountTotals>> entries = new ArrayList<>(this.accounts.entrySet());
+    top = Math.max(0, top);
+    entries.sort(Comparator.comparingLong((Map.Entry<String, AccountTotals> entry) -> entry.getValue().rank())
+      .reversed());
+    List<AccountContention> hottest = new ArrayList<>(Math.min(top, entries.size()));
+    for (Map.Entry<String, AccountTotals> entry : entries.subList(0, Math.min(top, entries.size()))) {
+      AccountTotals totals = entry.getValue();
+      hottest.add(new AccountContention(entry.getKey(), totals.samples, totals.contended,
+        totals.waitNanos / NANOS_PER_MICRO, totals.heldNanos / NANOS_PER_MICRO));
+    }
+    return new LockContention(this.sampleInterval, this.samples, this.contended,
+      this.waitNanos / NANOS_PER_MICRO, this.heldNanos / NANOS_PER_MICRO, hottest);
+  }
+
+  public synchronized void reset() {
+    this.accounts.clear();
+    this.samples = 0;
+    this.contended = 0;
+    this.waitNanos = 0;
+    this.heldNanos = 0;
+  }
+
+  /** Drops the account with the least lock time and returns that time. */
+  private long evictLeastBusy() {
+    Map.Entry<String, AccountTotals> leastBusy = null;
+    for (Map.Entry<String, AccountTotals> entry : this.accounts.entrySet()) {
+      if (leastBusy == null || entry.getValue().rank() < leastBusy.getValue().rank()) {
+        leastBusy = entry;
+      }
+    }
+    this.accounts.remove(leastBusy.getKey());
+    return leastBusy.getValue().rank();
+  }
+
+  private static final class AccountTotals {
+
+    private final long inherited;
+    private long samples;
+    private long contended;
+    private long waitNanos;
+    private long heldNanos;
+
+    private AccountTotals(long inherited) {
+      this.inherited = inherited;
+    }
+
+    private void add(long waitNanos, long heldNanos) {
+      this.samples++;
+      this.waitNanos += waitNanos;
+      this.heldNanos += heldNanos;
+      if (waitNanos > 0) {
+        this.contended++;
+      }
+    }
+
+    private long rank() {
+      return this.inherited + this.waitNanos + this.heldNanos;
+    }
+  }
+}
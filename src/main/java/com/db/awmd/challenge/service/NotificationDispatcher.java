@@ -0,0 +1,162 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.NotificationMetrics;
+import com.db.awmd.challenge.domain.TransferNotification;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands transfer notifications to the {@link NotificationService} sink on a pool of worker
+ * threads, so a slow mail backend never holds up a transfer. The queue is bounded: when it is full
+ * a submitter either waits up to the offer timeout (BLOCK) or gives up immediately (DROP), and the
+ * notification is counted as dropped.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+  public enum OverflowPolicy { BLOCK, DROP }
+
+  private final NotificationService notificationService;
+  private final BlockingQueue<TransferNotification> queue;
+  private final int workerCount;
+  private final int batchSize;
+  private final OverflowPolicy overflowPolicy;
+  private final long offerTimeoutMillis;
+  private final int maxRetries;
+
+  private final List<Thread> workers = new ArrayList<>();
+  private volatile boolean running;
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  @Autowired
+  public NotificationDispatcher(NotificationService notificationService,
+    @Value("${notification.queue-capacity:10000}") int queueCapacity,
+    @Value("${notification.workers:2}") int workerCount,
+    @Value("${notification.batch-size:64}") int batchSize,
+    @Value("${notification.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+    @Value("${notification.offer-timeout-ms:50}") long offerTimeoutMillis,
+    @Value("${notification.max-retries:2}") int maxRetries) {
+    this.notificationService = notificationService;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.workerCount = workerCount;
+    this.batchSize = batchSize;
+    this.overflowPolicy = overflowPolicy;
+    this.offerTimeoutMillis = offerTimeoutMillis;
+    this.maxRetries = maxRetries;
+  }
+
+  @PostConstruct
+  public void start() {
+    this.running = true;
+    for (int i = 0; i < this.workerCount; i++) {
+      Thread worker = new Thread(this::drain, "notification-worker-" + i);
+      worker.setDaemon(true);
+      worker.start();
+      this.workers.add(worker);
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    this.running = false;
+    for (Thread worker : this.workers) {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    this.workers.clear();
+  }
+
+  public boolean submit(Account accountFrom, Account accountTo, BigDecimal amount) {
+    TransferNotification notification = new TransferNotification(accountFrom, accountTo, amount);
+    this.submitted.increment();
+    boolean accepted;
+    if (this.overflowPolicy == OverflowPolicy.DROP) {
+      accepted = this.queue.offer(notification);
+    } else {
+      try {
+        accepted = this.queue.offer(notification, this.offerTimeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        accepted = false;
+      }
+    }
+    if (!accepted) {
+      this.dropped.increment();
+    }
+    return accepted;
+  }
+
+  public NotificationMetrics getMetrics() {
+    return new NotificationMetrics(this.queue.size(), this.queue.size() + this.queue.remainingCapacity(),
+      this.submitted.sum(), this.delivered.sum(), this.dropped.sum(), this.retried.sum(),
+      this.failed.sum());
+  }
+
+  private void drain() {
+    List<TransferNotification> batch = new ArrayList<>(this.batchSize);
+    while (this.running || !this.queue.isEmpty()) {
+      try {
+        TransferNotification first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        this.queue.drainTo(batch, this.batchSize - 1);
+        for (TransferNotification notification : batch) {
+          deliver(notification);
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void deliver(TransferNotification notification) {
+    Account accountFrom = notification.getAccountFrom();
+    Account accountTo = notification.getAccountTo();
+    boolean receivedSent = send(accountTo,
+      "You have received " + notification.getAmount() + " from Account: " + accountFrom.getAccountId());
+    boolean transferredSent = send(accountFrom,
+      "You have transferred " + notification.getAmount() + " to Account: " + accountTo.getAccountId());
+    if (receivedSent && transferredSent) {
+      this.delivered.increment();
+    } else {
+      this.failed.increment();
+    }
+  }
+
+  private boolean send(Account account, String transferDescription) {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        this.notificationService.notifyAboutTransfer(account, transferDescription);
+        return true;
+      } catch (RuntimeException re) {
+        if (attempt >= this.maxRetries) {
+          log.warn("Giving up notifying owner of {} after {} attempts", account.getAccountId(), attempt + 1, re);
+          return false;
+        }
+        this.retried.increment();
+      }
+    }
+  }
+}
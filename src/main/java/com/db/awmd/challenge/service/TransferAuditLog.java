@@ -0,0 +1,166 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransferOutcome;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Audit trail of single transfers, written off the request path. A transfer thread fills a
+ * preallocated slot of a bounded ring with the outcome and references to the ids and the amount,
+ * and returns. One writer thread turns the slots into compact {@code key=value} lines on the
+ * {@code com.db.awmd.challenge.audit} logger, so the amount is rendered and the appender does its
+ * I/O on that thread, never under an account lock. Rejections are always written; completed
+ * transfers only every {@code audit.success-sample-interval}th, counted across all threads, none
+ * with 0. When the ring is full a completed transfer is dropped and counted, and a rejection is
+ * written by the calling thread.
+ * Nothing is recorded while the logger is below INFO.
+ */
+@Slf4j(topic = "com.db.awmd.challenge.audit")
+@Service
+public class TransferAuditLog {
+
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(-1);
+  private volatile long released = -1;
+  private final int successSampleInterval;
+  private final AtomicLong completedCount = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  private final StringBuilder line = new StringBuilder(128);
+  private Thread writer;
+  private volatile boolean running;
+
+  @Autowired
+  public TransferAuditLog(@Value("${audit.ring-size:8192}") int ringSize,
+    @Value("${audit.success-sample-interval:1}") int successSampleInterval) {
+    if (ringSize <= 0) {
+      throw new IllegalArgumentException("Audit ring size must be positive: " + ringSize);
+    }
+    if (successSampleInterval < 0) {
+      throw new IllegalArgumentException("Audit sample interval must not be negative: " + successSampleInterval);
+    }
+    int size = Integer.highestOneBit(ringSize);
+    if (size < ringSize) {
+      size <<= 1;
+    }
+    this.slots = new Slot[size];
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.slots[i] = new Slot();
+      this.published.set(i, -1);
+    }
+    this.mask = size - 1;
+    this.successSampleInterval = successSampleInterval;
+  }
+
+  @PostConstruct
+  public void start() {
+    this.running = true;
+    this.writer = new Thread(this::drain, "transfer-audit");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    this.running = false;
+    this.writer.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  public void completed(String accountFromId, String accountToId, BigDecimal amount) {
+    if (isSampled() && log.isInfoEnabled()
+      && !offer(TransferOutcome.COMPLETED, accountFromId, accountToId, amount)) {
+      this.dropped.increment();
+    }
+  }
+
+  /** Whether this completed transfer is an interval-th one; an interval of 1 needs no counting. */
+  private boolean isSampled() {
+    int interval = this.successSampleInterval;
+    return interval == 1 || interval != 0 && this.completedCount.getAndIncrement() % interval == 0;
+  }
+
+  public void rejected(TransferOutcome outcome, String accountFromId, String accountToId, BigDecimal amount) {
+    if (log.isInfoEnabled() && !offer(outcome, accountFromId, accountToId, amount)) {
+      synchronized (this) {
+        write(System.currentTimeMillis(), outcome, accountFromId, accountToId, amount, new StringBuilder(128));
+      }
+    }
+  }
+
+  /** Completed transfers dropped because the ring was full. */
+  public long getDropped() {
+    return this.dropped.sum();
+  }
+
+  private boolean offer(TransferOutcome outcome, String accountFromId, String accountToId, BigDecimal amount) {
+    long sequence;
+    do {
+      sequence = this.claimed.get() + 1;
+      if (sequence - this.slots.length > this.released) {
+        return false;
+      }
+    } while (!this.claimed.compareAndSet(sequence - 1, sequence));
+    Slot slot = this.slots[(int) sequence & this.mask];
+    slot.timestamp = System.currentTimeMillis();
+    slot.outcome = outcome;
+    slot.accountFromId = accountFromId;
+    slot.accountToId = accountToId;
+    slot.amount = amount;
+    this.published.set((int) sequence & this.mask, sequence);
+    return true;
+  }
+
+  private void drain() {
+    long next = 0;
+    while (this.running || this.claimed.get() >= next) {
+      if (this.published.get((int) next & this.mask) != next) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        continue;
+      }
+      Slot slot = this.slots[(int) next & this.mask];
+      try {
+        synchronized (this) {
+          write(slot.timestamp, slot.outcome, slot.accountFromId, slot.accountToId, slot.amount, this.line);
+        }
+      } catch (RuntimeException re) {
+        log.warn("Could not write audit record", re);
+      }
+      slot.accountFromId = null;
+      slot.accountToId = null;
+      slot.amount = null;
+      this.released = next++;
+    }
+  }
+
+  private static void write(long timestamp, TransferOutcome outcome, String accountFromId, String accountToId,
+    BigDecimal amount, StringBuilder line) {
+    line.setLength(0);
+    line.append("ts=").append(timestamp)
+      .append(" outcome=").append(outcome.name())
+      .append(" from=").append(accountFromId)
+      .append(" to=").append(accountToId)
+      .append(" amount=").append(amount == null ? null : amount.toPlainString());
+    log.info(line.toString());
+  }
+
+  private static final class Slot {
+
+    private long timestamp;
+    private TransferOutcome outcome;
+    private String accountFromId;
+    private String accountToId;
+    private BigDecimal amount;
+  }
+}
@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.LatencySummary;
+import com.db.awmd.challenge.domain.TransferMetrics;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Latency histograms of transfers per outcome and of the single account operations, next to the
+ * lock wait recorded by {@link StripedAccountLocks}. Counts are cumulative since startup, so the
+ * throughput over an interval is the difference of two scrapes. A transfer is timed once around
+ * the whole call, the reads and balance updates inside it are not timed again.
+ */
+@Service
+public class TransferMetricsRecorder {
+
+  public enum AccountOperation { WITHDRAW, CREDIT }
+
+  private static final TransferOutcome[] OUTCOMES = TransferOutcome.values();
+  private static final AccountOperation[] OPERATIONS = AccountOperation.values();
+
+  private final LatencyHistogram[] transfers = new LatencyHistogram[OUTCOMES.length];
+  private final LatencyHistogram[] accountOperations = new LatencyHistogram[OPERATIONS.length];
+  private final StripedAccountLocks accountLocks;
+  private final long startMillis = System.currentTimeMillis();
+
+  @Autowired
+  public TransferMetricsRecorder(StripedAccountLocks accountLocks) {
+    this.accountLocks = accountLocks;
+    for (int i = 0; i < this.transfers.length; i++) {
+      this.transfers[i] = new LatencyHistogram();
+    }
+    for (int i = 0; i < this.accountOperations.length; i++) {
+      this.accountOperations[i] = new LatencyHistogram();
+    }
+  }
+
+  public void recordTransfer(TransferOutcome outcome, long startNanos) {
+    this.transfers[outcome.ordinal()].record(System.nanoTime() - startNanos);
+  }
+
+  public void recordAccountOperation(AccountOperation operation, long startNanos) {
+    this.accountOperations[operation.ordinal()].record(System.nanoTime() - startNanos);
+  }
+
+  public TransferMetrics getMetrics() {
+    Map<TransferOutcome, LatencySummary> transferSummaries = new EnumMap<>(TransferOutcome.class);
+    for (TransferOutcome outcome : OUTCOMES) {
+      transferSummaries.put(outcome, this.transfers[outcome.ordinal()].summarize());
+    }
+    Map<String, LatencySummary> operationSummaries = new LinkedHashMap<>();
+    for (AccountOperation operation : OPERATIONS) {
+      operationSummaries.put(operation.name(), this.accountOperations[operation.ordinal()].summarize());
+    }
+    return new TransferMetrics(System.currentTimeMillis() - this.startMillis, transferSummaries,
+      operationSummaries, this.accountLocks.getAcquisitions(), this.accountLocks.getLockWait().summarize());
+  }
+}
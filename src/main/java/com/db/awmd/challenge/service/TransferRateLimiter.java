@@ -0,0 +1,218 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.RateLimitMetrics;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admits single transfers before they reach {@link TransferService}: one token bucket per client,
+ * refilled at {@code transfer.rate-limit.client-rate} per second up to
+ * {@code transfer.rate-limit.client-burst}, and one per source account with the
+ * {@code account-rate} and {@code account-burst} settings. A rate of 0 turns that limit off. A
+ * transfer turned away by its account's bucket has still used up one of its client's tokens.
+ *
+ * <p>A client is its remote address. Only a request from an address listed in
+ * {@code transfer.rate-limit.trusted-proxies} may name its client in the {@code X-Client-Id}
+ * header, so callers cannot spread their transfers over made-up clients. Buckets are only created
+ * for source accounts that exist; a transfer from an unknown account is left to fail on its own.
+ *
+ * <p>A bucket is a single long, the time at which it will be full again (the generic cell rate
+ * algorithm), advanced by one refill interval per admitted transfer with a compare-and-set. A
+ * bucket that is full again is the same as none, so a daemon thread drops those every
+ * {@code transfer.rate-limit.sweep-interval-ms}. Once {@code transfer.rate-limit.max-buckets} are
+ * tracked, new clients or accounts share one overflow bucket of the same rate until the sweep has
+ * made room again.
+ */
+@Service
+public class TransferRateLimiter {
+
+  public static final long ADMITTED = 0;
+
+  private final Limit clients;
+
+  private final Limit accounts;
+
+  private final Set<String> trustedProxies;
+
+  private final long sweepIntervalMillis;
+
+  private final LongAdder admitted = new LongAdder();
+
+  private ScheduledExecutorService sweeper;
+
+  @Autowired
+  public TransferRateLimiter(AccountsService accountsService,
+    @Value("${transfer.rate-limit.client-rate:0}") double clientRate,
+    @Value("${transfer.rate-limit.client-burst:100}") int clientBurst,
+    @Value("${transfer.rate-limit.account-rate:0}") double accountRate,
+    @Value("${transfer.rate-limit.account-burst:20}") int accountBurst,
+    @Value("${transfer.rate-limit.max-buckets:100000}") int maxBuckets,
+    @Value("${transfer.rate-limit.trusted-proxies:}") String[] trustedProxies,
+    @Value("${transfer.rate-limit.sweep-interval-ms:1000}") long sweepIntervalMillis) {
+    this(accountId -> accountsService.getAccount(accountId) != null, clientRate, clientBurst, accountRate,
+      accountBurst, maxBuckets, trustedProxies, sweepIntervalMillis);
+  }
+
+  /** @param accountExists asked before a bucket is created for a source account */
+  public TransferRateLimiter(Predicate<String> accountExists, double clientRate, int clientBurst,
+    double accountRate, int accountBurst, int maxBuckets, String[] trustedProxies, long sweepIntervalMillis) {
+    if (sweepIntervalMillis < 0) {
+      throw new IllegalArgumentException("Rate limit sweep interval must not be negative: " + sweepIntervalMillis);
+    }
+    this.clients = new Limit(clientRate, clientBurst, maxBuckets, clientId -> true);
+    this.accounts = new Limit(accountRate, accountBurst, maxBuckets, accountExists);
+    this.trustedProxies = new HashSet<>(Arrays.asList(trustedProxies));
+    this.sweepIntervalMillis = sweepIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() {
+    if ((this.clients.enabled || this.accounts.enabled) && this.sweepIntervalMillis > 0) {
+      this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.sweeper.scheduleWithFixedDelay(this::sweep, this.sweepIntervalMillis, this.sweepIntervalMillis,
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (this.sweeper != null) {
+      this.sweeper.shutdownNow();
+    }
+  }
+
+  /** The client a transfer counts against: the named one behind a trusted proxy, else the remote address. */
+  public String clientOf(String remoteAddress, String clientIdHeader) {
+    return clientIdHeader != null && this.trustedProxies.contains(remoteAddress) ? clientIdHeader : remoteAddress;
+  }
+
+  /**
+   * Takes a token from the client's and the source account's bucket. Returns {@link #ADMITTED}, or
+   * the nanoseconds until the exhausted bucket has a token again.
+   */
+  public long tryAcquire(String clientId, String accountFromId) {
+    if (!this.clients.enabled && !this.accounts.enabled) {
+      return ADMITTED;
+    }
+    long now = System.nanoTime();
+    long wait = this.clients.tryAcquire(clientId, now);
+    if (wait == ADMITTED) {
+      wait = this.accounts.tryAcquire(accountFromId, now);
+    }
+    if (wait == ADMITTED) {
+      this.admitted.increment();
+    }
+    return wait;
+  }
+
+  /**
+   * Drops the buckets that are full again. A transfer still holding one it looked up before takes
+   * its token from the dropped bucket, so a client or account gains at most one token per sweep.
+   */
+  public void sweep() {
+    long now = System.nanoTime();
+    this.clients.sweep(now);
+    this.accounts.sweep(now);
+  }
+
+  public RateLimitMetrics getMetrics() {
+    return new RateLimitMetrics(this.admitted.sum(), this.clients.shed.sum(), this.accounts.shed.sum(),
+      this.clients.overflow.sum() + this.accounts.overflow.sum(), this.clients.buckets.size(),
+      this.accounts.buckets.size());
+  }
+
+  private static final class Limit {
+
+    private final boolean enabled;
+    private final long interval;
+    private final long tolerance;
+    private final int maxBuckets;
+    private final Predicate<String> trackable;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Bucket overflowBucket = new Bucket(System.nanoTime());
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    private Limit(double rate, int burst, int maxBuckets, Predicate<String> trackable) {
+      if (rate < 0 || burst <= 0 || maxBuckets <= 0) {
+        throw new IllegalArgumentException(
+          "Rate limit needs a rate of 0 or more, a positive burst and bucket count: " + rate + ", " + burst + ", "
+            + maxBuckets);
+      }
+      this.enabled = rate > 0;
+      this.interval = this.enabled ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+      this.tolerance = this.interval * (burst - 1);
+      this.maxBuckets = maxBuckets;
+      this.trackable = trackable;
+    }
+
+    private long tryAcquire(String key, long now) {
+      if (!this.enabled) {
+        return ADMITTED;
+      }
+      Bucket bucket = this.buckets.get(key);
+      if (bucket == null) {
+        if (!this.trackable.test(key)) {
+          return ADMITTED;
+        }
+        bucket = newBucket(key, now);
+      }
+      while (true) {
+        long fullAt = bucket.fullAt;
+        long start = fullAt - now > 0 ? fullAt : now;
+        long wait = start - this.tolerance - now;
+        if (wait > 0) {
+          this.shed.increment();
+          return wait;
+        }
+        if (Bucket.FULL_AT.compareAndSet(bucket, fullAt, start + this.interval)) {
+          return ADMITTED;
+        }
+      }
+    }
+
+    private Bucket newBucket(String key, long now) {
+      if (this.buckets.size() >= this.maxBuckets) {
+        this.overflow.increment();
+        return this.overflowBucket;
+      }
+      Bucket bucket = new Bucket(now);
+      Bucket existing = this.buckets.putIfAbsent(key, bucket);
+      return existing == null ? bucket : existing;
+    }
+
+    private void sweep(long now) {
+      this.buckets.values().removeIf(bucket -> bucket.fullAt - now <= 0);
+    }
+  }
+
+  private static final class Bucket {
+
+    private static final AtomicLongFieldUpdater<Bucket> FULL_AT = AtomicLongFieldUpdater.newUpdater(Bucket.class,
+      "fullAt");
+
+    private volatile long fullAt;
+
+    private Bucket(long fullAt) {
+      this.fullAt = fullAt;
+    }
+  }
+}
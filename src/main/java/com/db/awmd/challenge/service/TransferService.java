@@ -1,11 +1,18 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.*;
+import com.db.awmd.challenge.exception.BatchTransferException;
 import com.db.awmd.challenge.repository.TransfersRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 
 @Service
 public class TransferService {
@@ -13,18 +20,159 @@ public class TransferService {
   @Getter
   private final TransfersRepository transfersRepository;
 
+  private final Validator validator;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final TransferMetricsRecorder metricsRecorder;
+
   @Autowired
-  public TransferService(TransfersRepository transfersRepository) {
+  public TransferService(TransfersRepository transfersRepository, Validator validator,
+    IdempotencyCache idempotencyCache, TransferMetricsRecorder metricsRecorder) {
     this.transfersRepository = transfersRepository;
+    this.validator = validator;
+    this.idempotencyCache = idempotencyCache;
+    this.metricsRecorder = metricsRecorder;
   }
 
   public void createTransfer(Transfer transfer) {
-	  this.transfersRepository.createTransfer(transfer);
+    long start = System.nanoTime();
+    try {
+      this.transfersRepository.createTransfer(transfer);
+    } catch (RuntimeException re) {
+      this.metricsRecorder.recordTransfer(TransferOutcome.of(re), start);
+      throw re;
+    }
+    this.metricsRecorder.recordTransfer(TransferOutcome.COMPLETED, start);
+  }
+
+  /**
+   * Runs the transfer and returns how it ended. Expected rejections come back as a preallocated
+   * outcome rather than an exception, which keeps abusive or buggy clients cheap to turn away.
+   */
+  public TransferOutcome tryCreateTransfer(Transfer transfer) {
+    long start = System.nanoTime();
+    TransferOutcome outcome;
+    try {
+      outcome = this.transfersRepository.tryCreateTransfer(transfer);
+    } catch (RuntimeException re) {
+      this.metricsRecorder.recordTransfer(TransferOutcome.of(re), start);
+      throw re;
+    }
+    this.metricsRecorder.recordTransfer(outcome, start);
+    return outcome;
+  }
+
+  /**
+   * Same as {@link #tryCreateTransfer} but returns without waiting for the storage engine or the
+   * journal, so the calling thread can be released while the transfer completes.
+   */
+  public CompletableFuture<TransferOutcome> createTransferAsync(Transfer transfer) {
+    long start = System.nanoTime();
+    CompletableFuture<TransferOutcome> outcome;
+    try {
+      outcome = this.transfersRepository.submitTransfer(transfer);
+    } catch (RuntimeException re) {
+      this.metricsRecorder.recordTransfer(TransferOutcome.of(re), start);
+      throw re;
+    }
+    return outcome.whenComplete((completed, failure) ->
+      this.metricsRecorder.recordTransfer(failure == null ? completed : TransferOutcome.OTHER, start));
+  }
+
+  /**
+   * Same as {@link #tryCreateTransfer}, but runs the transfer at most once per idempotency key and
+   * returns its outcome, the recorded one if the key was seen before.
+   */
+  public TransferOutcome createTransfer(Transfer transfer, String idempotencyKey) {
+    return this.idempotencyCache.execute(idempotencyKey, transfer, () -> tryCreateTransfer(transfer));
+  }
+
+  /**
+   * Runs every transfer of the batch and reports the outcome per item. With allOrNothing the
+   * batch is committed as a whole: the first invalid or rejected item is reported and every other
+   * item is marked as aborted.
+   */
+  public List<TransferResult> createTransfers(List<Transfer> transfers, boolean allOrNothing) {
+    TransferResult[] results = new TransferResult[transfers.size()];
+    boolean valid = true;
+    for (int i = 0; i < transfers.size(); i++) {
+      String violation = firstViolation(transfers.get(i));
+      if (violation != null) {
+        results[i] = TransferResult.rejected(i, violation);
+        valid = false;
+        if (allOrNothing) {
+          break;
+        }
+      }
+    }
+    if (!allOrNothing) {
+      for (int i = 0; i < transfers.size(); i++) {
+        if (results[i] == null) {
+          try {
+            createTransfer(transfers.get(i));
+            results[i] = TransferResult.completed(i);
+          } catch (RuntimeException re) {
+            results[i] = TransferResult.rejected(i, re.getMessage());
+          }
+        }
+      }
+    } else if (valid) {
+      try {
+        this.transfersRepository.createTransfers(transfers);
+        for (int i = 0; i < transfers.size(); i++) {
+          results[i] = TransferResult.completed(i);
+        }
+      } catch (BatchTransferException bte) {
+        results[bte.getIndex()] = TransferResult.rejected(bte.getIndex(), bte.getMessage());
+      }
+    }
+    List<TransferResult> resultList = new ArrayList<>(results.length);
+    for (int i = 0; i < results.length; i++) {
+      resultList.add(results[i] != null ? results[i] : TransferResult.aborted(i));
+    }
+    return resultList;
+  }
+
+  /**
+   * Runs the multi-leg transfer and reports the outcome per leg: every leg completed, or the
+   * rejected leg with every other leg marked as aborted.
+   */
+  public List<TransferResult> createMultiLegTransfer(MultiLegTransfer transfer) {
+    int rejectedLeg = -1;
+    String rejection = null;
+    try {
+      this.transfersRepository.createMultiLegTransfer(transfer);
+    } catch (BatchTransferException bte) {
+      rejectedLeg = bte.getIndex();
+      rejection = bte.getMessage();
+    }
+    List<TransferResult> results = new ArrayList<>(transfer.getLegs().size());
+    for (int i = 0; i < transfer.getLegs().size(); i++) {
+      results.add(rejectedLeg < 0 ? TransferResult.completed(i)
+        : i == rejectedLeg ? TransferResult.rejected(i, rejection) : TransferResult.aborted(i));
+    }
+    return results;
+  }
+
+  private String firstViolation(Transfer transfer) {
+    if (transfer == null) {
+      return "Transfer must not be null";
+    }
+    Set<ConstraintViolation<Transfer>> violations = this.validator.validate(transfer);
+    if (violations.isEmpty()) {
+      return null;
+    }
+    ConstraintViolation<Transfer> violation = violations.iterator().next();
+    return violation.getPropertyPath() + " " + violation.getMessage();
   }
 
   public Account getAccount(String accountId) {
     return this.transfersRepository.getAccount(accountId);
   }
+  public TransferHistoryPage getTransferHistory(String accountId, long before, int limit) {
+    return this.transfersRepository.getTransferHistory(accountId, before, limit);
+  }
   public void updateAccount(Account account) {
     this.transfersRepository.updateAccount(account);
   }
@@ -0,0 +1,186 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountResult;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.service.AccountsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Bulk account creation and balance lookup. Request bodies are a JSON array or newline delimited
+ * JSON and are read one element at a time; results are written to the response as they are
+ * produced, so memory does not grow with the size of the request. Accounts are created in chunks of
+ * {@value #CHUNK_SIZE}, each chunk in one call to the repository, and every account gets its own
+ * result: CREATED, DUPLICATE or REJECTED. A malformed body is answered with 400 until the first
+ * results have been sent; after that the accounts not yet created are dropped and the array ends
+ * with an element naming the error.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@Slf4j
+public class AccountBatchController {
+
+  static final int CHUNK_SIZE = 1000;
+
+  private final AccountsService accountsService;
+
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public AccountBatchController(AccountsService accountsService, ObjectMapper objectMapper) {
+    this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+  }
+
+  @PostMapping(path = "/batch",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, TransferController.APPLICATION_NDJSON_VALUE})
+  public void createAccounts(InputStream body, HttpServletResponse response) throws IOException {
+    List<Account> chunk = new ArrayList<>(CHUNK_SIZE);
+    int index = 0;
+    JsonGenerator results = null;
+    try {
+      MappingIterator<Account> accounts = this.objectMapper.readerFor(Account.class).readValues(body);
+      while (hasNext(accounts)) {
+        chunk.add(next(accounts));
+        if (chunk.size() == CHUNK_SIZE) {
+          results = write(results, response, this.accountsService.createAccounts(chunk, index));
+          index += chunk.size();
+          chunk.clear();
+        }
+      }
+      results = write(results, response, this.accountsService.createAccounts(chunk, index));
+      index += chunk.size();
+    } catch (JsonProcessingException jpe) {
+      if (results == null) {
+        badRequest(response, jpe);
+        return;
+      }
+      writeError(results, jpe);
+    }
+    results.writeEndArray();
+    results.close();
+    log.info("Created account batch of {} accounts", index);
+  }
+
+  /** Balances of the accounts in the order asked for; an unknown account has a null balance. */
+  @GetMapping(params = "ids")
+  public void getAccounts(@RequestParam("ids") List<String> accountIds, HttpServletResponse response)
+    throws IOException {
+    writeSnapshots(accountIds.iterator(), response);
+  }
+
+  @PostMapping(path = "/lookup",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, TransferController.APPLICATION_NDJSON_VALUE})
+  public void lookupAccounts(InputStream body, HttpServletResponse response) throws IOException {
+    MappingIterator<String> accountIds;
+    try {
+      accountIds = this.objectMapper.readerFor(String.class).readValues(body);
+    } catch (JsonProcessingException jpe) {
+      badRequest(response, jpe);
+      return;
+    }
+    writeSnapshots(accountIds, response);
+  }
+
+  private void writeSnapshots(Iterator<String> accountIds, HttpServletResponse response) throws IOException {
+    JsonGenerator snapshots = null;
+    int count = 0;
+    try {
+      while (hasNext(accountIds)) {
+        String accountId = next(accountIds);
+        AccountSnapshot snapshot = this.accountsService.getAccountSnapshot(accountId);
+        snapshots = start(snapshots, response);
+        snapshots.writeObject(snapshot != null
+          ? snapshot : new AccountSnapshot(accountId, null, AccountSnapshot.UNVERSIONED));
+        count++;
+      }
+      snapshots = start(snapshots, response);
+    } catch (JsonProcessingException jpe) {
+      if (snapshots == null) {
+        badRequest(response, jpe);
+        return;
+      }
+      writeError(snapshots, jpe);
+    }
+    snapshots.writeEndArray();
+    snapshots.close();
+    log.info("Retrieved {} accounts", count);
+  }
+
+  /** Unwraps the parse errors that a {@link MappingIterator} hides in runtime exceptions. */
+  private static boolean hasNext(Iterator<?> iterator) throws JsonProcessingException {
+    try {
+      return iterator.hasNext();
+    } catch (RuntimeException re) {
+      throw unwrap(re);
+    }
+  }
+
+  private static <T> T next(Iterator<T> iterator) throws JsonProcessingException {
+    try {
+      return iterator.next();
+    } catch (RuntimeException re) {
+      throw unwrap(re);
+    }
+  }
+
+  private static JsonProcessingException unwrap(RuntimeException re) {
+    if (re.getCause() instanceof JsonProcessingException) {
+      return (JsonProcessingException) re.getCause();
+    }
+    throw re;
+  }
+
+  private JsonGenerator write(JsonGenerator generator, HttpServletResponse response, List<AccountResult> results)
+    throws IOException {
+    generator = start(generator, response);
+    for (AccountResult result : results) {
+      generator.writeObject(result);
+    }
+    return generator;
+  }
+
+  private JsonGenerator start(JsonGenerator generator, HttpServletResponse response) throws IOException {
+    if (generator == null) {
+      response.setStatus(HttpStatus.OK.value());
+      response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+      generator = this.objectMapper.getFactory().createGenerator(response.getOutputStream());
+      generator.writeStartArray();
+    }
+    return generator;
+  }
+
+  private static void badRequest(HttpServletResponse response, JsonProcessingException jpe) throws IOException {
+    log.info("Malformed batch body {}", jpe.getOriginalMessage());
+    response.setStatus(HttpStatus.BAD_REQUEST.value());
+    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+    response.getWriter().write(jpe.getOriginalMessage());
+  }
+
+  /** The body turned out malformed after results were written: they stand, the array ends with the error. */
+  private static void writeError(JsonGenerator generator, JsonProcessingException jpe) throws IOException {
+    log.info("Malformed batch body {}", jpe.getOriginalMessage());
+    generator.writeStartObject();
+    generator.writeStringField("error", jpe.getOriginalMessage());
+    generator.writeEndObject();
+  }
+
+}
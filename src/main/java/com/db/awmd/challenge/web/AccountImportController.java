@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.service.AccountImporter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Admin trigger for {@link AccountImporter}. Only files inside {@code accounts.import.directory}
+ * can be named, so the endpoint cannot be used to probe the rest of the file system.
+ */
+@RestController
+@RequestMapping("/v1/admin/accounts")
+@Slf4j
+public class AccountImportController {
+
+  public static final String ERROR_MSG_IMPORT_FILE = "Import file %s not found";
+
+  private final AccountImporter accountImporter;
+
+  private final Path importDirectory;
+
+  @Autowired
+  public AccountImportController(AccountImporter accountImporter,
+    @Value("${accounts.import.directory:data/import}") String importDirectory) {
+    this.accountImporter = accountImporter;
+    this.importDirectory = Paths.get(importDirectory).toAbsolutePath().normalize();
+  }
+
+  @PostMapping("/import")
+  public ResponseEntity<Object> importAccounts(@RequestParam("file") String fileName) throws IOException {
+    log.info("Importing accounts from {}", fileName);
+    Path file = this.importDirectory.resolve(fileName).normalize();
+    if (!file.startsWith(this.importDirectory) || !Files.isRegularFile(file)) {
+      return new ResponseEntity<>(String.format(ERROR_MSG_IMPORT_FILE, fileName), HttpStatus.NOT_FOUND);
+    }
+    return ResponseEntity.ok(this.accountImporter.importFile(file));
+  }
+}
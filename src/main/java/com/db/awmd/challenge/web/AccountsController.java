@@ -1,6 +1,8 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountSnapshot;
+import com.db.awmd.challenge.exception.AmountPrecisionException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.service.AccountsService;
 import javax.validation.Valid;
@@ -21,6 +23,8 @@ import org.springframework.web.bind.annotation.RestController;
 @Slf4j
 public class AccountsController {
 
+  public static final String ACCOUNT_VERSION_HEADER = "Account-Version";
+
   private final AccountsService accountsService;
 
   @Autowired
@@ -36,15 +40,22 @@ public class AccountsController {
     this.accountsService.createAccount(account);
     } catch (DuplicateAccountIdException daie) {
       return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (AmountPrecisionException ape) {
+      return new ResponseEntity<>(ape.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /** Serves an immutable snapshot, its version goes into a header where the storage keeps one. */
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public ResponseEntity<AccountSnapshot> getAccount(@PathVariable String accountId) {
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    AccountSnapshot snapshot = this.accountsService.getAccountSnapshot(accountId);
+    if (snapshot == null || snapshot.getVersion() == AccountSnapshot.UNVERSIONED) {
+      return ResponseEntity.ok(snapshot);
+    }
+    return ResponseEntity.ok().header(ACCOUNT_VERSION_HEADER, Long.toString(snapshot.getVersion())).body(snapshot);
   }
 
 }
@@ -0,0 +1,70 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.TransferRateLimiter;
+import com.db.awmd.challenge.service.TransferService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Single transfer endpoint for {@code transfer.async=true}. The handler returns as soon as the
+ * transfer is handed to the storage engine, and the container thread goes back to the pool while a
+ * shard works through its queue or the journal forces the transfer to disk. Requests with an
+ * idempotency key are still answered on the container thread.
+ */
+@RestController
+@RequestMapping("/transfer")
+@ConditionalOnProperty(name = "transfer.async", havingValue = "true")
+@Slf4j
+public class AsyncTransferController {
+
+    private final TransferService transferService;
+
+    private final TransferRateLimiter transferRateLimiter;
+
+    @Autowired
+    public AsyncTransferController(TransferService transferService, TransferRateLimiter transferRateLimiter) {
+        this.transferService = transferService;
+        this.transferRateLimiter = transferRateLimiter;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> createTransfer(@RequestBody @Valid Transfer transfer,
+        @RequestHeader(name = TransferController.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @RequestHeader(name = TransferController.CLIENT_ID_HEADER, required = false) String clientId,
+        HttpServletRequest request) {
+        log.debug("Initiating Transfer {}", transfer);
+
+        long wait = this.transferRateLimiter.tryAcquire(
+            this.transferRateLimiter.clientOf(request.getRemoteAddr(), clientId), transfer.getAccountFrom());
+        if (wait != TransferRateLimiter.ADMITTED) {
+            return CompletableFuture.completedFuture(TransferController.rateLimited(wait));
+        }
+
+        if (idempotencyKey != null) {
+            return CompletableFuture.completedFuture(
+                TransferController.createTransfer(this.transferService, transfer, idempotencyKey));
+        }
+
+        try {
+            return this.transferService.createTransferAsync(transfer).handle((outcome, failure) -> failure == null
+                ? TransferController.response(outcome)
+                : TransferController.failure(failure instanceof CompletionException ? failure.getCause() : failure));
+        } catch (RuntimeException re) {
+            return CompletableFuture.completedFuture(TransferController.failure(re));
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.IdempotencyMetrics;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.domain.NotificationMetrics;
+import com.db.awmd.challenge.domain.RateLimitMetrics;
+import com.db.awmd.challenge.domain.TransferMetrics;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.LockContentionProfiler;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferMetricsRecorder;
+import com.db.awmd.challenge.service.TransferRateLimiter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final TransferMetricsRecorder transferMetricsRecorder;
+
+  private final LockContentionProfiler lockContentionProfiler;
+
+  private final TransferRateLimiter transferRateLimiter;
+
+  @Autowired
+  public MetricsController(NotificationDispatcher notificationDispatcher, IdempotencyCache idempotencyCache,
+    TransferMetricsRecorder transferMetricsRecorder, LockContentionProfiler lockContentionProfiler,
+    TransferRateLimiter transferRateLimiter) {
+    this.notificationDispatcher = notificationDispatcher;
+    this.idempotencyCache = idempotencyCache;
+    this.transferMetricsRecorder = transferMetricsRecorder;
+    this.lockContentionProfiler = lockContentionProfiler;
+    this.transferRateLimiter = transferRateLimiter;
+  }
+
+  @GetMapping(path = "/transfers")
+  public TransferMetrics getTransferMetrics() {
+    return this.transferMetricsRecorder.getMetrics();
+  }
+
+  /** Sampled lock wait and hold time, with the {@code top} accounts that spend the most time on their locks. */
+  @GetMapping(path = "/contention")
+  public LockContention getLockContention(@RequestParam(name = "top", defaultValue = "10") int top) {
+    return this.lockContentionProfiler.getContention(top);
+  }
+
+  @GetMapping(path = "/notifications")
+  public NotificationMetrics getNotificationMetrics() {
+    return this.notificationDispatcher.getMetrics();
+  }
+
+  /** Transfers admitted and shed by the client and account rate limits. */
+  @GetMapping(path = "/rate-limit")
+  public RateLimitMetrics getRateLimitMetrics() {
+    return this.transferRateLimiter.getMetrics();
+  }
+
+  @GetMapping(path = "/idempotency")
+  public IdempotencyMetrics getIdempotencyMetrics() {
+    return this.idempotencyCache.getMetrics();
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.service.BalanceReconciler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Runs a {@link BalanceReconciler} pass on request; it reads every account, so it is an admin call. */
+@RestController
+@RequestMapping("/v1/admin")
+@Slf4j
+public class ReconciliationController {
+
+  public static final String ERROR_MSG_RECONCILIATION_UNSUPPORTED =
+    "Balance reconciliation is not supported by this account storage";
+
+  private final BalanceReconciler balanceReconciler;
+
+  @Autowired
+  public ReconciliationController(BalanceReconciler balanceReconciler) {
+    this.balanceReconciler = balanceReconciler;
+  }
+
+  @GetMapping("/reconciliation")
+  public ResponseEntity<Object> reconcile() {
+    if (!this.balanceReconciler.isSupported()) {
+      return new ResponseEntity<>(ERROR_MSG_RECONCILIATION_UNSUPPORTED, HttpStatus.NOT_IMPLEMENTED);
+    }
+    log.info("Reconciling balances");
+    return ResponseEntity.ok(this.balanceReconciler.reconcile());
+  }
+}
@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.MultiLegTransfer;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.service.TransferService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import javax.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/transfer")
+@Slf4j
+public class TransferBatchController {
+
+    private final TransferService transferService;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TransferBatchController(TransferService transferService, ObjectMapper objectMapper) {
+        this.transferService = transferService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> createTransfers(@RequestBody List<Transfer> transfers,
+        @RequestParam(name = "allOrNothing", defaultValue = "false") boolean allOrNothing) {
+        log.info("Initiating Transfer batch of {} transfers", transfers.size());
+        return batchResponse(this.transferService.createTransfers(transfers, allOrNothing), allOrNothing);
+    }
+
+    @PostMapping(path = "/batch", consumes = TransferController.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Object> createTransfersFromLines(InputStream body,
+        @RequestParam(name = "allOrNothing", defaultValue = "false") boolean allOrNothing) throws IOException {
+        List<Transfer> transfers;
+        try {
+            transfers = this.objectMapper.readerFor(Transfer.class).<Transfer>readValues(body).readAll();
+        } catch (JsonProcessingException jpe) {
+            return new ResponseEntity<>(jpe.getOriginalMessage(), HttpStatus.BAD_REQUEST);
+        }
+        log.info("Initiating Transfer batch of {} transfers", transfers.size());
+        return batchResponse(this.transferService.createTransfers(transfers, allOrNothing), allOrNothing);
+    }
+
+    /** One debit paying many accounts, all legs or none: 201 when committed, 400 naming the rejected leg. */
+    @PostMapping(path = "/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> createMultiLegTransfer(@RequestBody @Valid MultiLegTransfer transfer) {
+        log.info("Initiating multi-leg Transfer of {} legs", transfer.getLegs().size());
+        return batchResponse(this.transferService.createMultiLegTransfer(transfer), true);
+    }
+
+    private ResponseEntity<Object> batchResponse(List<TransferResult> results, boolean allOrNothing) {
+        if (allOrNothing) {
+            boolean committed = results.stream().allMatch(r -> r.getStatus() == TransferResult.Status.COMPLETED);
+            return new ResponseEntity<>(results, committed ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+}
@@ -1,44 +1,117 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
 //import com.db.awmd.challenge.exception.*;
+import com.db.awmd.challenge.exception.IdempotencyKeyReuseException;
+import com.db.awmd.challenge.service.TransferRateLimiter;
 import com.db.awmd.challenge.service.TransferService;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+/**
+ * Blocking single transfer endpoint: the container thread waits until the transfer is applied and
+ * durable. With {@code transfer.async=true} {@link AsyncTransferController} takes its place.
+ * Transfers over the {@link TransferRateLimiter} limits of their client, the remote address or the
+ * {@code X-Client-Id} header set by a trusted proxy, or of their source account are answered with
+ * 429 and a {@code Retry-After} in seconds.
+ */
 @RestController
 @RequestMapping("/transfer")
+@ConditionalOnProperty(name = "transfer.async", havingValue = "false", matchIfMissing = true)
 @Slf4j
 public class TransferController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    public static final String ERROR_MSG_RATE_LIMITED = "Too many transfers, retry later";
+
+    /** One immutable response per outcome, so answering a transfer allocates no response or message. */
+    private static final Map<TransferOutcome, ResponseEntity<Object>> RESPONSES = new EnumMap<>(TransferOutcome.class);
+
+    static {
+        for (TransferOutcome outcome : TransferOutcome.values()) {
+            RESPONSES.put(outcome, outcome == TransferOutcome.COMPLETED
+                ? new ResponseEntity<>(HttpStatus.CREATED)
+                : new ResponseEntity<>(outcome.getMessage(), HttpStatus.BAD_REQUEST));
+        }
+    }
+
     private final TransferService transferService;
 
+    private final TransferRateLimiter transferRateLimiter;
+
     @Autowired
-    public TransferController(TransferService transferService) {
+    public TransferController(TransferService transferService, TransferRateLimiter transferRateLimiter) {
         this.transferService = transferService;
+        this.transferRateLimiter = transferRateLimiter;
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> createTransfer(@RequestBody @Valid Transfer transfer) {
-        log.info("Initiating Transfer {}", transfer);
+    public ResponseEntity<Object> createTransfer(@RequestBody @Valid Transfer transfer,
+        @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @RequestHeader(name = CLIENT_ID_HEADER, required = false) String clientId, HttpServletRequest request) {
+        log.debug("Initiating Transfer {}", transfer);
+
+        long wait = this.transferRateLimiter.tryAcquire(
+            this.transferRateLimiter.clientOf(request.getRemoteAddr(), clientId), transfer.getAccountFrom());
+        if (wait != TransferRateLimiter.ADMITTED) {
+            return rateLimited(wait);
+        }
+
+        if (idempotencyKey != null) {
+            return createTransfer(this.transferService, transfer, idempotencyKey);
+        }
 
         try {
-            this.transferService.createTransfer(transfer);
+            return response(this.transferService.tryCreateTransfer(transfer));
         } catch (RuntimeException re) {
-            return new ResponseEntity<>(re.getMessage(), HttpStatus.BAD_REQUEST);
+            return failure(re);
         }
+    }
+
+    static ResponseEntity<Object> response(TransferOutcome outcome) {
+        return RESPONSES.get(outcome);
+    }
 
-        return new ResponseEntity<>(HttpStatus.CREATED);
+    static ResponseEntity<Object> rateLimited(long waitNanos) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(1 + TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1)))
+            .body(ERROR_MSG_RATE_LIMITED);
     }
 
+    static ResponseEntity<Object> failure(Throwable failure) {
+        return new ResponseEntity<>(failure.getMessage(), HttpStatus.BAD_REQUEST);
+    }
 
+    static ResponseEntity<Object> createTransfer(TransferService transferService, Transfer transfer,
+        String idempotencyKey) {
+        try {
+            return response(transferService.createTransfer(transfer, idempotencyKey));
+        } catch (IdempotencyKeyReuseException ikre) {
+            return new ResponseEntity<>(ikre.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        } catch (RuntimeException re) {
+            return failure(re);
+        }
+    }
 
 }
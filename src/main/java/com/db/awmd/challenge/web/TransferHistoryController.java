@@ -0,0 +1,54 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.TransferHistoryPage;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Pages through the completed transfers of an account, newest first. The first page is requested
+ * without {@code before}; each page carries the {@code nextBefore} cursor for the one after it.
+ */
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/transfers")
+@Slf4j
+public class TransferHistoryController {
+
+  public static final int MAX_PAGE_SIZE = 1000;
+  public static final String ERROR_MSG_PAGE_SIZE = "limit must be between 1 and " + MAX_PAGE_SIZE;
+
+  private final AccountsService accountsService;
+
+  private final TransferService transferService;
+
+  @Autowired
+  public TransferHistoryController(AccountsService accountsService, TransferService transferService) {
+    this.accountsService = accountsService;
+    this.transferService = transferService;
+  }
+
+  @GetMapping
+  public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+    @RequestParam(name = "before", defaultValue = "" + Long.MAX_VALUE) long before,
+    @RequestParam(name = "limit", defaultValue = "100") int limit) {
+    log.info("Retrieving transfers for id {} before {}", accountId, before);
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      return new ResponseEntity<>(ERROR_MSG_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+    }
+    if (this.accountsService.getAccountSnapshot(accountId) == null) {
+      return new ResponseEntity<>(AccountNotFoundException.getErrorMessage(accountId), HttpStatus.NOT_FOUND);
+    }
+    TransferHistoryPage page = this.transferService.getTransferHistory(accountId, before, limit);
+    return ResponseEntity.ok(page);
+  }
+
+}
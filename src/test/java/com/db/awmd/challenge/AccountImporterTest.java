@@ -0,0 +1,95 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.AccountImport;
+import com.db.awmd.challenge.persistence.NoopTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryScaledLong;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import com.db.awmd.challenge.service.AccountImporter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+public class AccountImporterTest {
+
+  private final AccountsRepositoryScaledLong accountsRepository =
+    new AccountsRepositoryScaledLong(new StripedAccountLocks(16), new NoopTransferJournal());
+
+  private Path file;
+
+  @After
+  public void deleteFile() throws IOException {
+    if (this.file != null) {
+      Files.delete(this.file);
+    }
+  }
+
+  @Test
+  public void importCsv() throws Exception {
+    AccountImport imported = importFile(".csv", 1 << 20,
+      "accountId,balance\r\n"
+        + "Id-1,10.50\r\n"
+        + " \"Id-2\" , \"20\"\n"
+        + "\n"
+        + "Id-3,-1\n"
+        + "Id-4\n"
+        + "Id-5,abc\n"
+        + "Id-1,99\n"
+        + "Id-6,0.001\n"
+        + "Id-7,7");
+
+    assertThat(imported.getCreated()).isEqualTo(3);
+    assertThat(imported.getDuplicates()).isEqualTo(1);
+    assertThat(imported.getRejected()).isEqualTo(4);
+    assertThat(this.accountsRepository.getAccount("Id-1").getBalance()).isEqualTo(new BigDecimal("10.5"));
+    assertThat(this.accountsRepository.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal(20));
+    assertThat(this.accountsRepository.getAccount("Id-7").getBalance()).isEqualTo(new BigDecimal(7));
+    assertThat(this.accountsRepository.getAccount("accountId")).isNull();
+  }
+
+  @Test
+  public void importNdjson() throws Exception {
+    AccountImport imported = importFile(".ndjson", 1 << 20,
+      "{\"accountId\":\"Id-1\",\"balance\":1}\n"
+        + " { \"balance\" : \"2.5\" , \"accountId\" : \"Id-2\", \"note\": \"x\" }\n"
+        + "{\"accountId\":\"Id-\\u00e9\",\"balance\":3}\n"
+        + "{\"accountId\":null,\"balance\":4}\n"
+        + "{\"accountId\":\"Id-5\",\"balance\":null}\n"
+        + "{\"accountId\":\"Id-6\",\"balance\":6,\"tags\":[\"a\"]}\n"
+        + "{\"accountId\":\"Id-7\"\n");
+
+    assertThat(imported.getCreated()).isEqualTo(4);
+    assertThat(imported.getRejected()).isEqualTo(3);
+    assertThat(this.accountsRepository.getAccount("Id-2").getBalance()).isEqualTo(new BigDecimal("2.5"));
+    assertThat(this.accountsRepository.getAccount("Id-\u00e9").getBalance()).isEqualTo(new BigDecimal(3));
+    assertThat(this.accountsRepository.getAccount("Id-6").getBalance()).isEqualTo(new BigDecimal(6));
+  }
+
+  @Test
+  public void importEveryLineOnceAcrossSegments() throws Exception {
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      lines.append("Id-").append(i).append(',').append(i).append('\n');
+    }
+    AccountImport imported = importFile(".csv", 97, lines.toString());
+
+    assertThat(imported.getCreated()).isEqualTo(5000);
+    assertThat(imported.getDuplicates()).isZero();
+    assertThat(imported.getRejected()).isZero();
+    assertThat(this.accountsRepository.getAccount("Id-0").getBalance()).isEqualTo(new BigDecimal(0));
+    assertThat(this.accountsRepository.getAccount("Id-4999").getBalance()).isEqualTo(new BigDecimal(4999));
+  }
+
+  private AccountImport importFile(String suffix, int segmentSize, String content) throws IOException {
+    this.file = Files.createTempFile("accounts", suffix);
+    Files.write(this.file, content.getBytes(StandardCharsets.UTF_8));
+    return new AccountImporter(this.accountsRepository, Jackson2ObjectMapperBuilder.json().build(), "", 4,
+      segmentSize).importFile(this.file);
+  }
+}
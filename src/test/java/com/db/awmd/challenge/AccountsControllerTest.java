@@ -1,15 +1,20 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.fail;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.TransferLedger;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.web.AccountsController;
 
 import java.math.BigDecimal;
 import org.junit.Before;
@@ -33,6 +38,9 @@ public class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private TransferLedger transferLedger;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -42,6 +50,7 @@ public class AccountsControllerTest {
 
     // Reset the existing accounts before each test.
     this.accountsService.getAccountsRepository().clearAccounts();
+    this.transferLedger.clear();
   }
 
   @Test
@@ -93,6 +102,50 @@ public class AccountsControllerTest {
       .content("{\"accountId\":\"\",\"balance\":1000}")).andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void createAccountBatch() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("[{\"accountId\":\"Id-456\",\"balance\":10},{\"accountId\":\"Id-123\",\"balance\":10},"
+        + "{\"accountId\":\"Id-456\",\"balance\":20},{\"accountId\":\"Id-789\",\"balance\":-1}]"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("[{\"index\":0,\"accountId\":\"Id-456\",\"status\":\"CREATED\"},"
+        + "{\"index\":1,\"accountId\":\"Id-123\",\"status\":\"DUPLICATE\",\"message\":\"Account id Id-123 already exists!\"},"
+        + "{\"index\":2,\"accountId\":\"Id-456\",\"status\":\"DUPLICATE\",\"message\":\"Account id Id-456 already exists!\"},"
+        + "{\"index\":3,\"accountId\":\"Id-789\",\"status\":\"REJECTED\",\"message\":\"balance Initial balance must be positive.\"}]"));
+
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("10");
+    assertThat(this.accountsService.getAccount("Id-789")).isNull();
+  }
+
+  @Test
+  public void createAccountBatchFromNdjson() throws Exception {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 2500; i++) {
+      body.append("{\"accountId\":\"Id-bulk-").append(i).append("\",\"balance\":").append(i).append("}\n");
+    }
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType("application/x-ndjson").content(body.toString()))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("{\"index\":2499,\"accountId\":\"Id-bulk-2499\",\"status\":\"CREATED\"}]")));
+    assertThat(this.accountsService.getAccount("Id-bulk-1234").getBalance()).isEqualByComparingTo("1234");
+
+    this.mockMvc.perform(post("/v1/accounts/batch").contentType(MediaType.APPLICATION_JSON).content("[{\"accountId\":"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getAccountBatch() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+    this.mockMvc.perform(get("/v1/accounts?ids=Id-456,Id-789,Id-123"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("[{\"accountId\":\"Id-456\",\"balance\":1000},"
+        + "{\"accountId\":\"Id-789\",\"balance\":null},{\"accountId\":\"Id-123\",\"balance\":123.45}]"));
+    this.mockMvc.perform(post("/v1/accounts/lookup").contentType(MediaType.APPLICATION_JSON).content("[\"Id-123\"]"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("[{\"accountId\":\"Id-123\",\"balance\":123.45}]"));
+  }
+
   @Test
   public void getAccount() throws Exception {
     String uniqueAccountId = "Id-" + System.currentTimeMillis();
@@ -104,6 +157,62 @@ public class AccountsControllerTest {
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
 
+  @Test
+  public void getAccountVersion() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(header().string(AccountsController.ACCOUNT_VERSION_HEADER, "0"));
+
+    this.accountsService.withDraw("Id-123", new BigDecimal(100));
+    this.accountsService.credit("Id-123", new BigDecimal(50));
+    this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(status().isOk())
+      .andExpect(header().string(AccountsController.ACCOUNT_VERSION_HEADER, "2"))
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":950}"));
+  }
+
+  @Test
+  public void getAccountTransfers() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+    for (int amount = 1; amount <= 3; amount++) {
+      this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":" + amount + "}"))
+        .andExpect(status().isCreated());
+    }
+    this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":5000}"))
+      .andExpect(status().isBadRequest());
+
+    String firstPage = this.mockMvc.perform(get("/v1/accounts/Id-456/transfers?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":3")))
+      .andExpect(content().string(containsString("\"amount\":2")))
+      .andReturn().getResponse().getContentAsString();
+    String nextBefore = firstPage.substring(firstPage.indexOf("\"nextBefore\":") + 13, firstPage.length() - 1);
+    this.mockMvc.perform(get("/v1/accounts/Id-123/transfers?limit=2&before=" + nextBefore))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("\"amount\":1,")))
+      .andExpect(content().string(containsString("\"nextBefore\":null")));
+  }
+
+  @Test
+  public void getAccountTransfersUnknownAccount() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-789/transfers")).andExpect(status().isNotFound());
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.mockMvc.perform(get("/v1/accounts/Id-123/transfers?limit=0")).andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/Id-123/transfers"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"transfers\":[],\"nextBefore\":null}"));
+  }
+
+  @Test
+  public void getNotificationMetrics() throws Exception {
+    this.mockMvc.perform(get("/v1/metrics/notifications"))
+      .andExpect(status().isOk())
+      .andExpect(content().string(containsString("\"queueCapacity\":10000")));
+  }
+
   @Test
   public void makeTransfer() throws Exception {
     this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
@@ -149,7 +258,8 @@ public class AccountsControllerTest {
     this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
             .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":1001}")).andExpect(status().isBadRequest());
     this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
-            .content("{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":3000}")).andExpect(status().isBadRequest());
+            .content("{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":3000}")).andExpect(status().isBadRequest())
+            .andExpect(content().string("Transfer amount greater than available balance"));
   }
 
   @Test
@@ -232,6 +342,207 @@ public class AccountsControllerTest {
             .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":}")).andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void makeTransferWithIdempotencyKey() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":1000}")).andExpect(status().isCreated());
+    for (int i = 0; i < 2; i++) {
+      this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+              .header("Idempotency-Key", "transfer-idempotency-test")
+              .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":100}"))
+              .andExpect(status().isCreated());
+    }
+    this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+            .header("Idempotency-Key", "transfer-idempotency-test")
+            .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":200}"))
+            .andExpect(status().isUnprocessableEntity())
+            .andExpect(content().string("Idempotency key transfer-idempotency-test was already used for a different transfer!"));
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1100");
+    this.mockMvc.perform(get("/v1/metrics/idempotency"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"hits\":2")));
+  }
+
+  @Test
+  public void makeTransferInsufficientBalanceWithAndWithoutIdempotencyKey() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":1000}")).andExpect(status().isCreated());
+    String transfer = "{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":1001}";
+    String withoutKey = this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+            .content(transfer)).andExpect(status().isBadRequest())
+            .andReturn().getResponse().getContentAsString();
+    String withKey = this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+            .header("Idempotency-Key", "transfer-insufficient-test")
+            .content(transfer)).andExpect(status().isBadRequest())
+            .andReturn().getResponse().getContentAsString();
+    assertThat(withKey).isEqualTo(withoutKey);
+    assertThat(withoutKey).isEqualTo("Transfer amount greater than available balance");
+  }
+
+  @Test
+  public void getTransferMetrics() throws Exception {
+    String before = this.mockMvc.perform(get("/v1/metrics/transfers")).andReturn().getResponse().getContentAsString();
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-404\",\"amount\":100}"))
+            .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(get("/v1/metrics/transfers"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"ACCOUNT_NOT_FOUND\":{\"count\":")))
+            .andExpect(content().string(containsString("\"lockWait\":{\"count\":")));
+    String after = this.mockMvc.perform(get("/v1/metrics/transfers")).andReturn().getResponse().getContentAsString();
+    assertThat(notFoundCount(after)).isEqualTo(notFoundCount(before) + 1);
+  }
+
+  @Test
+  public void getLockContention() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(get("/v1/metrics/contention?top=5"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"sampleInterval\":64")))
+            .andExpect(content().string(containsString("\"hottestAccounts\":[")));
+  }
+
+  private static long notFoundCount(String metrics) {
+    String marker = "\"ACCOUNT_NOT_FOUND\":{\"count\":";
+    int start = metrics.indexOf(marker) + marker.length();
+    return Long.parseLong(metrics.substring(start, metrics.indexOf(',', start)));
+  }
+
+  @Test
+  public void makeTransferBatch() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer/batch").contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":600},"
+              + "{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":600},"
+              + "{\"accountFrom\":\"Id-123\",\"accountTo\":\"\",\"amount\":1},"
+              + "{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":100}]"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("[{\"index\":0,\"status\":\"COMPLETED\"},"
+              + "{\"index\":1,\"status\":\"REJECTED\",\"message\":\"Transfer amount greater than available balance: 400\"},"
+              + "{\"index\":2,\"status\":\"REJECTED\",\"message\":\"accountTo may not be empty\"},"
+              + "{\"index\":3,\"status\":\"COMPLETED\"}]"));
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("500");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1500");
+  }
+
+  @Test
+  public void makeTransferBatchAllOrNothing() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":0}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer/batch?allOrNothing=true").contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":1000},"
+              + "{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":400},"
+              + "{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":700}]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("[{\"index\":0,\"status\":\"ABORTED\"},"
+              + "{\"index\":1,\"status\":\"ABORTED\"},"
+              + "{\"index\":2,\"status\":\"REJECTED\",\"message\":\"Transfer amount greater than available balance: 600\"}]"));
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("0");
+
+    this.mockMvc.perform(post("/transfer/batch?allOrNothing=true").contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":1000},"
+              + "{\"accountFrom\":\"Id-456\",\"accountTo\":\"Id-123\",\"amount\":400}]"))
+            .andExpect(status().isCreated());
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("400");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  public void makeTransferBatchFromNdjson() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer/batch").contentType("application/x-ndjson")
+            .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":100}\n"
+              + "{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-ABC\",\"amount\":100}\n"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("[{\"index\":0,\"status\":\"COMPLETED\"},"
+              + "{\"index\":1,\"status\":\"REJECTED\",\"message\":\"Account not found, id : Id-ABC\"}]"));
+    this.mockMvc.perform(post("/transfer/batch").contentType("application/x-ndjson")
+            .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":}\n"))
+            .andExpect(status().isBadRequest());
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void makeMultiLegTransfer() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":0}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-789\",\"balance\":0}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-123\",\"legs\":[{\"accountTo\":\"Id-456\",\"amount\":600},"
+              + "{\"accountTo\":\"Id-789\",\"amount\":100},{\"accountTo\":\"Id-456\",\"amount\":300}]}"))
+            .andExpect(status().isCreated());
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount("Id-789").getBalance()).isEqualByComparingTo("100");
+    this.mockMvc.perform(get("/v1/accounts/Id-456/transfers"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":600")))
+            .andExpect(content().string(containsString("\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":300")))
+            .andExpect(content().string(not(containsString("\"amount\":900"))));
+
+    this.mockMvc.perform(post("/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-456\",\"legs\":[{\"accountTo\":\"Id-789\",\"amount\":600},"
+              + "{\"accountTo\":\"Id-123\",\"amount\":500}]}"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("[{\"index\":0,\"status\":\"ABORTED\"},"
+              + "{\"index\":1,\"status\":\"REJECTED\",\"message\":\"Transfer amount greater than available balance: 300\"}]"));
+    this.mockMvc.perform(post("/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-456\",\"legs\":[{\"accountTo\":\"Id-789\",\"amount\":1},"
+              + "{\"accountTo\":\"Id-456\",\"amount\":1}]}"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("[{\"index\":0,\"status\":\"ABORTED\"},"
+              + "{\"index\":1,\"status\":\"REJECTED\",\"message\":\"Transfer initiated to same account as sender: Id-456\"}]"));
+    this.mockMvc.perform(post("/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-456\",\"legs\":[]}"))
+            .andExpect(status().isBadRequest());
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount("Id-789").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  public void getReconciliation() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-456\",\"balance\":0.25}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":100}"))
+            .andExpect(status().isCreated());
+
+    this.mockMvc.perform(get("/v1/admin/reconciliation"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString(
+              "\"accounts\":2,\"total\":1000.25,\"minimum\":100.25,\"maximum\":900,\"buckets\":["
+                + "{\"from\":null,\"to\":1,\"accounts\":0,\"total\":0},"
+                + "{\"from\":1,\"to\":10,\"accounts\":0,\"total\":0},"
+                + "{\"from\":10,\"to\":100,\"accounts\":0,\"total\":0},"
+                + "{\"from\":100,\"to\":1000,\"accounts\":2,\"total\":1000.25},")));
+  }
+
   @Test
   public void makeSameTransferConcurrently() throws Exception {
     this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,106 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.persistence.NoopTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class AccountsRepositoryOffHeapTest {
+
+  private final AccountsRepositoryOffHeap accountsRepository =
+    new AccountsRepositoryOffHeap(new StripedAccountLocks(16), new NoopTransferJournal());
+
+  @Test
+  public void createAccount_distinguishesIdsWithEqualHashCodes() throws Exception {
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+    this.accountsRepository.createAccount(new Account("Aa", new BigDecimal("1.50")));
+    this.accountsRepository.createAccount(new Account("BB", new BigDecimal("2.50")));
+    this.accountsRepository.createAccount(new Account("Id-\u00e9\u4e2d", new BigDecimal(3)));
+    try {
+      this.accountsRepository.createAccount(new Account("BB", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id BB already exists!");
+    }
+
+    assertThat(this.accountsRepository.getAccount("Aa").getBalance()).isEqualTo(new BigDecimal("1.5"));
+    assertThat(this.accountsRepository.getAccount("BB").getBalance()).isEqualTo(new BigDecimal("2.5"));
+    assertThat(this.accountsRepository.getAccount("Id-\u00e9\u4e2d").getBalance()).isEqualTo(new BigDecimal(3));
+    assertThat(this.accountsRepository.getAccount("Id-e")).isNull();
+  }
+
+  @Test
+  public void createAccounts_growsStorageAndVisitsEveryAccount() throws Exception {
+    int count = 100000;
+    String longPrefix = new String(new char[300]).replace('\0', 'x');
+    for (int i = 0; i < count; i++) {
+      this.accountsRepository.createAccount(new Account((i % 1000 == 0 ? longPrefix : "Id-") + i, new BigDecimal(i)));
+    }
+    assertThat(this.accountsRepository.tryTransfer("Id-1", longPrefix + 0, BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.COMPLETED);
+
+    Map<String, BigDecimal> balances = new HashMap<>();
+    this.accountsRepository.forEachAccount((accountId, balance, sequence) -> balances.put(accountId, balance));
+    assertThat(balances).hasSize(count);
+    assertThat(balances.get(longPrefix + 0)).isEqualTo(new BigDecimal(1));
+    assertThat(balances.get("Id-1")).isEqualTo(new BigDecimal(0));
+    assertThat(balances.get(longPrefix + 99000)).isEqualTo(new BigDecimal(99000));
+    assertThat(balances.get("Id-99999")).isEqualTo(new BigDecimal(99999));
+
+    this.accountsRepository.clearAccounts();
+    assertThat(this.accountsRepository.getAccount("Id-1")).isNull();
+    this.accountsRepository.createAccount(new Account("Id-1", BigDecimal.TEN));
+    assertThat(this.accountsRepository.getAccount("Id-1").getBalance()).isEqualTo(BigDecimal.TEN);
+  }
+
+  @Test
+  public void concurrentChangesUnderStripeLocksLoseNothing() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          this.accountsRepository.transfer("Id-123", "Id-456", BigDecimal.ONE);
+          this.accountsRepository.credit("Id-123", new BigDecimal("0.01"));
+          this.accountsRepository.withDraw("Id-456", new BigDecimal("0.01"));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(10));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal(990));
+  }
+
+  @Test
+  public void hotAccountKeepsStripedBalance() throws Exception {
+    AccountsRepositoryOffHeap hotRepository = new AccountsRepositoryOffHeap(new StripedAccountLocks(16),
+      new NoopTransferJournal(), new String[] {"Id-Hot"}, 4);
+    hotRepository.createAccount(new Account("Id-Hot", new BigDecimal(0)));
+    hotRepository.createAccount(new Account("Id-123", new BigDecimal(100)));
+
+    hotRepository.transfer("Id-123", "Id-Hot", new BigDecimal(60));
+    assertThat(hotRepository.tryTransfer("Id-Hot", "Id-123", new BigDecimal(61)))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_BALANCE);
+    hotRepository.withDraw("Id-Hot", new BigDecimal(10));
+
+    assertThat(hotRepository.getAccount("Id-Hot").getBalance()).isEqualTo(new BigDecimal(50));
+    assertThat(hotRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(40));
+  }
+}
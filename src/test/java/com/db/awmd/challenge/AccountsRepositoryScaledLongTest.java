@@ -0,0 +1,289 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.AmountPrecisionException;
+import com.db.awmd.challenge.exception.BatchTransferException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.persistence.JournalRecord;
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import com.db.awmd.challenge.persistence.NoopTransferJournal;
+import com.db.awmd.challenge.persistence.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryScaledLong;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+public class AccountsRepositoryScaledLongTest {
+
+  private final AccountsRepositoryScaledLong accountsRepository =
+    new AccountsRepositoryScaledLong(new StripedAccountLocks(16), new NoopTransferJournal());
+
+  @Test
+  public void getAccountKeepsJsonRepresentation() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal("1000")));
+    this.accountsRepository.createAccount(new Account("Id-789", new BigDecimal("0.50")));
+
+    assertThat(objectMapper.writeValueAsString(this.accountsRepository.getAccount("Id-123")))
+      .isEqualTo("{\"accountId\":\"Id-123\",\"balance\":123.45}");
+    assertThat(objectMapper.writeValueAsString(this.accountsRepository.getAccount("Id-456")))
+      .isEqualTo("{\"accountId\":\"Id-456\",\"balance\":1000}");
+    assertThat(objectMapper.writeValueAsString(this.accountsRepository.getAccount("Id-789")))
+      .isEqualTo("{\"accountId\":\"Id-789\",\"balance\":0.5}");
+  }
+
+  @Test
+  public void withdrawFromAccount_failsOnInsufficientBalance() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.withDraw("Id-123", new BigDecimal("999.99"));
+    try {
+      this.accountsRepository.withDraw("Id-123", new BigDecimal(1));
+      fail("Should have failed when withdrawing more than available balance");
+    } catch (InsufficientBalanceException ibe) {
+      assertThat(ibe.getMessage()).isEqualTo("Transfer amount greater than available balance: 0.01");
+    }
+  }
+
+  @Test
+  public void createAccount_failsOnSubMinorUnitBalance() throws Exception {
+    try {
+      this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal("0.001")));
+      fail("Should have failed when balance has more decimals than minor units");
+    } catch (AmountPrecisionException ape) {
+      assertThat(ape.getMessage()).isEqualTo("Amount 0.001 cannot be stored in minor units!");
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123")).isNull();
+  }
+
+  @Test
+  public void createAccounts_growsRegistryAndRejectsDuplicates() throws Exception {
+    int count = 10000;
+    for (int i = 0; i < count; i++) {
+      this.accountsRepository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+    try {
+      this.accountsRepository.createAccount(new Account("Id-" + (count - 1), BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-" + (count - 1) + " already exists!");
+    }
+    this.accountsRepository.transfer("Id-" + (count - 1), "Id-0", new BigDecimal(count - 1));
+
+    assertThat(this.accountsRepository.getAccount("Id-0").getBalance()).isEqualTo(new BigDecimal(count - 1));
+    assertThat(this.accountsRepository.getAccount("Id-" + (count - 1)).getBalance()).isEqualTo(new BigDecimal(0));
+    for (int i = 1; i < count - 1; i++) {
+      assertThat(this.accountsRepository.getAccount("Id-" + i).getBalance()).isEqualTo(new BigDecimal(i));
+    }
+    assertThat(this.accountsRepository.getAccount("Id-" + count)).isNull();
+
+    this.accountsRepository.clearAccounts();
+    assertThat(this.accountsRepository.getAccount("Id-0")).isNull();
+    this.accountsRepository.createAccount(new Account("Id-1", BigDecimal.TEN));
+    assertThat(this.accountsRepository.getAccount("Id-1").getBalance()).isEqualTo(BigDecimal.TEN);
+  }
+
+  @Test
+  public void transferBetweenAccounts() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    this.accountsRepository.transfer("Id-123", "Id-456", new BigDecimal("250.25"));
+    try {
+      this.accountsRepository.transfer("Id-123", "Id-456", new BigDecimal(1000));
+      fail("Should have failed when transferring more than available balance");
+    } catch (InsufficientBalanceException ibe) {
+      assertThat(ibe.getMessage()).isEqualTo("Transfer amount greater than available balance: 749.75");
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("749.75"));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal("250.25"));
+  }
+
+  @Test
+  public void tryTransfer_returnsRejectionOutcomes() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-456", new BigDecimal("250.25")))
+      .isEqualTo(TransferOutcome.COMPLETED);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-456", new BigDecimal(1000)))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-789", BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-123", BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.SAME_ACCOUNT);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-456", new BigDecimal(-1)))
+      .isEqualTo(TransferOutcome.NEGATIVE_AMOUNT);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-456", new BigDecimal("0.001")))
+      .isEqualTo(TransferOutcome.AMOUNT_PRECISION);
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("749.75"));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal("250.25"));
+  }
+
+  @Test
+  public void transferAll_appliesNothingOnFailure() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    try {
+      this.accountsRepository.transferAll(Arrays.asList(
+        new Transfer("Id-123", "Id-456", new BigDecimal(1000)),
+        new Transfer("Id-456", "Id-123", new BigDecimal(400)),
+        new Transfer("Id-456", "Id-123", new BigDecimal(700))));
+      fail("Should have failed when a transfer of the batch exceeds the available balance");
+    } catch (BatchTransferException bte) {
+      assertThat(bte.getIndex()).isEqualTo(2);
+      assertThat(bte.getMessage()).isEqualTo("Transfer amount greater than available balance: 600");
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal(0));
+
+    this.accountsRepository.transferAll(Arrays.asList(
+      new Transfer("Id-123", "Id-456", new BigDecimal(1000)),
+      new Transfer("Id-456", "Id-123", new BigDecimal(400))));
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(400));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal(600));
+  }
+
+  @Test
+  public void journalFailureLeavesBalancesUntouched() throws Exception {
+    AtomicBoolean failing = new AtomicBoolean();
+    AccountsRepositoryScaledLong journaled = new AccountsRepositoryScaledLong(new StripedAccountLocks(16),
+      new TransferJournal() {
+        private long sequence;
+
+        @Override
+        public void replay(Consumer<JournalRecord> consumer) {
+        }
+
+        @Override
+        public long append(Type type, String accountId, String counterpartyId, BigDecimal amount) {
+          if (failing.get()) {
+            throw new UncheckedIOException(new IOException("No space left on device"));
+          }
+          return ++this.sequence;
+        }
+
+        @Override
+        public void awaitDurable(long sequence) {
+        }
+      });
+    journaled.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    journaled.createAccount(new Account("Id-456", new BigDecimal(0)));
+    failing.set(true);
+
+    List<Runnable> changes = Arrays.asList(
+      () -> journaled.createAccount(new Account("Id-789", new BigDecimal(1))),
+      () -> journaled.updateAccount(new Account("Id-123", new BigDecimal(1))),
+      () -> journaled.withDraw("Id-123", new BigDecimal(1)),
+      () -> journaled.credit("Id-123", new BigDecimal(1)),
+      () -> journaled.transfer("Id-123", "Id-456", new BigDecimal(1)),
+      () -> journaled.tryTransfer("Id-123", "Id-456", new BigDecimal(1)),
+      () -> journaled.transferAll(Arrays.asList(new Transfer("Id-123", "Id-456", new BigDecimal(1)),
+        new Transfer("Id-456", "Id-123", new BigDecimal(1)))));
+    for (Runnable change : changes) {
+      try {
+        change.run();
+        fail("Should have failed when the journal cannot append");
+      } catch (UncheckedIOException uioe) {
+        assertThat(uioe.getCause().getMessage()).isEqualTo("No space left on device");
+      }
+    }
+    assertThat(journaled.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(journaled.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal(0));
+    assertThat(journaled.getAccount("Id-789")).isNull();
+  }
+
+  @Test
+  public void creditToAccountConcurrently() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(0)));
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          this.accountsRepository.credit("Id-123", new BigDecimal("0.01"));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(40));
+  }
+
+  @Test
+  public void hotAccountSpreadsCreditsAndRebalancesDebits() throws Exception {
+    AccountsRepositoryScaledLong hotRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(16),
+      new NoopTransferJournal(), new String[] {"Id-Hot"}, 4);
+    hotRepository.createAccount(new Account("Id-Hot", new BigDecimal(0)));
+    hotRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          hotRepository.transfer("Id-123", "Id-Hot", BigDecimal.ONE);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(hotRepository.getAccount("Id-Hot").getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(hotRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(0));
+
+    hotRepository.transfer("Id-Hot", "Id-123", new BigDecimal(1000));
+    assertThat(hotRepository.tryTransfer("Id-Hot", "Id-123", new BigDecimal("0.01")))
+      .isEqualTo(TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(hotRepository.getAccount("Id-Hot").getBalance()).isEqualTo(new BigDecimal(0));
+    assertThat(hotRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(1000));
+  }
+
+  @Test
+  public void hotAccountSnapshotNeverSeesMoneyInTransit() throws Exception {
+    AccountsRepositoryScaledLong hotRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(16),
+      new NoopTransferJournal(), new String[] {"Id-Hot"}, 4);
+    hotRepository.createAccount(new Account("Id-Hot", new BigDecimal(1000)));
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < 2; t++) {
+      writers.add(new Thread(() -> {
+        while (running.get()) {
+          // Resetting puts the whole balance back in the first sub-balance, so every debit moves it.
+          hotRepository.updateAccount(new Account("Id-Hot", new BigDecimal(1000)));
+          hotRepository.withDraw("Id-Hot", BigDecimal.ONE);
+        }
+      }));
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    try {
+      for (int i = 0; i < 100_000; i++) {
+        assertThat(hotRepository.getAccountSnapshot("Id-Hot").getBalance())
+          .isBetween(new BigDecimal(998), new BigDecimal(1000));
+      }
+    } finally {
+      running.set(false);
+      for (Thread writer : writers) {
+        writer.join();
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.exception.BatchTransferException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.persistence.NoopTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositorySharded;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccountsRepositoryShardedTest {
+
+  private final AccountsRepositorySharded accountsRepository =
+    new AccountsRepositorySharded(new NoopTransferJournal(), 4, 16);
+
+  @Before
+  public void start() {
+    this.accountsRepository.start();
+  }
+
+  @After
+  public void stop() throws Exception {
+    this.accountsRepository.stop();
+  }
+
+  @Test
+  public void createAccount_failsOnDuplicateId() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    try {
+      this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1)));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-123 already exists!");
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("123.45"));
+  }
+
+  @Test
+  public void createAccounts_reportsEachAccount() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1)));
+    List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      accounts.add(new Account("Id-bulk-" + i, new BigDecimal(i)));
+    }
+    accounts.add(new Account("Id-123", new BigDecimal(2)));
+    accounts.add(new Account("Id-bulk-7", new BigDecimal(2)));
+    accounts.add(new Account("Id-odd", new BigDecimal("0.001")));
+
+    List<RuntimeException> failures = this.accountsRepository.createAccounts(accounts);
+    assertThat(failures).hasSize(103);
+    assertThat(failures.subList(0, 100)).containsOnly((RuntimeException) null);
+    assertThat(failures.get(100)).isInstanceOf(DuplicateAccountIdException.class);
+    assertThat(failures.get(101)).isInstanceOf(DuplicateAccountIdException.class);
+    assertThat(failures.get(102)).hasMessageContaining("0.001");
+    assertThat(this.accountsRepository.getAccount("Id-bulk-7").getBalance()).isEqualByComparingTo("7");
+  }
+
+  @Test
+  public void transferBetweenAccounts() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    this.accountsRepository.transfer("Id-123", "Id-456", new BigDecimal("250.25"));
+    try {
+      this.accountsRepository.transfer("Id-123", "Id-456", new BigDecimal(1000));
+      fail("Should have failed when transferring more than available balance");
+    } catch (InsufficientBalanceException ibe) {
+      assertThat(ibe.getMessage()).isEqualTo("Transfer amount greater than available balance: 749.75");
+    }
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-789", BigDecimal.ONE))
+      .isEqualTo(TransferOutcome.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsRepository.tryTransfer("Id-123", "Id-456", new BigDecimal("0.001")))
+      .isEqualTo(TransferOutcome.AMOUNT_PRECISION);
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("749.75"));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal("250.25"));
+  }
+
+  @Test
+  public void transferAll_appliesNothingOnFailure() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    try {
+      this.accountsRepository.transferAll(Arrays.asList(
+        new Transfer("Id-123", "Id-456", new BigDecimal(1000)),
+        new Transfer("Id-456", "Id-123", new BigDecimal(400)),
+        new Transfer("Id-456", "Id-123", new BigDecimal(700))));
+      fail("Should have failed when a transfer of the batch exceeds the available balance");
+    } catch (BatchTransferException bte) {
+      assertThat(bte.getIndex()).isEqualTo(2);
+    }
+    assertThat(this.accountsRepository.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(this.accountsRepository.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal(0));
+  }
+
+  @Test
+  public void transferAcrossShardsConcurrently() throws Exception {
+    int accounts = 16;
+    for (int i = 0; i < accounts; i++) {
+      this.accountsRepository.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int offset = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 2000; i++) {
+          this.accountsRepository.tryTransfer("Id-" + ((i + offset) % accounts),
+            "Id-" + ((i * 7 + offset + 1) % accounts), new BigDecimal(3));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      BigDecimal balance = this.accountsRepository.getAccount("Id-" + i).getBalance();
+      assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualTo(new BigDecimal(100 * accounts));
+  }
+}
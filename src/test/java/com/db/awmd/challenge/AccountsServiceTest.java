@@ -101,6 +101,23 @@ public class AccountsServiceTest {
     assertThat(this.accountsService.getAccount(uniqueIdTo).getBalance()).isEqualTo(new BigDecimal(2000));
   }
 
+  @Test
+  public void transferBetweenAccounts_failsOnInsufficientBalance() throws Exception {
+    String uniqueIdFrom = "Id-tBA_From";
+    String uniqueIdTo = "Id-tBA_To";
+    this.accountsService.createAccount(new Account(uniqueIdFrom, new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account(uniqueIdTo, new BigDecimal(1000)));
+    this.accountsService.transfer(uniqueIdFrom, uniqueIdTo, new BigDecimal(600));
+    try {
+      this.accountsService.transfer(uniqueIdFrom, uniqueIdTo, new BigDecimal(600));
+      fail("Should have failed when transferring more than available balance");
+    } catch (InsufficientBalanceException ibe) {
+      assertThat(ibe.getMessage()).isEqualTo(String.format("Transfer amount greater than available balance: %s",new BigDecimal(400)));
+    }
+    assertThat(this.accountsService.getAccount(uniqueIdFrom).getBalance()).isEqualTo(new BigDecimal(400));
+    assertThat(this.accountsService.getAccount(uniqueIdTo).getBalance()).isEqualTo(new BigDecimal(1600));
+  }
+
   @Test
   public void makeSameTransferConcurrently() throws Exception {
     String uniqueIdFrom = "Id-mSTCFrom";
@@ -202,4 +219,31 @@ public class AccountsServiceTest {
         assertThat(this.accountsService.getAccount("Id-mDTC_E").getBalance()).isEqualTo(new BigDecimal(2000));
    }
 
+  @Test
+  public void makeOppositeTransfersConcurrently() throws Exception {
+    String uniqueIdA = "Id-mOTC_A";
+    String uniqueIdB = "Id-mOTC_B";
+    this.accountsService.createAccount(new Account(uniqueIdA, new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account(uniqueIdB, new BigDecimal(1000)));
+    Transfer forward = new Transfer(uniqueIdA, uniqueIdB, BigDecimal.ONE);
+    Transfer backward = new Transfer(uniqueIdB, uniqueIdA, BigDecimal.ONE);
+    Thread tA = new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        this.transferService.createTransfer(forward);
+      }
+    });
+    Thread tB = new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        this.transferService.createTransfer(backward);
+      }
+    });
+    tA.start();
+    tB.start();
+    tA.join(10000);
+    tB.join(10000);
+    assertThat(tA.isAlive() || tB.isAlive()).isFalse();
+    assertThat(this.accountsService.getAccount(uniqueIdA).getBalance()).isEqualTo(new BigDecimal(1000));
+    assertThat(this.accountsService.getAccount(uniqueIdB).getBalance()).isEqualTo(new BigDecimal(1000));
+  }
+
 }
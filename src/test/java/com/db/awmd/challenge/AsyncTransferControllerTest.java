@@ -0,0 +1,87 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.web.TransferController;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"transfer.async=true", "accounts.storage=sharded"})
+@WebAppConfiguration
+public class AsyncTransferControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    this.accountsService.getAccountsRepository().clearAccounts();
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+  }
+
+  @Test
+  public void makeTransfer() throws Exception {
+    perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":400}")).andExpect(status().isCreated());
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("600");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1400");
+  }
+
+  @Test
+  public void makeTransferRejected() throws Exception {
+    perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":1001}")).andExpect(status().isBadRequest())
+      .andExpect(content().string("Transfer amount greater than available balance"));
+    perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-789\",\"amount\":10}")).andExpect(status().isBadRequest())
+      .andExpect(content().string("Account not found"));
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  public void makeTransferWithIdempotencyKey() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+        .header(TransferController.IDEMPOTENCY_KEY_HEADER, "key-async")
+        .content("{\"accountFrom\":\"Id-123\",\"accountTo\":\"Id-456\",\"amount\":100}")).andExpect(status().isCreated());
+    }
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("900");
+  }
+
+  private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+    MvcResult started = this.mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+    return this.mockMvc.perform(asyncDispatch(started));
+  }
+}
@@ -0,0 +1,100 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceBucket;
+import com.db.awmd.challenge.domain.BalanceReport;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.BatchTransferException;
+import com.db.awmd.challenge.persistence.NoopTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryScaledLong;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import com.db.awmd.challenge.service.BalanceReconciler;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class BalanceReconcilerTest {
+
+  private static final int ACCOUNTS = 2000;
+
+  private final AccountsRepositoryScaledLong accountsRepository =
+    new AccountsRepositoryScaledLong(new StripedAccountLocks(16), new NoopTransferJournal());
+
+  private final BalanceReconciler balanceReconciler = new BalanceReconciler(Optional.of(this.accountsRepository));
+
+  @Test
+  public void reportTotalsAndBuckets() throws Exception {
+    this.accountsRepository.createAccount(new Account("Id-1", new BigDecimal("0.50")));
+    this.accountsRepository.createAccount(new Account("Id-2", new BigDecimal("9.99")));
+    this.accountsRepository.createAccount(new Account("Id-3", new BigDecimal("10")));
+    this.accountsRepository.createAccount(new Account("Id-4", new BigDecimal("12345.67")));
+
+    BalanceReport report = this.balanceReconciler.reconcile();
+
+    assertThat(report.getAccounts()).isEqualTo(4);
+    assertThat(report.getTotal()).isEqualByComparingTo("12366.16");
+    assertThat(report.getMinimum()).isEqualByComparingTo("0.5");
+    assertThat(report.getMaximum()).isEqualByComparingTo("12345.67");
+    assertThat(report.getBuckets().stream().map(BalanceBucket::getAccounts).collect(Collectors.toList()))
+      .containsExactly(1L, 1L, 1L, 0L, 0L, 1L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L);
+    assertThat(report.getBuckets().get(0).getFrom()).isNull();
+    assertThat(report.getBuckets().get(5).getFrom()).isEqualByComparingTo("10000");
+    assertThat(report.getBuckets().get(5).getTotal()).isEqualByComparingTo("12345.67");
+  }
+
+  @Test
+  public void seeSameTotalWhileTransfersRun() throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      this.accountsRepository.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      boolean batches = t == 0;
+      Thread thread = new Thread(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          Transfer first = randomTransfer(random);
+          if (batches) {
+            try {
+              this.accountsRepository.transferAll(Arrays.asList(first, randomTransfer(random),
+                randomTransfer(random)));
+            } catch (BatchTransferException bte) {
+              // an overdrawn account rejects the whole batch
+            }
+          } else {
+            this.accountsRepository.tryTransfer(first.getAccountFrom(), first.getAccountTo(), first.getAmount());
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    try {
+      for (int i = 0; i < 20; i++) {
+        BalanceReport report = this.balanceReconciler.reconcile();
+        assertThat(report.getAccounts()).isEqualTo(ACCOUNTS);
+        assertThat(report.getTotal()).isEqualByComparingTo(new BigDecimal(100 * ACCOUNTS));
+      }
+    } finally {
+      running.set(false);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+  }
+
+  private static Transfer randomTransfer(ThreadLocalRandom random) {
+    int from = random.nextInt(ACCOUNTS);
+    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+    return new Transfer("Id-" + from, "Id-" + to, new BigDecimal(random.nextInt(1, 50)));
+  }
+}
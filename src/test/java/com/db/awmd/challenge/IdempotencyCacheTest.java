@@ -0,0 +1,56 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class IdempotencyCacheTest {
+
+  private final Transfer transfer = new Transfer("Id-123", "Id-456", new BigDecimal(100));
+  private final AtomicInteger executions = new AtomicInteger();
+
+  @Test
+  public void replayRecordedOutcome() throws Exception {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(10, 60_000);
+    assertThat(execute(idempotencyCache, "key-1", TransferOutcome.INSUFFICIENT_BALANCE)).isEqualTo(
+      TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(execute(idempotencyCache, "key-1", TransferOutcome.COMPLETED)).isEqualTo(
+      TransferOutcome.INSUFFICIENT_BALANCE);
+    assertThat(this.executions.get()).isEqualTo(1);
+    assertThat(idempotencyCache.getMetrics().getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void evictOldestKeysBeyondCapacity() throws Exception {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(2, 60_000);
+    execute(idempotencyCache, "key-1", TransferOutcome.COMPLETED);
+    execute(idempotencyCache, "key-2", TransferOutcome.COMPLETED);
+    execute(idempotencyCache, "key-3", TransferOutcome.COMPLETED);
+    execute(idempotencyCache, "key-1", TransferOutcome.COMPLETED);
+    assertThat(this.executions.get()).isEqualTo(4);
+    assertThat(idempotencyCache.getMetrics().getSize()).isEqualTo(2);
+    assertThat(idempotencyCache.getMetrics().getEvicted()).isEqualTo(2);
+  }
+
+  @Test
+  public void expireKeysAfterTtl() throws Exception {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(10, 20);
+    execute(idempotencyCache, "key-1", TransferOutcome.COMPLETED);
+    Thread.sleep(50);
+    execute(idempotencyCache, "key-1", TransferOutcome.COMPLETED);
+    assertThat(this.executions.get()).isEqualTo(2);
+    assertThat(idempotencyCache.getMetrics().getSize()).isEqualTo(1);
+  }
+
+  private TransferOutcome execute(IdempotencyCache idempotencyCache, String key, TransferOutcome outcome) {
+    return idempotencyCache.execute(key, this.transfer, () -> {
+      this.executions.incrementAndGet();
+      return outcome;
+    });
+  }
+}
@@ -0,0 +1,44 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.db.awmd.challenge.domain.LatencySummary;
+import com.db.awmd.challenge.service.LatencyHistogram;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void summarizeEmptyHistogram() throws Exception {
+    assertThat(new LatencyHistogram().summarize()).isEqualTo(new LatencySummary(0, 0, 0, 0, 0, 0, 0));
+  }
+
+  @Test
+  public void reportPercentilesWithinBucketPrecision() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // 1us .. 1000us, one sample each.
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    LatencySummary summary = histogram.summarize();
+    assertThat(summary.getCount()).isEqualTo(1000);
+    assertThat(summary.getMean()).isCloseTo(500.5, within(0.01));
+    assertThat(summary.getP50()).isCloseTo(500, within(500 * 0.035));
+    assertThat(summary.getP90()).isCloseTo(900, within(900 * 0.035));
+    assertThat(summary.getP99()).isCloseTo(990, within(990 * 0.035));
+    assertThat(summary.getP999()).isLessThanOrEqualTo(1000);
+    assertThat(summary.getMax()).isEqualTo(1000);
+  }
+
+  @Test
+  public void keepSmallValuesExact() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(7);
+    histogram.record(-5);
+    LatencySummary summary = histogram.summarize();
+    assertThat(summary.getCount()).isEqualTo(2);
+    assertThat(summary.getP50()).isEqualTo(0);
+    assertThat(summary.getMax()).isEqualTo(0.007);
+  }
+}
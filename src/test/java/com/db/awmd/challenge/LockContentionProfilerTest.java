@@ -0,0 +1,67 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.AccountContention;
+import com.db.awmd.challenge.domain.LockContention;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import com.db.awmd.challenge.service.LockContentionProfiler;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class LockContentionProfilerTest {
+
+  @Test
+  public void keepBusiestAccountsWhenFull() throws Exception {
+    LockContentionProfiler profiler = new LockContentionProfiler(1, 2);
+    profiler.record("Id-busy", 5000, 10000);
+    profiler.record("Id-quiet", 0, 1000);
+    profiler.record("Id-new", 0, 3000);
+    profiler.record(null, 2000, 2000);
+
+    LockContention contention = profiler.getContention(10);
+    assertThat(contention.getSamples()).isEqualTo(4);
+    assertThat(contention.getContended()).isEqualTo(2);
+    assertThat(contention.getWaitMicros()).isEqualTo(7.0);
+    assertThat(contention.getHeldMicros()).isEqualTo(16.0);
+    assertThat(contention.getHottestAccounts()).extracting(AccountContention::getAccountId)
+      .containsExactly("Id-busy", "Id-new");
+    assertThat(contention.getHottestAccounts().get(1).getHeldMicros()).isEqualTo(3.0);
+    assertThat(profiler.getContention(1).getHottestAccounts()).hasSize(1);
+
+    profiler.reset();
+    assertThat(profiler.getContention(10).getSamples()).isZero();
+  }
+
+  @Test
+  public void attributeSampledWaitToAccount() throws Exception {
+    LockContentionProfiler profiler = new LockContentionProfiler(1, 16);
+    StripedAccountLocks locks = new StripedAccountLocks(16, profiler);
+    CountDownLatch waiting = new CountDownLatch(1);
+    locks.lock("Id-123", "Id-456");
+    locks.lock("Id-123");
+    locks.unlock("Id-123");
+    Thread waiter = new Thread(() -> {
+      waiting.countDown();
+      locks.lock("Id-123");
+      locks.unlock("Id-123");
+    });
+    waiter.start();
+    waiting.await();
+    while (waiter.getState() != Thread.State.WAITING) {
+      Thread.yield();
+    }
+    Thread.sleep(5);
+    locks.unlock("Id-123", "Id-456");
+    waiter.join();
+
+    LockContention contention = profiler.getContention(10);
+    AccountContention account = contention.getHottestAccounts().stream()
+      .filter(candidate -> candidate.getAccountId().equals("Id-123")).findFirst().get();
+    assertThat(account.getSamples()).isEqualTo(2);
+    assertThat(account.getContended()).isEqualTo(1);
+    assertThat(account.getWaitMicros()).isGreaterThanOrEqualTo(5000);
+    assertThat(account.getHeldMicros()).isGreaterThanOrEqualTo(5000);
+    assertThat(contention.getSamples()).isEqualTo(locks.stripeOf("Id-123") == locks.stripeOf("Id-456") ? 2 : 3);
+  }
+}
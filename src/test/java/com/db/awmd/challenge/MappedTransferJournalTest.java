@@ -0,0 +1,279 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.persistence.BalanceSnapshotFile;
+import com.db.awmd.challenge.persistence.BalanceSnapshotter;
+import com.db.awmd.challenge.persistence.FsyncPolicy;
+import com.db.awmd.challenge.persistence.JournalRecord;
+import com.db.awmd.challenge.persistence.JournalRecord.Type;
+import com.db.awmd.challenge.persistence.MappedTransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryScaledLong;
+import com.db.awmd.challenge.repository.StripedAccountLocks;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+public class MappedTransferJournalTest {
+
+  private Path directory;
+
+  @Before
+  public void createDirectory() throws Exception {
+    this.directory = Files.createTempDirectory("journal-test");
+  }
+
+  @After
+  public void deleteDirectory() {
+    FileSystemUtils.deleteRecursively(this.directory.toFile());
+  }
+
+  @Test
+  public void replayRecordsAcrossSegments() throws Exception {
+    MappedTransferJournal journal = open();
+    journal.replay(record -> { });
+    journal.append(Type.CREATE, "Id-123", null, new BigDecimal("1000.50"));
+    for (int i = 0; i < 20; i++) {
+      journal.awaitDurable(journal.append(Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(i)));
+    }
+    journal.append(Type.CLEAR, null, null, null);
+    journal.close();
+    assertThat(Files.list(this.directory).count()).isGreaterThan(1);
+
+    List<JournalRecord> records = new ArrayList<>();
+    MappedTransferJournal reopened = open();
+    reopened.replay(records::add);
+    assertThat(records).hasSize(22);
+    assertThat(records.get(0)).isEqualTo(new JournalRecord(1, Type.CREATE, "Id-123", null, new BigDecimal("1000.50")));
+    assertThat(records.get(20)).isEqualTo(new JournalRecord(21, Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(19)));
+    assertThat(records.get(21)).isEqualTo(new JournalRecord(22, Type.CLEAR, null, null, null));
+
+    assertThat(reopened.append(Type.CREDIT, "Id-456", null, BigDecimal.TEN)).isEqualTo(23);
+    reopened.close();
+  }
+
+  @Test
+  public void rejectFieldsTooLongForTheirByteCount() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(this.directory.toString(), 1 << 16,
+      FsyncPolicy.EVERY_COMMIT, 10);
+    journal.replay(record -> { });
+    String accountId = String.join("", Collections.nCopies(Short.MAX_VALUE + 1, "x"));
+    try {
+      journal.append(Type.CREATE, accountId, null, BigDecimal.ONE);
+      fail("Should have failed when appending an account id longer than a short byte count");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae.getMessage()).isEqualTo("Journal field of 32768 bytes exceeds 32767");
+    }
+    journal.append(Type.CREATE, "Id-123", null, BigDecimal.ONE);
+    journal.close();
+
+    List<JournalRecord> records = new ArrayList<>();
+    MappedTransferJournal reopened = new MappedTransferJournal(this.directory.toString(), 1 << 16,
+      FsyncPolicy.EVERY_COMMIT, 10);
+    reopened.replay(records::add);
+    assertThat(records).containsExactly(new JournalRecord(1, Type.CREATE, "Id-123", null, BigDecimal.ONE));
+    reopened.close();
+  }
+
+  @Test
+  public void appendBatchWhollyOrNotAtAll() throws Exception {
+    MappedTransferJournal journal = open();
+    journal.replay(record -> { });
+    journal.append(Type.CREATE, "Id-123", null, new BigDecimal(1000));
+    List<JournalRecord> batch = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      batch.add(new JournalRecord(0, Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(i)));
+    }
+    assertThat(journal.appendAll(batch)).isEqualTo(7);
+    batch.addAll(batch);
+    try {
+      journal.appendAll(batch);
+      fail("Should have failed when the batch does not fit into one segment");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae.getMessage()).isEqualTo("Journal records of 480 bytes exceed segment size");
+    }
+    journal.close();
+
+    List<JournalRecord> records = new ArrayList<>();
+    MappedTransferJournal reopened = open();
+    reopened.replay(records::add);
+    assertThat(records.stream().map(JournalRecord::getSequence).collect(Collectors.toList()))
+      .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+    assertThat(Files.list(this.directory).count()).isEqualTo(2);
+    reopened.close();
+  }
+
+  @Test
+  public void discardTornRecordOnReplay() throws Exception {
+    MappedTransferJournal journal = open();
+    journal.replay(record -> { });
+    journal.append(Type.CREATE, "Id-123", null, new BigDecimal(1000));
+    journal.append(Type.DEBIT, "Id-123", null, new BigDecimal(100));
+    journal.close();
+
+    Path segment = Files.list(this.directory).sorted().collect(Collectors.toList()).get(0);
+    try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+      // Corrupt the last byte of the second record's checksum as if the write had been torn.
+      long lastByte = firstRecordLength(file) + secondRecordLength(file) - 1;
+      file.seek(lastByte);
+      int value = file.read();
+      file.seek(lastByte);
+      file.write(value ^ 0xFF);
+    }
+
+    List<JournalRecord> records = new ArrayList<>();
+    MappedTransferJournal reopened = open();
+    reopened.replay(records::add);
+    assertThat(records).extracting(JournalRecord::getType).containsExactly(Type.CREATE);
+    assertThat(reopened.append(Type.CREDIT, "Id-123", null, BigDecimal.ONE)).isEqualTo(2);
+    reopened.close();
+
+    records.clear();
+    MappedTransferJournal recovered = open();
+    recovered.replay(records::add);
+    assertThat(records).extracting(JournalRecord::getType).containsExactly(Type.CREATE, Type.CREDIT);
+    recovered.close();
+  }
+
+  @Test
+  public void replayOnlyJournalTailAfterSnapshot() throws Exception {
+    MappedTransferJournal journal = open();
+    journal.replay(record -> { });
+    journal.append(Type.CREATE, "Id-123", null, new BigDecimal(100));
+    journal.append(Type.CREATE, "Id-456", null, new BigDecimal(0));
+    journal.append(Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(10));
+    journal.append(Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(5));
+    // Cut at sequence 2, but Id-123 was read only after the first transfer while Id-456 was read before it.
+    BalanceSnapshotFile.write(BalanceSnapshotFile.path(this.directory, 2), 2, visitor -> {
+      visitor.visit("Id-123", new BigDecimal(90), 3);
+      visitor.visit("Id-456", new BigDecimal(0), 2);
+    });
+    journal.close();
+
+    List<JournalRecord> records = new ArrayList<>();
+    MappedTransferJournal reopened = open();
+    reopened.replay(records::add);
+    assertThat(records).containsExactly(
+      new JournalRecord(3, Type.CREATE, "Id-123", null, new BigDecimal(90)),
+      new JournalRecord(2, Type.CREATE, "Id-456", null, new BigDecimal(0)),
+      new JournalRecord(3, Type.CREDIT, "Id-456", null, new BigDecimal(10)),
+      new JournalRecord(4, Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(5)));
+    reopened.close();
+  }
+
+  @Test
+  public void recoverAccountsFromSnapshotAndJournal() throws Exception {
+    MappedTransferJournal journal = open();
+    AccountsRepositoryScaledLong accountsRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(16),
+      journal);
+    accountsRepository.recover();
+    BalanceSnapshotter snapshotter = new BalanceSnapshotter(journal, accountsRepository, 0, 1);
+    snapshotter.start();
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    accountsRepository.createAccount(new Account("Id-456", new BigDecimal(0)));
+    for (int i = 0; i < 10; i++) {
+      accountsRepository.transfer("Id-123", "Id-456", new BigDecimal("10.01"));
+    }
+    assertThat(snapshotter.takeSnapshot()).isNotNull();
+    assertThat(snapshotter.takeSnapshot()).isNull();
+    accountsRepository.withDraw("Id-456", new BigDecimal("0.10"));
+    accountsRepository.transfer("Id-456", "Id-123", new BigDecimal(50));
+    journal.close();
+    assertThat(this.directory.resolve("journal-00000000000000000001.log")).doesNotExist();
+
+    MappedTransferJournal reopened = open();
+    AccountsRepositoryScaledLong recovered = new AccountsRepositoryScaledLong(new StripedAccountLocks(16), reopened);
+    recovered.recover();
+    assertThat(recovered.getAccount("Id-123").getBalance()).isEqualTo(new BigDecimal("949.9"));
+    assertThat(recovered.getAccount("Id-456").getBalance()).isEqualTo(new BigDecimal("50"));
+    reopened.close();
+  }
+
+  @Test
+  public void replayTransfersRacingWithClear() throws Exception {
+    MappedTransferJournal journal = new MappedTransferJournal(this.directory.toString(), 1 << 16,
+      FsyncPolicy.NEVER, 10);
+    AccountsRepositoryScaledLong accountsRepository = new AccountsRepositoryScaledLong(new StripedAccountLocks(16),
+      journal);
+    accountsRepository.recover();
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    accountsRepository.createAccount(new Account("Id-456", new BigDecimal(1000)));
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread transfers = new Thread(() -> {
+      while (running.get()) {
+        try {
+          accountsRepository.transfer("Id-123", "Id-456", BigDecimal.ONE);
+          accountsRepository.transfer("Id-456", "Id-123", BigDecimal.ONE);
+        } catch (AccountNotFoundException anfe) {
+          // cleared in between, the accounts come back shortly
+        }
+      }
+    });
+    transfers.start();
+    try {
+      for (int i = 0; i < 200; i++) {
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account("Id-123", new BigDecimal(1000)));
+        accountsRepository.createAccount(new Account("Id-456", new BigDecimal(1000)));
+        Thread.yield();
+      }
+    } finally {
+      running.set(false);
+      transfers.join();
+    }
+    journal.close();
+
+    MappedTransferJournal reopened = new MappedTransferJournal(this.directory.toString(), 1 << 16,
+      FsyncPolicy.NEVER, 10);
+    AccountsRepositoryScaledLong recovered = new AccountsRepositoryScaledLong(new StripedAccountLocks(16), reopened);
+    recovered.recover();
+    assertThat(recovered.getAccount("Id-123")).isEqualTo(accountsRepository.getAccount("Id-123"));
+    assertThat(recovered.getAccount("Id-456")).isEqualTo(accountsRepository.getAccount("Id-456"));
+    reopened.close();
+  }
+
+  @Test
+  public void completeDurabilityFuturesWithoutBlockingTheAppender() throws Exception {
+    MappedTransferJournal journal = open();
+    journal.replay(record -> { });
+    List<CompletableFuture<Void>> durable = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      durable.add(journal.whenDurable(journal.append(Type.TRANSFER, "Id-123", "Id-456", new BigDecimal(i))));
+    }
+
+    CompletableFuture.allOf(durable.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+    assertThat(journal.getDurableSequence()).isEqualTo(20);
+    assertThat(journal.whenDurable(20).isDone()).isTrue();
+    journal.close();
+  }
+
+  private MappedTransferJournal open() {
+    return new MappedTransferJournal(this.directory.toString(), 256, FsyncPolicy.EVERY_COMMIT, 10);
+  }
+
+  private static long firstRecordLength(RandomAccessFile file) throws Exception {
+    file.seek(0);
+    return 4 + file.readInt();
+  }
+
+  private static long secondRecordLength(RandomAccessFile file) throws Exception {
+    long start = firstRecordLength(file);
+    file.seek(start);
+    return 4 + file.readInt();
+  }
+}
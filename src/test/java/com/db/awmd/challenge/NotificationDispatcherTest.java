@@ -0,0 +1,90 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.NotificationMetrics;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationDispatcher.OverflowPolicy;
+import com.db.awmd.challenge.service.NotificationService;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class NotificationDispatcherTest {
+
+  private final List<String> sent = new CopyOnWriteArrayList<>();
+  private final Account accountFrom = new Account("Id-123");
+  private final Account accountTo = new Account("Id-456");
+  private NotificationDispatcher notificationDispatcher;
+
+  @After
+  public void stopDispatcher() throws Exception {
+    this.notificationDispatcher.stop();
+  }
+
+  @Test
+  public void deliverNotification() throws Exception {
+    this.notificationDispatcher = new NotificationDispatcher(
+      (account, description) -> this.sent.add(account.getAccountId() + ": " + description),
+      10, 1, 8, OverflowPolicy.BLOCK, 50, 0);
+    this.notificationDispatcher.start();
+
+    assertThat(this.notificationDispatcher.submit(this.accountFrom, this.accountTo, new BigDecimal(1000))).isTrue();
+
+    NotificationMetrics metrics = awaitProcessed(1);
+    assertThat(metrics.getDelivered()).isEqualTo(1);
+    assertThat(this.sent).containsExactly(
+      "Id-456: You have received 1000 from Account: Id-123",
+      "Id-123: You have transferred 1000 to Account: Id-456");
+  }
+
+  @Test
+  public void dropNotificationWhenQueueFull() throws Exception {
+    this.notificationDispatcher = new NotificationDispatcher(
+      (account, description) -> this.sent.add(description), 1, 0, 8, OverflowPolicy.DROP, 50, 0);
+    this.notificationDispatcher.start();
+
+    assertThat(this.notificationDispatcher.submit(this.accountFrom, this.accountTo, BigDecimal.ONE)).isTrue();
+    assertThat(this.notificationDispatcher.submit(this.accountFrom, this.accountTo, BigDecimal.ONE)).isFalse();
+
+    NotificationMetrics metrics = this.notificationDispatcher.getMetrics();
+    assertThat(metrics.getQueueDepth()).isEqualTo(1);
+    assertThat(metrics.getQueueCapacity()).isEqualTo(1);
+    assertThat(metrics.getSubmitted()).isEqualTo(2);
+    assertThat(metrics.getDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void retryFailedNotification() throws Exception {
+    AtomicInteger failures = new AtomicInteger(2);
+    NotificationService flakySink = (account, description) -> {
+      if (failures.getAndDecrement() > 0) {
+        throw new IllegalStateException("Mail server unavailable");
+      }
+      this.sent.add(description);
+    };
+    this.notificationDispatcher = new NotificationDispatcher(flakySink, 10, 1, 8, OverflowPolicy.BLOCK, 50, 2);
+    this.notificationDispatcher.start();
+
+    this.notificationDispatcher.submit(this.accountFrom, this.accountTo, BigDecimal.ONE);
+
+    NotificationMetrics metrics = awaitProcessed(1);
+    assertThat(metrics.getDelivered()).isEqualTo(1);
+    assertThat(metrics.getRetried()).isEqualTo(2);
+    assertThat(this.sent).hasSize(2);
+  }
+
+  private NotificationMetrics awaitProcessed(long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    NotificationMetrics metrics = this.notificationDispatcher.getMetrics();
+    while (metrics.getDelivered() + metrics.getFailed() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      metrics = this.notificationDispatcher.getMetrics();
+    }
+    return metrics;
+  }
+}
@@ -0,0 +1,81 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.db.awmd.challenge.domain.TransferOutcome;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class TransferAuditLogTest {
+
+  private final Logger auditLogger = (Logger) LoggerFactory.getLogger("com.db.awmd.challenge.audit");
+
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+  @Before
+  public void attachAppender() {
+    this.appender.start();
+    this.auditLogger.addAppender(this.appender);
+  }
+
+  @After
+  public void detachAppender() {
+    this.auditLogger.detachAppender(this.appender);
+  }
+
+  @Test
+  public void keepRejectionsWhenSuccessesAreSampledOut() throws Exception {
+    TransferAuditLog auditLog = new TransferAuditLog(16, 0);
+    auditLog.start();
+    auditLog.completed("Id-123", "Id-456", BigDecimal.TEN);
+    auditLog.rejected(TransferOutcome.INSUFFICIENT_BALANCE, "Id-123", "Id-456", new BigDecimal("1E+3"));
+    auditLog.stop();
+
+    assertThat(this.appender.list).hasSize(1);
+    assertThat(this.appender.list.get(0).getFormattedMessage())
+      .matches("ts=\\d+ outcome=INSUFFICIENT_BALANCE from=Id-123 to=Id-456 amount=1000");
+  }
+
+  @Test
+  public void writeRejectionOnCallerWhenRingIsFull() throws Exception {
+    TransferAuditLog auditLog = new TransferAuditLog(2, 1);
+    auditLog.completed("Id-1", "Id-2", BigDecimal.ONE);
+    auditLog.completed("Id-2", "Id-3", BigDecimal.ONE);
+    auditLog.completed("Id-3", "Id-4", BigDecimal.ONE);
+    auditLog.rejected(TransferOutcome.ACCOUNT_NOT_FOUND, "Id-4", "Id-5", BigDecimal.ONE);
+    assertThat(lines()).containsExactly("outcome=ACCOUNT_NOT_FOUND from=Id-4 to=Id-5 amount=1");
+    assertThat(auditLog.getDropped()).isEqualTo(1);
+
+    auditLog.start();
+    auditLog.stop();
+    assertThat(lines()).containsExactly("outcome=ACCOUNT_NOT_FOUND from=Id-4 to=Id-5 amount=1",
+      "outcome=COMPLETED from=Id-1 to=Id-2 amount=1", "outcome=COMPLETED from=Id-2 to=Id-3 amount=1");
+  }
+
+  @Test
+  public void keepEveryNthCompletedTransfer() throws Exception {
+    TransferAuditLog auditLog = new TransferAuditLog(16, 3);
+    auditLog.start();
+    for (int i = 1; i <= 7; i++) {
+      auditLog.completed("Id-" + i, "Id-0", BigDecimal.ONE);
+    }
+    auditLog.stop();
+
+    assertThat(lines()).containsExactly("outcome=COMPLETED from=Id-1 to=Id-0 amount=1",
+      "outcome=COMPLETED from=Id-4 to=Id-0 amount=1", "outcome=COMPLETED from=Id-7 to=Id-0 amount=1");
+  }
+
+  private List<String> lines() {
+    return this.appender.list.stream().map(event -> event.getFormattedMessage().replaceFirst("ts=\\d+ ", ""))
+      .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,113 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.db.awmd.challenge.domain.TransferHistoryPage;
+import com.db.awmd.challenge.domain.TransferRecord;
+import com.db.awmd.challenge.repository.TransferLedger;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class TransferLedgerTest {
+
+  @Test
+  public void pageThroughAccountHistoryNewestFirst() throws Exception {
+    TransferLedger ledger = new TransferLedger(true, 0);
+    for (int i = 1; i <= 5; i++) {
+      ledger.record("Id-123", "Id-456", new BigDecimal(i));
+      ledger.record("Id-456", "Id-789", new BigDecimal("0.001"));
+    }
+
+    TransferHistoryPage page = ledger.page("Id-123", Long.MAX_VALUE, 2);
+    assertThat(page.getTransfers()).extracting(TransferRecord::getAmount)
+      .containsExactly(new BigDecimal(5), new BigDecimal(4));
+    page = ledger.page("Id-123", page.getNextBefore(), 2);
+    assertThat(page.getTransfers()).extracting(TransferRecord::getAmount)
+      .containsExactly(new BigDecimal(3), new BigDecimal(2));
+    page = ledger.page("Id-123", page.getNextBefore(), 2);
+    assertThat(page.getTransfers()).extracting(TransferRecord::getAmount).containsExactly(new BigDecimal(1));
+    assertThat(page.getNextBefore()).isNull();
+
+    TransferRecord odd = ledger.page("Id-789", Long.MAX_VALUE, 1).getTransfers().get(0);
+    assertThat(odd.getAccountFrom()).isEqualTo("Id-456");
+    assertThat(odd.getAmount()).isEqualByComparingTo("0.001");
+    assertThat(ledger.page("Id-456", Long.MAX_VALUE, 100).getTransfers()).hasSize(10);
+    assertThat(ledger.page("Id-000", Long.MAX_VALUE, 100).getTransfers()).isEmpty();
+  }
+
+  @Test
+  public void dropTransfersBeyondRetention() throws Exception {
+    TransferLedger ledger = new TransferLedger(true, 3000);
+    for (int i = 0; i < 10_000; i++) {
+      ledger.record("Id-123", "Id-456", BigDecimal.ONE);
+    }
+    assertThat(count(ledger, "Id-123")).isEqualTo(3000);
+
+    ledger.record("Id-789", "Id-456", BigDecimal.TEN);
+    assertThat(count(ledger, "Id-123")).isEqualTo(2999);
+    assertThat(ledger.page("Id-789", Long.MAX_VALUE, 10).getTransfers()).extracting(TransferRecord::getTransferId)
+      .containsExactly(10_000L);
+  }
+
+  @Test
+  public void dropAccountsWithoutTransfersLeft() throws Exception {
+    TransferLedger ledger = new TransferLedger(true, 100);
+    for (int i = 0; i < 1000; i++) {
+      ledger.record("Id-" + i, "Id-clearing", BigDecimal.ONE);
+    }
+    for (int i = 0; i < 20_000; i++) {
+      ledger.record("Id-123", "Id-456", BigDecimal.ONE);
+    }
+    assertThat(ledger.getAccountCount()).isEqualTo(2);
+    assertThat(ledger.page("Id-0", Long.MAX_VALUE, 10).getTransfers()).isEmpty();
+
+    ledger.record("Id-789", "Id-123", BigDecimal.TEN);
+    TransferRecord transfer = ledger.page("Id-123", Long.MAX_VALUE, 1).getTransfers().get(0);
+    assertThat(transfer.getAccountFrom()).isEqualTo("Id-789");
+    assertThat(count(ledger, "Id-456")).isEqualTo(99);
+
+    ledger.clear();
+    assertThat(ledger.getAccountCount()).isEqualTo(0);
+    ledger.record("Id-456", "Id-123", BigDecimal.ONE);
+    assertThat(ledger.page("Id-123", Long.MAX_VALUE, 10).getTransfers()).extracting(TransferRecord::getAccountFrom)
+      .containsExactly("Id-456");
+  }
+
+  @Test
+  public void recordConcurrently() throws Exception {
+    TransferLedger ledger = new TransferLedger(true, 0);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      String accountId = "Id-" + t;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 5000; i++) {
+          ledger.record(accountId, "Id-clearing", BigDecimal.ONE);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(count(ledger, "Id-clearing")).isEqualTo(20_000);
+  }
+
+  /** Pages through the whole history of the account, checking that ids only go down. */
+  private static int count(TransferLedger ledger, String accountId) {
+    int count = 0;
+    long previous = Long.MAX_VALUE;
+    TransferHistoryPage page = ledger.page(accountId, previous, 1000);
+    while (true) {
+      for (TransferRecord transfer : page.getTransfers()) {
+        assertThat(transfer.getTransferId()).isLessThan(previous);
+        previous = transfer.getTransferId();
+        count++;
+      }
+      if (page.getNextBefore() == null) {
+        return count;
+      }
+      page = ledger.page(accountId, page.getNextBefore(), 1000);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferRateLimiter;
+import com.db.awmd.challenge.web.TransferController;
+import java.math.BigDecimal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"transfer.rate-limit.client-rate=0.01", "transfer.rate-limit.client-burst=3",
+  "transfer.rate-limit.account-rate=0.01", "transfer.rate-limit.account-burst=2",
+  "transfer.rate-limit.trusted-proxies=127.0.0.1"})
+@WebAppConfiguration
+public class TransferRateLimiterTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @Before
+  public void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+    this.accountsService.getAccountsRepository().clearAccounts();
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-789", new BigDecimal(1000)));
+  }
+
+  @Test
+  public void shedTransfersOverClientAndAccountLimits() throws Exception {
+    transfer("client-a", "Id-123").andExpect(status().isCreated());
+    transfer("client-a", "Id-123").andExpect(status().isCreated());
+    transfer("client-a", "Id-123")
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().string("Retry-After", "100"))
+      .andExpect(content().string(TransferController.ERROR_MSG_RATE_LIMITED));
+    transfer("client-b", "Id-123").andExpect(status().isTooManyRequests());
+
+    transfer("client-a", "Id-456").andExpect(status().isTooManyRequests());
+    transfer("client-b", "Id-456").andExpect(status().isCreated());
+
+    transfer("client-b", "Id-000").andExpect(status().isBadRequest());
+
+    assertThat(this.accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("998");
+    assertThat(this.accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("999");
+    this.mockMvc.perform(get("/v1/metrics/rate-limit"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"admitted\":4,\"shedByClient\":1,\"shedByAccount\":2,\"overflow\":0,"
+        + "\"clients\":2,\"accounts\":2}"));
+  }
+
+  @Test
+  public void trustClientIdOnlyFromTrustedProxies() {
+    TransferRateLimiter rateLimiter = new TransferRateLimiter(accountId -> true, 1, 1, 0, 1, 10,
+      new String[] {"10.0.0.1"}, 0);
+
+    assertThat(rateLimiter.clientOf("10.0.0.1", "client-a")).isEqualTo("client-a");
+    assertThat(rateLimiter.clientOf("10.0.0.1", null)).isEqualTo("10.0.0.1");
+    assertThat(rateLimiter.clientOf("10.0.0.2", "client-a")).isEqualTo("10.0.0.2");
+  }
+
+  @Test
+  public void shareOverflowBucketBeyondMaxBuckets() {
+    TransferRateLimiter rateLimiter = new TransferRateLimiter(accountId -> true, 1, 1, 0, 1, 1, new String[0], 0);
+
+    assertThat(rateLimiter.tryAcquire("client-a", "Id-123")).isEqualTo(TransferRateLimiter.ADMITTED);
+    assertThat(rateLimiter.tryAcquire("client-a", "Id-123")).isPositive();
+    assertThat(rateLimiter.tryAcquire("client-b", "Id-123")).isEqualTo(TransferRateLimiter.ADMITTED);
+    assertThat(rateLimiter.tryAcquire("client-c", "Id-123")).isPositive();
+    assertThat(rateLimiter.getMetrics().getOverflow()).isEqualTo(2);
+    assertThat(rateLimiter.getMetrics().getShedByClient()).isEqualTo(2);
+    assertThat(rateLimiter.getMetrics().getClients()).isEqualTo(1);
+  }
+
+  @Test
+  public void trackOnlyExistingAccountsAndSweepFullBuckets() throws Exception {
+    TransferRateLimiter rateLimiter = new TransferRateLimiter("Id-123"::equals, 0, 1, 1000, 1, 10, new String[0], 0);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(rateLimiter.tryAcquire("client-a", "Id-" + i)).isEqualTo(TransferRateLimiter.ADMITTED);
+    }
+    assertThat(rateLimiter.tryAcquire("client-a", "Id-123")).isEqualTo(TransferRateLimiter.ADMITTED);
+    assertThat(rateLimiter.getMetrics().getAccounts()).isEqualTo(1);
+
+    Thread.sleep(5);
+    rateLimiter.sweep();
+    assertThat(rateLimiter.getMetrics().getAccounts()).isEqualTo(0);
+  }
+
+  private ResultActions transfer(String clientId, String accountFrom) throws Exception {
+    return this.mockMvc.perform(post("/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header(TransferController.CLIENT_ID_HEADER, clientId)
+      .content("{\"accountFrom\":\"" + accountFrom + "\",\"accountTo\":\"Id-789\",\"amount\":1}"));
+  }
+}